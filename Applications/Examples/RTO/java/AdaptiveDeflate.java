@@ -0,0 +1,189 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Chooses, for one session, whether permessage-deflate is worth offering, by weighing the
+ * transfer time compression saves on the link against the CPU time inflating costs.
+ *
+ * Each received message is recorded. While the connection is compressed, the transport's
+ * own counters are used (DeflateSettings.Stats: bytes on the wire, inflated, and time spent
+ * inflating). Otherwise (uncompressed, or a transport without counters), one message in
+ * SAMPLE_INTERVAL is compressed and inflated locally to estimate the same figures; the
+ * sample keeps a compression context only across sampled messages, so it underestimates
+ * the ratio of a server with context takeover somewhat.
+ *
+ * After WINDOW_BYTES of messages, the transfer time saved at the configured link bandwidth
+ * is compared with the inflate time. The choice only changes when one exceeds the other by
+ * HYSTERESIS, so that a session does not flip back and forth, and applies from the next
+ * connection.
+ */
+public class AdaptiveDeflate {
+
+    /** Bytes of messages observed before each decision. */
+    static final long WINDOW_BYTES = 4 * 1024 * 1024;
+
+    /** When estimating, one message in SAMPLE_INTERVAL is compressed and inflated locally. */
+    static final int SAMPLE_INTERVAL = 16;
+
+    /** Factor by which the other choice must win for the choice to change. */
+    static final double HYSTERESIS = 1.5;
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    private final DeflateSettings _settings;
+    private final double _linkBitsPerSecond;
+
+    /** Messages and bytes seen in the current window. */
+    private long _messages = 0;
+    private long _windowBytes = 0;
+
+    /** Measured (or sampled) bytes before and after compression, and time spent inflating, in the current window. */
+    private long _originalBytes = 0;
+    private long _compressedBytes = 0;
+    private long _inflateNanos = 0;
+
+    /** Counters of the current connection, and their values when last recorded. */
+    private DeflateSettings.Stats _stats;
+    private long _lastCompressedMessages;
+    private long _lastCompressedBytes;
+    private long _lastInflatedBytes;
+    private long _lastInflateNanos;
+
+    private Deflater _sampleDeflater;
+    private Inflater _sampleInflater;
+    private final byte[] _buffer = new byte[16 * 1024];
+
+    private String _summary = "no decision yet";
+
+    /**
+     * @param settings Settings to start with; the parameters are kept, compression is switched on and off
+     * @param linkMbps Bandwidth of the link to the server, in Mbit/s
+     */
+    public AdaptiveDeflate(DeflateSettings settings, double linkMbps)
+    {
+        _settings = settings.copy();
+        _linkBitsPerSecond = linkMbps * 1e6;
+    }
+
+    /** Settings to offer on the next connection. */
+    public synchronized DeflateSettings settings()
+    {
+        return _settings.copy();
+    }
+
+    /**
+     * Record a message received over the session.
+     * @param stats The connection's compression counters, or null if its transport has none
+     * @return Whether the choice changed, i.e. the session should reconnect to apply it
+     */
+    public synchronized boolean record(String message, DeflateSettings.Stats stats)
+    {
+        ++_messages;
+        if (stats != _stats)
+        {
+            _stats = stats;
+            _lastCompressedMessages = _lastCompressedBytes = _lastInflatedBytes = _lastInflateNanos = 0;
+        }
+
+        if (stats != null && stats.compressedMessages() > _lastCompressedMessages)
+        {
+            long inflatedBytes = stats.inflatedBytes() - _lastInflatedBytes;
+            _originalBytes += inflatedBytes;
+            _compressedBytes += stats.compressedBytes() - _lastCompressedBytes;
+            _inflateNanos += stats.inflateNanos() - _lastInflateNanos;
+            _windowBytes += inflatedBytes;
+            _lastCompressedMessages = stats.compressedMessages();
+            _lastCompressedBytes = stats.compressedBytes();
+            _lastInflatedBytes = stats.inflatedBytes();
+            _lastInflateNanos = stats.inflateNanos();
+        }
+        else
+        {
+            _windowBytes += message.length();
+            if (_messages % SAMPLE_INTERVAL == 0)
+                sample(message);
+        }
+
+        if (_windowBytes < WINDOW_BYTES || _originalBytes == 0)
+            return false;
+        return decide();
+    }
+
+    /** Weigh the window's figures, and start a new window. */
+    private boolean decide()
+    {
+        double megabytes = _originalBytes / MB;
+        double ratio = (double)_originalBytes / Math.max(1, _compressedBytes);
+        double savedMillisPerMB = (_originalBytes - _compressedBytes) * 8.0 / _linkBitsPerSecond * 1000.0 / megabytes;
+        double inflateMillisPerMB = _inflateNanos / 1e6 / megabytes;
+        _messages = _windowBytes = _originalBytes = _compressedBytes = _inflateNanos = 0;
+
+        boolean enabled = _settings.isEnabled();
+        boolean enable = enabled ? inflateMillisPerMB <= savedMillisPerMB * HYSTERESIS
+                                 : savedMillisPerMB > inflateMillisPerMB * HYSTERESIS;
+        _summary = String.format(Locale.ROOT, "%s (ratio %.1f, inflating %.2f ms/MB, saving %.2f ms/MB at %.0f Mbit/s)",
+                enable ? "on" : "off", ratio, inflateMillisPerMB, savedMillisPerMB, _linkBitsPerSecond / 1e6);
+        if (enable == enabled)
+            return false;
+        _settings.setEnabled(enable);
+        return true;
+    }
+
+    /** Compress and inflate a message locally, to estimate the ratio and inflate time. */
+    private void sample(String message)
+    {
+        if (_sampleDeflater == null)
+        {
+            _sampleDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            _sampleInflater = new Inflater(true);
+        }
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        _sampleDeflater.setInput(bytes);
+        int count;
+        do {
+            count = _sampleDeflater.deflate(_buffer, 0, _buffer.length, Deflater.SYNC_FLUSH);
+            compressed.write(_buffer, 0, count);
+        } while (count == _buffer.length);
+
+        long start = System.nanoTime();
+        try {
+            _sampleInflater.setInput(compressed.toByteArray());
+            while (_sampleInflater.inflate(_buffer) > 0 || !(_sampleInflater.needsInput() || _sampleInflater.finished()))
+            {
+                // Discard the output; only the time matters.
+            }
+        } catch (DataFormatException e) {
+            // Cannot happen with our own output; skip the sample.
+            return;
+        }
+        _inflateNanos += System.nanoTime() - start;
+        _originalBytes += bytes.length;
+        // The sender leaves out the final 4 bytes (00 00 FF FF) of each message.
+        _compressedBytes += compressed.size() - 4;
+
+        if (_settings.isServerNoContextTakeover())
+        {
+            _sampleDeflater.reset();
+            _sampleInflater.reset();
+        }
+    }
+
+    /** e.g. "off (ratio 5.2, inflating 3.10 ms/MB, saving 0.66 ms/MB at 10000 Mbit/s)". */
+    public synchronized String toString()
+    {
+        return _summary;
+    }
+}
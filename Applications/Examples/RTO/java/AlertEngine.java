@@ -0,0 +1,251 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.*;
+
+/*
+ * Threshold alerts over streaming fields, e.g. "notify when /TRI.N BID >= 35.5", scaling
+ * to very many alerts.
+ *
+ * Instead of checking every alert on every Update, the alerts on each item's field are
+ * kept in two heaps: alerts for a rise (ABOVE) in a min-heap by threshold, and alerts for
+ * a fall (BELOW) in a max-heap. A new value only needs to look at the heads of the heaps:
+ * every ABOVE alert whose threshold is at or below the value is popped and fired, and
+ * likewise for BELOW, so an Update costs O(log n) per triggered alert and O(1) otherwise.
+ *
+ * The engine is a SubscriptionManager listener, subscribed to the items that have alerts,
+ * so it sees the same Refresh and Update messages as the other consumers. Alerts are
+ * one-shot: an alert is removed when it fires. Fired alerts are handed to an Executor, so
+ * that alert listeners do not run on the dispatching thread. Cancelled alerts are removed
+ * from the heaps lazily.
+ */
+public class AlertEngine implements SubscriptionManager.Listener {
+
+    /** Direction of the move an alert waits for. */
+    public enum Direction
+    {
+        /** The value rises to the threshold or above it. */
+        ABOVE,
+        /** The value falls to the threshold or below it. */
+        BELOW
+    }
+
+    /** Receives fired alerts. */
+    public interface AlertListener
+    {
+        /**
+         * @param alert Alert that fired
+         * @param value Value of the field that triggered it
+         */
+        void onAlert(Alert alert, double value);
+    }
+
+    private static final int PENDING = 0;
+    private static final int FIRED = 1;
+    private static final int CANCELLED = 2;
+
+    /**
+     * An alert on a field of an item.
+     */
+    public class Alert
+    {
+        final String _itemName;
+        final String _field;
+        final Direction _direction;
+        final double _threshold;
+        final AlertListener _listener;
+        final Thresholds _thresholds;
+        int _state = PENDING;
+
+        Alert(String itemName, String field, Direction direction, double threshold, AlertListener listener, Thresholds thresholds)
+        {
+            _itemName = itemName;
+            _field = field;
+            _direction = direction;
+            _threshold = threshold;
+            _listener = listener;
+            _thresholds = thresholds;
+        }
+
+        public String itemName() { return _itemName; }
+        public String field() { return _field; }
+        public Direction direction() { return _direction; }
+        public double threshold() { return _threshold; }
+
+        /** Cancel the alert. Returns false if it has already fired or been cancelled. */
+        public boolean cancel()
+        {
+            return _thresholds.cancel(this);
+        }
+
+        public String toString()
+        {
+            return _itemName + " " + _field + (_direction == Direction.ABOVE ? " >= " : " <= ") + _threshold;
+        }
+    }
+
+    /**
+     * Pending alerts on one field of one item.
+     */
+    class Thresholds
+    {
+        /** ABOVE alerts, lowest threshold first. */
+        final PriorityQueue<Alert> _above = new PriorityQueue<Alert>(Comparator.comparingDouble((Alert alert) -> alert._threshold));
+        /** BELOW alerts, highest threshold first. */
+        final PriorityQueue<Alert> _below = new PriorityQueue<Alert>(Comparator.comparingDouble((Alert alert) -> -alert._threshold));
+
+        /** Latest value of the field, or NaN if not known yet. */
+        double _value = Double.NaN;
+
+        /** Number of cancelled alerts still in the heaps. */
+        int _cancelledCount = 0;
+
+        /** Add an alert, collecting it if it fires straight away. Returns the latest value. */
+        synchronized double add(Alert alert, List<Alert> fired)
+        {
+            if (alert._direction == Direction.ABOVE)
+                _above.add(alert);
+            else
+                _below.add(alert);
+            _size.incrementAndGet();
+
+            // An alert whose condition already holds fires straight away.
+            if (!Double.isNaN(_value))
+                collect(_value, fired);
+            return _value;
+        }
+
+        /** Record a new value, collecting the alerts it triggers. */
+        synchronized void update(double value, List<Alert> fired)
+        {
+            _value = value;
+            collect(value, fired);
+        }
+
+        private void collect(double value, List<Alert> fired)
+        {
+            Alert alert;
+            while ((alert = _above.peek()) != null && (alert._state != PENDING || alert._threshold <= value))
+                pop(_above, fired);
+            while ((alert = _below.peek()) != null && (alert._state != PENDING || alert._threshold >= value))
+                pop(_below, fired);
+        }
+
+        private void pop(PriorityQueue<Alert> heap, List<Alert> fired)
+        {
+            Alert alert = heap.poll();
+            if (alert._state == CANCELLED)
+            {
+                --_cancelledCount;
+                return;
+            }
+            alert._state = FIRED;
+            _size.decrementAndGet();
+            fired.add(alert);
+        }
+
+        synchronized boolean cancel(Alert alert)
+        {
+            if (alert._state != PENDING)
+                return false;
+            alert._state = CANCELLED;
+            _size.decrementAndGet();
+
+            // Cancelled alerts are skipped when they reach the head of a heap; purge them if they pile up.
+            if (++_cancelledCount > 64 && _cancelledCount > (_above.size() + _below.size()) / 2)
+            {
+                _above.removeIf(pending -> pending._state == CANCELLED);
+                _below.removeIf(pending -> pending._state == CANCELLED);
+                _cancelledCount = 0;
+            }
+            return true;
+        }
+    }
+
+    private final Executor _executor;
+
+    /** Alerts by item name, then field. */
+    private final Map<String, Map<String, Thresholds>> _items = new ConcurrentHashMap<String, Map<String, Thresholds>>();
+
+    /** Number of pending alerts. */
+    private final AtomicInteger _size = new AtomicInteger(0);
+
+    /**
+     * @param executor Executor that alert listeners are called on
+     */
+    public AlertEngine(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    /**
+     * Add an alert. If the latest value of the field already meets the threshold, the alert
+     * fires immediately. The engine must be subscribed to the item for the alert to fire.
+     */
+    public Alert add(String itemName, String field, Direction direction, double threshold, AlertListener listener)
+    {
+        Thresholds thresholds = _items.computeIfAbsent(itemName, name -> new ConcurrentHashMap<String, Thresholds>())
+                .computeIfAbsent(field, name -> new Thresholds());
+        Alert alert = new Alert(itemName, field, direction, threshold, listener, thresholds);
+
+        List<Alert> fired = new ArrayList<Alert>(1);
+        double value = thresholds.add(alert, fired);
+        fire(fired, value);
+        return alert;
+    }
+
+    /** Number of pending alerts. */
+    public int size()
+    {
+        return _size.get();
+    }
+
+    /** Check the fields of a Refresh or Update against the item's alerts. */
+    public void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+    {
+        String messageType = messageJson.optString("Type");
+        if (!messageType.equals("Update") && !messageType.equals("Refresh"))
+            return;
+        JSONObject fieldsJson = messageJson.optJSONObject("Fields");
+        if (fieldsJson == null)
+            return;
+        Map<String, Thresholds> fields = _items.get(subscription.key().name());
+        if (fields == null)
+            return;
+
+        List<Alert> fired = null;
+        for (Map.Entry<String, Thresholds> field : fields.entrySet())
+        {
+            double value = FieldFilter.number(fieldsJson, field.getKey());
+            if (Double.isNaN(value))
+                continue;
+
+            if (fired == null)
+                fired = new ArrayList<Alert>();
+            int firedCount = fired.size();
+            field.getValue().update(value, fired);
+            if (fired.size() > firedCount)
+                fire(fired.subList(firedCount, fired.size()), value);
+        }
+    }
+
+    private void fire(List<Alert> fired, double value)
+    {
+        for (Alert alert : fired)
+            _executor.execute(() -> alert._listener.onAlert(alert, value));
+    }
+}
@@ -0,0 +1,248 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.json.*;
+
+/*
+ * Compact binary layout of decoded Refresh, Update and Status messages, for local
+ * distribution to consumers that should not have to parse JSON.
+ *
+ * A message is laid out as follows (big-endian):
+ *
+ *   byte    Type (TYPE_REFRESH, TYPE_UPDATE or TYPE_STATUS)
+ *   byte    Flags (FLAG_COMPLETE, FLAG_CLOSED)
+ *   long    System.nanoTime() when the message was encoded
+ *   string  Item name
+ *   short   Number of fields
+ *   field * Fields
+ *
+ * where a string is a short length followed by UTF-8 bytes, and a field is its name
+ * (a string), a kind byte and the value: nothing for KIND_NULL, a long for KIND_LONG,
+ * a double for KIND_DOUBLE, a string for KIND_STRING and a byte for KIND_BOOLEAN.
+ */
+public class BinaryUpdateCodec {
+
+    public static final int TYPE_REFRESH = 1;
+    public static final int TYPE_UPDATE = 2;
+    public static final int TYPE_STATUS = 3;
+
+    /** The Refresh is the last (or only) part of the image. */
+    public static final int FLAG_COMPLETE = 0x1;
+    /** The Status closed the stream. */
+    public static final int FLAG_CLOSED = 0x2;
+
+    public static final int KIND_NULL = 0;
+    public static final int KIND_LONG = 1;
+    public static final int KIND_DOUBLE = 2;
+    public static final int KIND_STRING = 3;
+    public static final int KIND_BOOLEAN = 4;
+
+    /** Offset of the encoding time from the start of a message. */
+    private static final int PUBLISH_NANOS_OFFSET = 2;
+
+    /**
+     * Encode a message at the buffer's position.
+     * @param buf Buffer to encode into
+     * @param itemName Name of the item the message is for
+     * @param messageJson Refresh, Update or Status message
+     * @return Whether the message was encoded; false if it is of another type or does not fit
+     *         (the buffer's position is then unchanged)
+     */
+    public static boolean encode(ByteBuffer buf, String itemName, JSONObject messageJson)
+    {
+        int type;
+        int flags = 0;
+        switch (messageJson.optString("Type"))
+        {
+            case "Refresh":
+                type = TYPE_REFRESH;
+                if (messageJson.optBoolean("Complete", true))
+                    flags |= FLAG_COMPLETE;
+                break;
+            case "Update":
+                type = TYPE_UPDATE;
+                break;
+            case "Status":
+                type = TYPE_STATUS;
+                JSONObject stateJson = messageJson.optJSONObject("State");
+                if (stateJson != null && stateJson.optString("Stream").startsWith("Closed"))
+                    flags |= FLAG_CLOSED;
+                break;
+            default:
+                return false;
+        }
+
+        int start = buf.position();
+        try {
+            buf.put((byte)type);
+            buf.put((byte)flags);
+            buf.putLong(System.nanoTime());
+            putString(buf, itemName);
+
+            JSONObject fieldsJson = messageJson.optJSONObject("Fields");
+            if (fieldsJson == null)
+            {
+                buf.putShort((short)0);
+                return true;
+            }
+
+            if (fieldsJson.length() > 0xFFFF)
+                throw new IllegalArgumentException("Too many fields: " + fieldsJson.length());
+            buf.putShort((short)fieldsJson.length());
+            for (String fieldName : fieldsJson.keySet())
+            {
+                putString(buf, fieldName);
+                putValue(buf, fieldsJson.opt(fieldName));
+            }
+            return true;
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            buf.position(start);
+            return false;
+        }
+    }
+
+    /** Type of the message at the buffer's position. */
+    public static int type(ByteBuffer buf)
+    {
+        return buf.get(buf.position());
+    }
+
+    /** System.nanoTime() when the message at the buffer's position was encoded. */
+    public static long publishNanos(ByteBuffer buf)
+    {
+        return buf.getLong(buf.position() + PUBLISH_NANOS_OFFSET);
+    }
+
+    /**
+     * Decode the message at the buffer's position back into JSON, advancing the position past it.
+     * @throws IllegalArgumentException If the message is malformed
+     */
+    public static JSONObject decode(ByteBuffer buf)
+    {
+        try {
+            int type = buf.get();
+            int flags = buf.get();
+            buf.getLong();
+            JSONObject messageJson = new JSONObject();
+            switch (type)
+            {
+                case TYPE_REFRESH:
+                    messageJson.put("Type", "Refresh");
+                    if ((flags & FLAG_COMPLETE) == 0)
+                        messageJson.put("Complete", false);
+                    break;
+                case TYPE_UPDATE:
+                    messageJson.put("Type", "Update");
+                    break;
+                case TYPE_STATUS:
+                    messageJson.put("Type", "Status");
+                    if ((flags & FLAG_CLOSED) != 0)
+                        messageJson.put("State", new JSONObject().put("Stream", "Closed"));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown message type " + type);
+            }
+            messageJson.put("Key", new JSONObject().put("Name", getString(buf)));
+
+            int fieldCount = buf.getShort() & 0xFFFF;
+            if (fieldCount > 0)
+            {
+                JSONObject fieldsJson = new JSONObject();
+                for (int i = 0; i < fieldCount; ++i)
+                {
+                    String fieldName = getString(buf);
+                    fieldsJson.put(fieldName, getValue(buf));
+                }
+                messageJson.put("Fields", fieldsJson);
+            }
+            return messageJson;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated message", e);
+        }
+    }
+
+    private static void putValue(ByteBuffer buf, Object value)
+    {
+        if (value == null || value == JSONObject.NULL)
+        {
+            buf.put((byte)KIND_NULL);
+        }
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || (value instanceof BigInteger && ((BigInteger)value).bitLength() < 64))
+        {
+            buf.put((byte)KIND_LONG);
+            buf.putLong(((Number)value).longValue());
+        }
+        else if (value instanceof Number)
+        {
+            buf.put((byte)KIND_DOUBLE);
+            buf.putDouble(((Number)value).doubleValue());
+        }
+        else if (value instanceof Boolean)
+        {
+            buf.put((byte)KIND_BOOLEAN);
+            buf.put((byte)(((Boolean)value) ? 1 : 0));
+        }
+        else
+        {
+            buf.put((byte)KIND_STRING);
+            putString(buf, value.toString());
+        }
+    }
+
+    private static Object getValue(ByteBuffer buf)
+    {
+        int kind = buf.get();
+        switch (kind)
+        {
+            case KIND_NULL:
+                return JSONObject.NULL;
+            case KIND_LONG:
+                return buf.getLong();
+            case KIND_DOUBLE:
+                return buf.getDouble();
+            case KIND_STRING:
+                return getString(buf);
+            case KIND_BOOLEAN:
+                return buf.get() != 0;
+            default:
+                throw new IllegalArgumentException("Unknown field kind " + kind);
+        }
+    }
+
+    private static void putString(ByteBuffer buf, String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF)
+            throw new IllegalArgumentException("String too long: " + bytes.length);
+        buf.putShort((short)bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf)
+    {
+        int length = buf.getShort() & 0xFFFF;
+        if (length > buf.remaining())
+            throw new BufferUnderflowException();
+        if (buf.hasArray())
+        {
+            String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
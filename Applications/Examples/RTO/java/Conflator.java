@@ -0,0 +1,177 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.*;
+
+/*
+ * Time-based conflation of the Updates delivered to a consumer.
+ *
+ * The first Update for an item opens a conflation window of a fixed interval. Updates
+ * that arrive for the same item during the window are merged into it field by field,
+ * the latest value of each field winning, and one merged Update is published when the
+ * window closes. The merged Update carries a ConflationInfo member with the number of
+ * Updates it replaces and the interval, as in conflated streams from the server.
+ *
+ * Windows are closed by a shared TimerWheel rather than a timer per item, so the merged
+ * Updates are delivered on the wheel's thread. Refresh and Status messages are not
+ * conflated: a Refresh discards the pending merged Update (it carries a newer image),
+ * and a Status is delivered after flushing it.
+ */
+public class Conflator implements SubscriptionManager.Listener {
+
+    /**
+     * Merged Update waiting for its window to close.
+     */
+    class Pending
+    {
+        final SubscriptionManager.Subscription _subscription;
+        final JSONObject _updateJson;
+        int _count = 1;
+        TimerWheel.Timeout _timeout;
+
+        Pending(SubscriptionManager.Subscription subscription, JSONObject updateJson)
+        {
+            _subscription = subscription;
+            _updateJson = updateJson;
+        }
+    }
+
+    private final SubscriptionManager.Listener _listener;
+    private final TimerWheel _timerWheel;
+    private final long _intervalMillis;
+    private final Map<SubscriptionManager.Subscription, Pending> _pending = new HashMap<SubscriptionManager.Subscription, Pending>();
+
+    /** Held while delivering, so that messages from the producer and the wheel reach the consumer in order. */
+    private final Object _deliveryLock = new Object();
+
+    /**
+     * @param listener Consumer that receives the conflated messages
+     * @param timerWheel Wheel used to close conflation windows
+     * @param intervalMillis Length of a conflation window
+     */
+    public Conflator(SubscriptionManager.Listener listener, TimerWheel timerWheel, long intervalMillis)
+    {
+        _listener = listener;
+        _timerWheel = timerWheel;
+        _intervalMillis = intervalMillis;
+    }
+
+    public void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+    {
+        String messageType = messageJson.optString("Type");
+
+        if (messageType.equals("Update"))
+        {
+            synchronized (this)
+            {
+                Pending pending = _pending.get(subscription);
+                if (pending != null)
+                {
+                    merge(pending._updateJson, messageJson);
+                    ++pending._count;
+                    return;
+                }
+
+                Pending windowPending = new Pending(subscription, copy(messageJson));
+                _pending.put(subscription, windowPending);
+                windowPending._timeout = _timerWheel.schedule(() -> flush(windowPending), _intervalMillis);
+            }
+            return;
+        }
+
+        synchronized (_deliveryLock)
+        {
+            Pending flushed = null;
+            synchronized (this)
+            {
+                Pending pending = _pending.remove(subscription);
+                if (pending != null)
+                {
+                    pending._timeout.cancel();
+                    if (!messageType.equals("Refresh"))
+                        flushed = pending;
+                }
+            }
+
+            if (flushed != null)
+                publish(flushed);
+            _listener.onMessage(subscription, messageJson);
+        }
+    }
+
+    /** Close a conflation window, publishing its merged Update. */
+    private void flush(Pending pending)
+    {
+        synchronized (_deliveryLock)
+        {
+            synchronized (this)
+            {
+                if (_pending.get(pending._subscription) != pending)
+                    return;
+                _pending.remove(pending._subscription);
+            }
+            publish(pending);
+        }
+    }
+
+    private void publish(Pending pending)
+    {
+        pending._updateJson.put("ConflationInfo", new JSONObject()
+                .put("Count", pending._count)
+                .put("Time", _intervalMillis));
+        _listener.onMessage(pending._subscription, pending._updateJson);
+    }
+
+    /** Copy an Update, including its Fields, so that it can be merged into. */
+    static JSONObject copy(JSONObject updateJson)
+    {
+        JSONObject copyJson = new JSONObject();
+        for (String name : updateJson.keySet())
+            copyJson.put(name, updateJson.get(name));
+
+        JSONObject fieldsJson = updateJson.optJSONObject("Fields");
+        if (fieldsJson != null)
+        {
+            JSONObject fieldsCopyJson = new JSONObject();
+            for (String fieldName : fieldsJson.keySet())
+                fieldsCopyJson.put(fieldName, fieldsJson.get(fieldName));
+            copyJson.put("Fields", fieldsCopyJson);
+        }
+        return copyJson;
+    }
+
+    /**
+     * Merge a later Update into an earlier (copied) one: each field takes its latest
+     * value, and the other members (e.g. SeqNumber) are taken from the later Update.
+     */
+    static void merge(JSONObject mergedJson, JSONObject updateJson)
+    {
+        for (String name : updateJson.keySet())
+        {
+            if (name.equals("Fields"))
+                continue;
+            mergedJson.put(name, updateJson.get(name));
+        }
+
+        JSONObject fieldsJson = updateJson.optJSONObject("Fields");
+        if (fieldsJson == null)
+            return;
+
+        JSONObject mergedFieldsJson = mergedJson.optJSONObject("Fields");
+        if (mergedFieldsJson == null)
+        {
+            mergedFieldsJson = new JSONObject();
+            mergedJson.put("Fields", mergedFieldsJson);
+        }
+        for (String fieldName : fieldsJson.keySet())
+            mergedFieldsJson.put(fieldName, fieldsJson.get(fieldName));
+    }
+}
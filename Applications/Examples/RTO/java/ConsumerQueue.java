@@ -0,0 +1,226 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.*;
+
+/*
+ * Per-consumer delivery queue with slow-consumer detection.
+ *
+ * Messages for a consumer are queued by the thread that dispatches them (normally the
+ * WebSocket's reading thread) and delivered to the consumer on a thread of its own, so a
+ * slow consumer never holds up the socket or the other consumers.
+ *
+ * When the queue reaches its high-water mark the consumer is considered to be falling
+ * behind and the queue switches to conflated delivery: an Update for an item that already
+ * has an Update waiting in the queue is merged into it (latest value of each field wins)
+ * instead of being queued, so the queue grows with the number of items rather than with
+ * the update rate. Once the consumer drains the queue down to the low-water mark, it
+ * switches back to delivering every Update. Refresh and Status messages are always queued.
+ *
+ * Lag metrics (queue depth, age of the oldest queued message, numbers of delivered and
+ * merged messages) are available while the queue runs.
+ */
+public final class ConsumerQueue implements SubscriptionManager.Listener {
+
+    /**
+     * Queued message.
+     */
+    static class Entry
+    {
+        final SubscriptionManager.Subscription _subscription;
+        JSONObject _messageJson;
+        final long _enqueueTime;
+
+        /** Number of Updates merged into this one (0 if not merged). */
+        int _mergeCount = 0;
+
+        Entry(SubscriptionManager.Subscription subscription, JSONObject messageJson, long enqueueTime)
+        {
+            _subscription = subscription;
+            _messageJson = messageJson;
+            _enqueueTime = enqueueTime;
+        }
+    }
+
+    private final String _name;
+    private final SubscriptionManager.Listener _listener;
+    private final int _highWaterMark;
+    private final int _lowWaterMark;
+
+    private final ArrayDeque<Entry> _queue = new ArrayDeque<Entry>();
+
+    /** While conflating, the queued Update of each subscription that later Updates are merged into. */
+    private final Map<SubscriptionManager.Subscription, Entry> _queuedUpdates = new HashMap<SubscriptionManager.Subscription, Entry>();
+
+    private boolean _conflating = false;
+    private boolean _running = true;
+    private final Thread _thread;
+
+    // Metrics
+    private int _maxDepth = 0;
+    private long _delivered = 0;
+    private long _merged = 0;
+    private long _conflationSwitches = 0;
+
+    /**
+     * @param name Name of the consumer, used for its delivery thread and in messages
+     * @param listener Consumer
+     * @param highWaterMark Queue depth at which delivery becomes conflated
+     * @param lowWaterMark Queue depth at which delivery returns to normal
+     */
+    public ConsumerQueue(String name, SubscriptionManager.Listener listener, int highWaterMark, int lowWaterMark)
+    {
+        _name = name;
+        _listener = listener;
+        _highWaterMark = highWaterMark;
+        _lowWaterMark = lowWaterMark;
+
+        _thread = new Thread(this::run, "ConsumerQueue-" + name);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /** Queue a message for the consumer. Never blocks on the consumer. */
+    public void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+    {
+        boolean isUpdate = messageJson.optString("Type").equals("Update");
+
+        synchronized (this)
+        {
+            if (!_running)
+                return;
+
+            if (_conflating && isUpdate)
+            {
+                Entry queued = _queuedUpdates.get(subscription);
+                if (queued != null)
+                {
+                    // The message may be shared with other consumers, so merge into a copy.
+                    if (queued._mergeCount == 0)
+                        queued._messageJson = Conflator.copy(queued._messageJson);
+                    Conflator.merge(queued._messageJson, messageJson);
+                    ++queued._mergeCount;
+                    ++_merged;
+                    return;
+                }
+            }
+
+            Entry entry = new Entry(subscription, messageJson, System.nanoTime());
+            _queue.add(entry);
+            if (_conflating)
+            {
+                if (isUpdate)
+                    _queuedUpdates.put(subscription, entry);
+                else
+                    _queuedUpdates.remove(subscription); // Don't merge Updates across a Refresh or Status.
+            }
+
+            if (_queue.size() > _maxDepth)
+                _maxDepth = _queue.size();
+
+            if (!_conflating && _queue.size() >= _highWaterMark)
+            {
+                _conflating = true;
+                ++_conflationSwitches;
+                System.out.println("Consumer " + _name + " is falling behind, switching to conflated delivery: " + metrics());
+            }
+
+            if (_queue.size() == 1)
+                notify();
+        }
+    }
+
+    /** Stop delivering. Queued messages are discarded. */
+    public synchronized void close()
+    {
+        _running = false;
+        _queue.clear();
+        _queuedUpdates.clear();
+        notify();
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            Entry entry;
+            synchronized (this)
+            {
+                while (_running && _queue.isEmpty())
+                {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!_running)
+                    return;
+
+                entry = _queue.poll();
+                if (_conflating)
+                {
+                    if (_queuedUpdates.get(entry._subscription) == entry)
+                        _queuedUpdates.remove(entry._subscription);
+
+                    if (_queue.size() <= _lowWaterMark)
+                    {
+                        _conflating = false;
+                        _queuedUpdates.clear();
+                        System.out.println("Consumer " + _name + " has caught up, switching to normal delivery: " + metrics());
+                    }
+                }
+                ++_delivered;
+            }
+
+            if (entry._mergeCount > 0)
+                entry._messageJson.put("ConflationInfo", new JSONObject().put("Count", entry._mergeCount + 1));
+
+            try {
+                _listener.onMessage(entry._subscription, entry._messageJson);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Number of queued messages. */
+    public synchronized int depth() { return _queue.size(); }
+
+    /** Largest number of queued messages seen. */
+    public synchronized int maxDepth() { return _maxDepth; }
+
+    /** Age, in milliseconds, of the oldest queued message (0 if the queue is empty). */
+    public synchronized long lagMillis()
+    {
+        Entry oldest = _queue.peek();
+        return (oldest == null) ? 0 : (System.nanoTime() - oldest._enqueueTime) / 1000000L;
+    }
+
+    /** Number of messages delivered to the consumer. */
+    public synchronized long delivered() { return _delivered; }
+
+    /** Number of Updates merged into queued ones instead of being queued. */
+    public synchronized long merged() { return _merged; }
+
+    /** Number of times delivery switched to conflated. */
+    public synchronized long conflationSwitches() { return _conflationSwitches; }
+
+    public synchronized boolean isConflating() { return _conflating; }
+
+    /** Summary of the lag metrics. */
+    public synchronized String metrics()
+    {
+        return "depth=" + _queue.size() + " maxDepth=" + _maxDepth + " lagMillis=" + lagMillis()
+            + " delivered=" + _delivered + " merged=" + _merged + " conflationSwitches=" + _conflationSwitches;
+    }
+}
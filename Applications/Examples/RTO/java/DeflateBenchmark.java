@@ -0,0 +1,263 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.json.*;
+
+/*
+ * Measures what permessage-deflate costs and saves on a stream of tr_json2 Updates, to show
+ * when it is worth it.
+ *
+ * A stream of Update messages for a universe of items is compressed as a server would,
+ * with each setting. The client side is then timed: the CPU time to inflate and decode the
+ * messages (or only decode them, without compression) per MB of JSON, with the same
+ * Inflater use as the transports. Adding the time to transfer the bytes on the wire gives
+ * the time per MB on each link profile; on a fast co-located link the transfer time saved
+ * is smaller than the inflate time. Finally, AdaptiveDeflate is fed the stream on each
+ * profile, to show the choice it settles on.
+ *
+ * The server's window size (server_max_window_bits) is not compared: java.util.zip always
+ * compresses with a 15-bit window.
+ *
+ * Usage: java DeflateBenchmark [messages] [items]
+ * Defaults to 200000 messages over 500 items.
+ */
+public class DeflateBenchmark {
+
+    /** Link profiles: name and bandwidth in Mbit/s. */
+    static final String[] LINK_NAMES = { "LAN (10 Gbit/s, co-located)", "metro (1 Gbit/s)", "WAN (50 Mbit/s)" };
+    static final double[] LINK_MBPS = { 10000, 1000, 50 };
+
+    public static void main(String[] args) throws Exception
+    {
+        int messages = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+        int items = (args.length > 1) ? Integer.parseInt(args[1]) : 500;
+
+        List<byte[]> stream = generate(messages, items);
+        long originalBytes = 0;
+        for (byte[] message : stream)
+            originalBytes += message.length;
+        double megabytes = originalBytes / (1024.0 * 1024.0);
+        System.out.println(String.format(Locale.ROOT, "%d messages, %.1f MB of JSON", messages, megabytes));
+
+        String[] settingNames = { "off", "on (context takeover)", "server_no_context_takeover" };
+        double[] ratios = new double[settingNames.length];
+        double[] decodeMillisPerMB = new double[settingNames.length];
+        for (int setting = 0; setting < settingNames.length; ++setting)
+        {
+            List<byte[]> wire = (setting == 0) ? stream : compress(stream, setting == 2);
+            long wireBytes = 0;
+            for (byte[] message : wire)
+                wireBytes += message.length;
+            ratios[setting] = (double)originalBytes / wireBytes;
+
+            // Warm up, then keep the best of a few runs.
+            decode(wire, setting != 0, setting == 2);
+            long bestNanos = Long.MAX_VALUE;
+            for (int run = 0; run < 5; ++run)
+                bestNanos = Math.min(bestNanos, decode(wire, setting != 0, setting == 2));
+            decodeMillisPerMB[setting] = bestNanos / 1e6 / megabytes;
+        }
+
+        System.out.println();
+        StringBuilder header = new StringBuilder(String.format(Locale.ROOT, "%-28s %6s %14s", "setting", "ratio", "decode CPU"));
+        for (String linkName : LINK_NAMES)
+            header.append(String.format(Locale.ROOT, " %28s", linkName));
+        System.out.println(header);
+        for (int setting = 0; setting < settingNames.length; ++setting)
+        {
+            StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-28s %6.1f %8.2f ms/MB",
+                    settingNames[setting], ratios[setting], decodeMillisPerMB[setting]));
+            for (double linkMbps : LINK_MBPS)
+                row.append(String.format(Locale.ROOT, " %22.2f ms/MB", totalMillisPerMB(ratios[setting], decodeMillisPerMB[setting], linkMbps)));
+            System.out.println(row);
+        }
+
+        System.out.println();
+        for (int link = 0; link < LINK_MBPS.length; ++link)
+        {
+            int best = 0;
+            for (int setting = 1; setting < settingNames.length; ++setting)
+            {
+                if (totalMillisPerMB(ratios[setting], decodeMillisPerMB[setting], LINK_MBPS[link])
+                        < totalMillisPerMB(ratios[best], decodeMillisPerMB[best], LINK_MBPS[link]))
+                    best = setting;
+            }
+            System.out.println("Best on " + LINK_NAMES[link] + ": " + settingNames[best]
+                    + "; adaptive: " + adaptiveChoice(stream, LINK_MBPS[link]));
+        }
+    }
+
+    /** Time to receive one MB of JSON: transfer of its compressed size, plus decoding. */
+    static double totalMillisPerMB(double ratio, double decodeMillisPerMB, double linkMbps)
+    {
+        double wireBits = 1024.0 * 1024.0 * 8.0 / ratio;
+        return wireBits / (linkMbps * 1e6) * 1000.0 + decodeMillisPerMB;
+    }
+
+    /** Generate tr_json2 Update messages for random items, each an array of one to three Updates. */
+    static List<byte[]> generate(int messages, int items)
+    {
+        Random random = new Random(1);
+        double[] prices = new double[items];
+        for (int i = 0; i < items; ++i)
+            prices[i] = 10 + random.nextInt(500);
+        long volume = 1000000;
+
+        List<byte[]> stream = new ArrayList<byte[]>(messages);
+        for (int i = 0; i < messages; ++i)
+        {
+            JSONArray jsonArray = new JSONArray();
+            int updates = 1 + random.nextInt(3);
+            for (int j = 0; j < updates; ++j)
+            {
+                int item = random.nextInt(items);
+                prices[item] = Math.max(0.01, prices[item] + (random.nextInt(21) - 10) * 0.01);
+                volume += random.nextInt(1000);
+                JSONObject fieldsJson = new JSONObject()
+                    .put("BID", Math.round(prices[item] * 100) / 100.0)
+                    .put("ASK", Math.round((prices[item] + 0.01 * (1 + random.nextInt(5))) * 100) / 100.0)
+                    .put("BIDSIZE", 100 * (1 + random.nextInt(50)))
+                    .put("ASKSIZE", 100 * (1 + random.nextInt(50)))
+                    .put("ACVOL_1", volume)
+                    .put("QUOTIM", String.format(Locale.ROOT, "%02d:%02d:%02d.%03d", 14, (i / 60000) % 60, (i / 1000) % 60, i % 1000));
+                jsonArray.put(new JSONObject()
+                    .put("ID", 2 + item)
+                    .put("Type", "Update")
+                    .put("UpdateType", "Quote")
+                    .put("DoNotConflate", false)
+                    .put("Key", new JSONObject().put("Service", "ELEKTRON_DD").put("Name", "RIC" + item + ".N"))
+                    .put("SeqNumber", i)
+                    .put("Fields", fieldsJson));
+            }
+            stream.add(jsonArray.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return stream;
+    }
+
+    /** Compress each message as a permessage-deflate server would. */
+    static List<byte[]> compress(List<byte[]> stream, boolean noContextTakeover)
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] buffer = new byte[64 * 1024];
+        List<byte[]> compressed = new ArrayList<byte[]>(stream.size());
+        for (byte[] message : stream)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(message.length);
+            deflater.setInput(message);
+            int count;
+            do {
+                count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, count);
+            } while (count == buffer.length);
+            byte[] bytes = out.toByteArray();
+            compressed.add(Arrays.copyOf(bytes, bytes.length - WebSocketFrames.DEFLATE_TAIL.length));
+            if (noContextTakeover)
+                deflater.reset();
+        }
+        deflater.end();
+        return compressed;
+    }
+
+    /** Inflate (if compressed) and decode every message; returns the thread's CPU time in nanoseconds. */
+    static long decode(List<byte[]> wire, boolean compressed, boolean noContextTakeover) throws Exception
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[16 * 1024];
+        long length = 0;
+
+        long start = threadMXBean.getCurrentThreadCpuTime();
+        for (byte[] message : wire)
+        {
+            String text;
+            if (compressed)
+            {
+                inflated.reset();
+                for (byte[] input : new byte[][] { message, WebSocketFrames.DEFLATE_TAIL })
+                {
+                    inflater.setInput(input);
+                    while (true)
+                    {
+                        int count = inflater.inflate(buffer);
+                        inflated.write(buffer, 0, count);
+                        if (count == 0 && (inflater.needsInput() || inflater.finished()))
+                            break;
+                    }
+                }
+                if (noContextTakeover)
+                    inflater.reset();
+                text = new String(inflated.toByteArray(), StandardCharsets.UTF_8);
+            }
+            else
+            {
+                text = new String(message, StandardCharsets.UTF_8);
+            }
+            length += text.length();
+        }
+        long nanos = threadMXBean.getCurrentThreadCpuTime() - start;
+        inflater.end();
+        if (length == 0)
+            System.out.println("Nothing decoded");
+        return nanos;
+    }
+
+    /**
+     * Feed the stream to AdaptiveDeflate as a session would, with the connection's counters
+     * while compression is on and none while it is off; returns its final choice.
+     */
+    static String adaptiveChoice(List<byte[]> stream, double linkMbps) throws Exception
+    {
+        AdaptiveDeflate adaptiveDeflate = new AdaptiveDeflate(new DeflateSettings(), linkMbps);
+        DeflateSettings.Stats stats = new DeflateSettings.Stats();
+        Inflater inflater = new Inflater(true);
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[16 * 1024];
+        List<byte[]> wire = compress(stream, false);
+
+        for (int i = 0; i < wire.size(); ++i)
+        {
+            if (!adaptiveDeflate.settings().isEnabled())
+            {
+                adaptiveDeflate.record(new String(stream.get(i), StandardCharsets.UTF_8), null);
+                continue;
+            }
+            byte[] message = wire.get(i);
+            long start = System.nanoTime();
+            inflated.reset();
+            for (byte[] input : new byte[][] { message, WebSocketFrames.DEFLATE_TAIL })
+            {
+                inflater.setInput(input);
+                while (true)
+                {
+                    int count = inflater.inflate(buffer);
+                    inflated.write(buffer, 0, count);
+                    if (count == 0 && (inflater.needsInput() || inflater.finished()))
+                        break;
+                }
+            }
+            String text = new String(inflated.toByteArray(), StandardCharsets.UTF_8);
+            stats.compressed(message.length, inflated.size(), System.nanoTime() - start);
+            adaptiveDeflate.record(text, stats);
+        }
+        inflater.end();
+        return adaptiveDeflate.toString();
+    }
+}
@@ -0,0 +1,205 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * The permessage-deflate (RFC 7692) offer a client makes when opening a WebSocket: whether
+ * to offer compression at all, and its parameters.
+ *
+ * - server_max_window_bits (8-15) limits the server's compression window, trading
+ *   compression ratio for memory.
+ * - server_no_context_takeover makes the server compress each message on its own, so that
+ *   the client does not keep an inflate context between messages, at the cost of ratio.
+ * - client_max_window_bits and client_no_context_takeover are the same for the messages
+ *   the client sends.
+ *
+ * The server may decline compression or accept it with other parameters; the transports
+ * follow its response. On links with plenty of bandwidth (e.g. co-located), inflating can
+ * cost more than the transfer time it saves; AdaptiveDeflate chooses per session.
+ */
+public class DeflateSettings {
+
+    private boolean _enabled = true;
+    private int _serverMaxWindowBits = 0;
+    private int _clientMaxWindowBits = 0;
+    private boolean _serverNoContextTakeover = false;
+    private boolean _clientNoContextTakeover = false;
+
+    /**
+     * Compression counters of a connection, kept by the transports that inflate messages
+     * themselves. Updated on the connection's reading thread, where listeners are called.
+     */
+    public static class Stats
+    {
+        /** Compressed messages received, their size on the wire and inflated, and the time spent inflating them. */
+        long _compressedMessages;
+        long _compressedBytes;
+        long _inflatedBytes;
+        long _inflateNanos;
+
+        /** Uncompressed messages received, and their size. */
+        long _plainMessages;
+        long _plainBytes;
+
+        public long compressedMessages() { return _compressedMessages; }
+        public long compressedBytes() { return _compressedBytes; }
+        public long inflatedBytes() { return _inflatedBytes; }
+        public long inflateNanos() { return _inflateNanos; }
+        public long plainMessages() { return _plainMessages; }
+        public long plainBytes() { return _plainBytes; }
+
+        void compressed(int compressedBytes, int inflatedBytes, long inflateNanos)
+        {
+            ++_compressedMessages;
+            _compressedBytes += compressedBytes;
+            _inflatedBytes += inflatedBytes;
+            _inflateNanos += inflateNanos;
+        }
+
+        void plain(int bytes)
+        {
+            ++_plainMessages;
+            _plainBytes += bytes;
+        }
+    }
+
+    /** Offer compression (the default), or not. */
+    public DeflateSettings setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+        return this;
+    }
+
+    /** Largest compression window (8 to 15 bits) the server may use, or 0 to leave it to the server. */
+    public DeflateSettings setServerMaxWindowBits(int serverMaxWindowBits)
+    {
+        _serverMaxWindowBits = checkWindowBits(serverMaxWindowBits);
+        return this;
+    }
+
+    /** Largest compression window (8 to 15 bits) the client will use, or 0 to leave it unstated. */
+    public DeflateSettings setClientMaxWindowBits(int clientMaxWindowBits)
+    {
+        _clientMaxWindowBits = checkWindowBits(clientMaxWindowBits);
+        return this;
+    }
+
+    /** Ask the server to compress each message independently of the previous ones. */
+    public DeflateSettings setServerNoContextTakeover(boolean serverNoContextTakeover)
+    {
+        _serverNoContextTakeover = serverNoContextTakeover;
+        return this;
+    }
+
+    /** State that the client compresses each message independently of the previous ones. */
+    public DeflateSettings setClientNoContextTakeover(boolean clientNoContextTakeover)
+    {
+        _clientNoContextTakeover = clientNoContextTakeover;
+        return this;
+    }
+
+    public boolean isEnabled() { return _enabled; }
+    public int getServerMaxWindowBits() { return _serverMaxWindowBits; }
+    public int getClientMaxWindowBits() { return _clientMaxWindowBits; }
+    public boolean isServerNoContextTakeover() { return _serverNoContextTakeover; }
+    public boolean isClientNoContextTakeover() { return _clientNoContextTakeover; }
+
+    /** Copy of these settings, e.g. to change for one session. */
+    public DeflateSettings copy()
+    {
+        DeflateSettings copy = new DeflateSettings();
+        copy._enabled = _enabled;
+        copy._serverMaxWindowBits = _serverMaxWindowBits;
+        copy._clientMaxWindowBits = _clientMaxWindowBits;
+        copy._serverNoContextTakeover = _serverNoContextTakeover;
+        copy._clientNoContextTakeover = _clientNoContextTakeover;
+        return copy;
+    }
+
+    /**
+     * Sec-WebSocket-Extensions value offering these settings,
+     * e.g. "permessage-deflate; server_max_window_bits=10", or null if compression is disabled.
+     */
+    public String offer()
+    {
+        if (!_enabled)
+            return null;
+        List<String> parameters = new ArrayList<String>();
+        parameters.add("permessage-deflate");
+        if (_serverMaxWindowBits > 0)
+            parameters.add("server_max_window_bits=" + _serverMaxWindowBits);
+        if (_clientMaxWindowBits > 0)
+            parameters.add("client_max_window_bits=" + _clientMaxWindowBits);
+        if (_serverNoContextTakeover)
+            parameters.add("server_no_context_takeover");
+        if (_clientNoContextTakeover)
+            parameters.add("client_no_context_takeover");
+        return String.join("; ", parameters);
+    }
+
+    /** The offer, or "off". */
+    public String toString()
+    {
+        return _enabled ? offer() : "off";
+    }
+
+    /**
+     * Parse settings from the command line: "on" (compression with default parameters),
+     * "off", or parameters separated by ';' or ',', e.g.
+     * "server_max_window_bits=10;server_no_context_takeover".
+     * @throws IllegalArgumentException If a parameter is unknown or out of range
+     */
+    public static DeflateSettings parse(String value)
+    {
+        DeflateSettings settings = new DeflateSettings();
+        if (value.equals("on"))
+            return settings;
+        if (value.equals("off"))
+            return settings.setEnabled(false);
+
+        for (String parameter : value.split("[;,]"))
+        {
+            String[] nameValue = parameter.trim().split("=", 2);
+            String name = nameValue[0].trim();
+            try {
+                switch (name)
+                {
+                    case "server_max_window_bits":
+                        settings.setServerMaxWindowBits(Integer.parseInt(nameValue[1].trim()));
+                        break;
+                    case "client_max_window_bits":
+                        settings.setClientMaxWindowBits(Integer.parseInt(nameValue[1].trim()));
+                        break;
+                    case "server_no_context_takeover":
+                        settings.setServerNoContextTakeover(true);
+                        break;
+                    case "client_no_context_takeover":
+                        settings.setClientNoContextTakeover(true);
+                        break;
+                    case "permessage-deflate":
+                    case "":
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown permessage-deflate parameter: " + name);
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + name);
+            }
+        }
+        return settings;
+    }
+
+    private static int checkWindowBits(int windowBits)
+    {
+        if (windowBits != 0 && (windowBits < 8 || windowBits > 15))
+            throw new IllegalArgumentException("Window bits must be between 8 and 15: " + windowBits);
+        return windowBits;
+    }
+}
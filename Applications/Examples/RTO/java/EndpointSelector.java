@@ -0,0 +1,297 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/*
+ * Ranks candidate endpoints (e.g. from service discovery) by measured latency.
+ *
+ * Each endpoint is probed by opening a TCP connection, performing the TLS handshake and
+ * sending a WebSocket upgrade request, timing each step; the endpoint is healthy if it
+ * accepts the upgrade. All candidates are probed in parallel, and their latencies are
+ * smoothed over successive probes so that one slow probe does not reorder them.
+ *
+ * Once started, the selector re-probes the candidates periodically. When the endpoint in
+ * use becomes unhealthy, or another healthy endpoint has become clearly faster (by the
+ * migration ratio), the MigrationListener is told to move to it. The endpoint in use is
+ * the one last reported through select(), e.g. by the session once it has moved, so a move
+ * that fails or a reconnect to another endpoint is taken into account.
+ */
+public class EndpointSelector {
+
+    /** Receives the moves to a better endpoint. */
+    public interface MigrationListener
+    {
+        void onMigrate(String from, String to, Probe probe);
+    }
+
+    /**
+     * Result of probing an endpoint. Times are in milliseconds.
+     */
+    public static class Probe
+    {
+        final String _host;
+        final double _connectMillis;
+        final double _tlsMillis;
+        final double _upgradeMillis;
+        final boolean _healthy;
+        final String _error;
+
+        Probe(String host, double connectMillis, double tlsMillis, double upgradeMillis, boolean healthy, String error)
+        {
+            _host = host;
+            _connectMillis = connectMillis;
+            _tlsMillis = tlsMillis;
+            _upgradeMillis = upgradeMillis;
+            _healthy = healthy;
+            _error = error;
+        }
+
+        public String host() { return _host; }
+        public double connectMillis() { return _connectMillis; }
+        public double tlsMillis() { return _tlsMillis; }
+        public double upgradeMillis() { return _upgradeMillis; }
+        public double totalMillis() { return _connectMillis + _tlsMillis + _upgradeMillis; }
+        public boolean isHealthy() { return _healthy; }
+
+        /** e.g. "host:443 34.1 ms (connect 8.2, TLS 17.5, upgrade 8.4)" or "host:443 unhealthy (Connection refused)". */
+        public String toString()
+        {
+            if (!_healthy)
+                return _host + " unhealthy (" + _error + ")";
+            return _host + String.format(Locale.ROOT, " %.1f ms (connect %.1f, TLS %.1f, upgrade %.1f)",
+                    totalMillis(), _connectMillis, _tlsMillis, _upgradeMillis);
+        }
+    }
+
+    private final List<String> _hosts;
+    private final int _timeoutMillis;
+    private final double _migrationRatio;
+    private final SSLSocketFactory _sslSocketFactory = TlsConfig.sslContext().getSocketFactory();
+    private final ExecutorService _probeExecutor;
+    private ScheduledExecutorService _timer;
+    private MigrationListener _migrationListener;
+
+    /** Latest probe of each endpoint, with its latencies smoothed. */
+    private final Map<String, Probe> _probes = new ConcurrentHashMap<String, Probe>();
+
+    /** Endpoint in use, or null if none has been selected. */
+    private volatile String _current;
+
+    /**
+     * @param hosts Candidate endpoints, as "host:port"
+     * @param timeoutMillis Time allowed for each step of a probe
+     * @param migrationRatio Move to another endpoint when its latency is below this share of the current one's (e.g. 0.7)
+     */
+    public EndpointSelector(List<String> hosts, int timeoutMillis, double migrationRatio)
+    {
+        _hosts = new ArrayList<String>(hosts);
+        _timeoutMillis = timeoutMillis;
+        _migrationRatio = migrationRatio;
+        _probeExecutor = Executors.newFixedThreadPool(Math.max(1, _hosts.size()), runnable -> {
+            Thread thread = new Thread(runnable, "EndpointSelector-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void setMigrationListener(MigrationListener migrationListener)
+    {
+        _migrationListener = migrationListener;
+    }
+
+    /** Probe every candidate in parallel, and return the candidates from fastest to slowest, healthy ones first. */
+    public List<Probe> probeAll()
+    {
+        List<Future<Probe>> futures = new ArrayList<Future<Probe>>();
+        for (String host : _hosts)
+            futures.add(_probeExecutor.submit(() -> probe(host)));
+
+        for (Future<Probe> future : futures)
+        {
+            try {
+                Probe probe = future.get();
+                _probes.merge(probe.host(), probe, EndpointSelector::smooth);
+            } catch (Exception e) {
+                // probe() reports its own failures.
+            }
+        }
+        return ranking();
+    }
+
+    /** The candidates from fastest to slowest as of their latest probes, healthy ones first. */
+    public List<Probe> ranking()
+    {
+        List<Probe> ranking = new ArrayList<Probe>();
+        for (String host : _hosts)
+        {
+            Probe probe = _probes.get(host);
+            if (probe != null)
+                ranking.add(probe);
+        }
+        ranking.sort(Comparator.comparing((Probe probe) -> !probe.isHealthy()).thenComparingDouble(Probe::totalMillis));
+        return ranking;
+    }
+
+    /** The candidates from fastest to slowest, as "host:port". Candidates not probed yet come last. */
+    public List<String> rankedHosts()
+    {
+        List<String> hosts = new ArrayList<String>();
+        for (Probe probe : ranking())
+            hosts.add(probe.host());
+        for (String host : _hosts)
+        {
+            if (!hosts.contains(host))
+                hosts.add(host);
+        }
+        return hosts;
+    }
+
+    /** Record the endpoint in use, which later probes compare the others against. Call it whenever the endpoint in use changes. */
+    public void select(String host)
+    {
+        _current = host;
+    }
+
+    /** Re-probe the candidates periodically, migrating away from the endpoint in use when another one is better. */
+    public synchronized void start(long periodMillis)
+    {
+        if (_timer != null || periodMillis <= 0)
+            return;
+        _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EndpointSelector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _timer.scheduleWithFixedDelay(this::reprobe, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop()
+    {
+        if (_timer != null)
+        {
+            _timer.shutdownNow();
+            _timer = null;
+        }
+        _probeExecutor.shutdownNow();
+    }
+
+    private void reprobe()
+    {
+        List<Probe> ranking = probeAll();
+        String current = _current;
+        if (current == null || ranking.isEmpty())
+            return;
+
+        Probe best = ranking.get(0);
+        Probe currentProbe = _probes.get(current);
+        if (!best.isHealthy() || best.host().equals(current))
+            return;
+        if (currentProbe != null && currentProbe.isHealthy() && best.totalMillis() >= currentProbe.totalMillis() * _migrationRatio)
+            return;
+
+        MigrationListener migrationListener;
+        synchronized (this)
+        {
+            migrationListener = _migrationListener;
+        }
+        if (migrationListener != null)
+            migrationListener.onMigrate(current, best.host(), best);
+    }
+
+    /** Time the TCP connection, TLS handshake and WebSocket upgrade to an endpoint. */
+    Probe probe(String host)
+    {
+        int colon = host.lastIndexOf(':');
+        String hostName = (colon > 0) ? host.substring(0, colon) : host;
+        int port = (colon > 0) ? Integer.parseInt(host.substring(colon + 1)) : 443;
+        double connectMillis = 0;
+        double tlsMillis = 0;
+
+        try (Socket socket = new Socket())
+        {
+            long start = System.nanoTime();
+            socket.connect(new InetSocketAddress(hostName, port), _timeoutMillis);
+            socket.setSoTimeout(_timeoutMillis);
+            long connected = System.nanoTime();
+            connectMillis = (connected - start) / 1e6;
+
+            try (SSLSocket sslSocket = (SSLSocket)_sslSocketFactory.createSocket(socket, hostName, port, true))
+            {
+                sslSocket.startHandshake();
+                long handshaken = System.nanoTime();
+                tlsMillis = (handshaken - connected) / 1e6;
+
+                byte[] key = new byte[16];
+                ThreadLocalRandom.current().nextBytes(key);
+                String request = "GET /WebSocket HTTP/1.1\r\n"
+                    + "Host: " + hostName + "\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(key) + "\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n"
+                    + "Sec-WebSocket-Protocol: tr_json2\r\n\r\n";
+                OutputStream out = sslSocket.getOutputStream();
+                out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+
+                String statusLine = readLine(sslSocket.getInputStream());
+                double upgradeMillis = (System.nanoTime() - handshaken) / 1e6;
+                boolean healthy = statusLine.startsWith("HTTP/1.1 101");
+                return new Probe(host, connectMillis, tlsMillis, upgradeMillis, healthy, healthy ? null : statusLine);
+            }
+        } catch (IOException | RuntimeException e) {
+            return new Probe(host, connectMillis, tlsMillis, 0, false, e.toString());
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n')
+        {
+            if (c != '\r')
+                line.append((char)c);
+        }
+        return line.toString();
+    }
+
+    /** Average a new probe with the previous one, unless either is unhealthy. */
+    static Probe smooth(Probe previous, Probe latest)
+    {
+        if (!previous.isHealthy() || !latest.isHealthy())
+            return latest;
+        return new Probe(latest.host(),
+                (previous.connectMillis() + latest.connectMillis()) / 2,
+                (previous.tlsMillis() + latest.tlsMillis()) / 2,
+                (previous.upgradeMillis() + latest.upgradeMillis()) / 2,
+                true, null);
+    }
+}
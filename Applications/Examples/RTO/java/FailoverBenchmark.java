@@ -0,0 +1,239 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.*;
+
+/*
+ * Measures the delivery gap of a hot-standby failover against two local MockRealTimeServers
+ * publishing the same Updates (with the same SeqNumbers) for one item.
+ *
+ * Two sessions, one per server, stream the item into a FailoverController. Once the item
+ * is streaming, the server of the active session is made to fail, first by dropping its
+ * connections, then (after the failed session has reconnected as a standby) by hanging.
+ * For each failure the benchmark reports the longest interval between two consecutive
+ * delivered Updates around the failure (against the publishing interval), and the number
+ * of Updates missed or delivered twice, which should both be 0.
+ *
+ * Usage: java FailoverBenchmark [updates per second] [stale timeout in milliseconds]
+ * Defaults to 1000 Updates per second and a 200 ms stale timeout.
+ */
+public class FailoverBenchmark {
+
+    static final String ITEM_NAME = "MOCK.N";
+
+    /**
+     * A client session to a mock server, feeding the failover controller.
+     */
+    static class MockSession implements SubscriptionManager.StreamProvider
+    {
+        final String _name;
+        final String _url;
+        final FailoverController _controller;
+        final ItemCache _itemCache = new ItemCache(ItemCache.EvictionPolicy.IDLE, 0, 0);
+        final SubscriptionManager _subscriptionManager = new SubscriptionManager(this);
+        WebSocket _websocket;
+
+        MockSession(String name, String url, FailoverController controller)
+        {
+            _name = name;
+            _url = url;
+            _controller = controller;
+        }
+
+        public synchronized ItemCache.Item acquireStream(ItemCache.Key key)
+        {
+            ItemCache.Item item = _itemCache.acquire(key);
+            if (item == null)
+            {
+                item = _itemCache.add(key, 2 + _itemCache.size());
+                _itemCache.acquire(item);
+            }
+            return item;
+        }
+
+        public synchronized void releaseStream(ItemCache.Item item)
+        {
+            _itemCache.release(item);
+        }
+
+        synchronized void connect() throws IOException
+        {
+            _websocket = new WebSocketFactory().createSocket(_url)
+                .addProtocol("tr_json2")
+                .addListener(new WebSocketAdapter() {
+                    public void onTextMessage(WebSocket websocket, String message) {
+                        JSONArray jsonArray = new JSONArray(message);
+                        for (int i = 0; i < jsonArray.length(); ++i)
+                            processMessage(websocket, jsonArray.getJSONObject(i));
+                    }
+
+                    public void onConnected(WebSocket websocket, Map<String, List<String>> headers) {
+                        websocket.sendText(new JSONObject().put("ID", 1).put("Domain", "Login")
+                                .put("Key", new JSONObject().put("Name", "user")).toString());
+                    }
+
+                    public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                            WebSocketFrame clientCloseFrame, boolean closedByServer) {
+                        _controller.sessionDown(_name, "disconnected");
+                    }
+                });
+            _websocket.connectAsynchronously();
+        }
+
+        void processMessage(WebSocket websocket, JSONObject messageJson)
+        {
+            _controller.heartbeat(_name);
+            String messageType = messageJson.getString("Type");
+            if (messageType.equals("Ping"))
+            {
+                websocket.sendText("{\"Type\":\"Pong\"}");
+                return;
+            }
+            if (messageJson.optString("Domain").equals("Login"))
+            {
+                for (ItemCache.Item item : _itemCache.items())
+                    websocket.sendText(new JSONObject().put("ID", item.streamId()).put("Key", item.key().toJson()).toString());
+                _controller.sessionUp(_name);
+                return;
+            }
+
+            ItemCache.Item item = messageType.equals("Status") ? _itemCache.getByStreamId(messageJson.getInt("ID")) : _itemCache.apply(messageJson);
+            if (item != null)
+                _subscriptionManager.dispatch(item, messageJson);
+        }
+    }
+
+    /** Updates delivered by the controller: SeqNumber and time of delivery. */
+    static long[] deliveredSeq = new long[1 << 20];
+    static long[] deliveredNanos = new long[1 << 20];
+    static volatile int deliveredCount = 0;
+
+    public static void main(String[] args) throws Exception
+    {
+        int rate = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        long staleMillis = (args.length > 1) ? Long.parseLong(args[1]) : 200;
+        long intervalNanos = 1000000000L / rate;
+
+        MockRealTimeServer[] servers = { new MockRealTimeServer(0), new MockRealTimeServer(0) };
+        for (MockRealTimeServer server : servers)
+            server.start();
+
+        FailoverController controller = new FailoverController(Arrays.asList("primary", "standby"), (subscription, messageJson) -> {
+            if (!messageJson.getString("Type").equals("Update"))
+                return;
+            int count = deliveredCount;
+            if (count < deliveredSeq.length)
+            {
+                deliveredSeq[count] = messageJson.getLong("SeqNumber");
+                deliveredNanos[count] = System.nanoTime();
+                deliveredCount = count + 1;
+            }
+        }, staleMillis, 1024);
+
+        MockSession[] sessions = {
+            new MockSession("primary", servers[0].url(), controller),
+            new MockSession("standby", servers[1].url(), controller)
+        };
+        controller.setFailoverListener((failed, active, reason) -> {
+            System.out.println("FAILOVER: " + failed + " failed (" + reason + "), " + active + " is active");
+        });
+        controller.start();
+        for (MockSession session : sessions)
+        {
+            session._subscriptionManager.subscribe(new ItemCache.Key("MOCK", ITEM_NAME, null), controller.listener(session._name));
+            session.connect();
+        }
+
+        // Publish the same Updates on both servers at a steady rate.
+        Thread publisher = new Thread(() -> {
+            long seq = 0;
+            long next = System.nanoTime();
+            while (!Thread.currentThread().isInterrupted())
+            {
+                ++seq;
+                JSONObject fieldsJson = new JSONObject().put("BID", 100 + (seq % 100) * 0.01).put("SEQ", seq);
+                for (MockRealTimeServer server : servers)
+                    server.publish(ITEM_NAME, seq, fieldsJson);
+                next += intervalNanos;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }, "publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+
+        Thread.sleep(1000);
+        System.out.println("Publishing " + rate + " Updates per second, stale timeout " + staleMillis + " ms");
+
+        // Failure 1: the active server drops its connections.
+        int active = controller.active().equals("primary") ? 0 : 1;
+        int from = deliveredCount;
+        long failedAt = System.nanoTime();
+        servers[active].drop();
+        Thread.sleep(1000);
+        report("Disconnect of " + sessions[active]._name, from, deliveredCount, failedAt, intervalNanos);
+
+        // Rebuild the failed session, which comes back as a standby.
+        sessions[active].connect();
+        Thread.sleep(1000);
+
+        // Failure 2: the active server hangs, so the failure is found by the stale timeout.
+        active = controller.active().equals("primary") ? 0 : 1;
+        from = deliveredCount;
+        failedAt = System.nanoTime();
+        servers[active].setStalled(true);
+        Thread.sleep(staleMillis + 1000);
+        report("Hang of " + sessions[active]._name, from, deliveredCount, failedAt, intervalNanos);
+
+        publisher.interrupt();
+        controller.setFailoverListener(null);
+        controller.stop();
+        for (MockRealTimeServer server : servers)
+            server.stop();
+        System.exit(0);
+    }
+
+    /** Report the largest delivery gap around a failure and the Updates missed or repeated. */
+    static void report(String failure, int from, int to, long failedAt, long intervalNanos)
+    {
+        long maxGap = 0;
+        long maxGapAfter = 0;
+        int missed = 0;
+        int repeated = 0;
+        for (int i = Math.max(from, 1); i < to; ++i)
+        {
+            long gap = deliveredNanos[i] - deliveredNanos[i - 1];
+            if (gap > maxGap)
+            {
+                maxGap = gap;
+                maxGapAfter = deliveredNanos[i - 1] - failedAt;
+            }
+            long step = deliveredSeq[i] - deliveredSeq[i - 1];
+            if (step > 1)
+                missed += (int)(step - 1);
+            else if (step < 1)
+                ++repeated;
+        }
+        System.out.println(failure + ": " + (to - from) + " Updates delivered, longest gap "
+                + String.format(Locale.ROOT, "%.1f ms", maxGap / 1e6) + " (starting "
+                + String.format(Locale.ROOT, "%.1f ms", maxGapAfter / 1e6) + " after the failure, publishing interval "
+                + String.format(Locale.ROOT, "%.1f ms", intervalNanos / 1e6) + "), "
+                + missed + " missed, " + repeated + " repeated");
+    }
+}
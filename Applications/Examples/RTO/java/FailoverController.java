@@ -0,0 +1,364 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.*;
+
+/*
+ * Active/standby failover between sessions that are logged in and streaming the same items.
+ *
+ * Consumers read the items through one listener, which receives the messages of the
+ * active session only. The standby sessions keep streaming; their recent messages are kept
+ * per item in a short backlog, minus those the active session has already delivered
+ * (matched by SeqNumber or content, as in HotStandbyArbiter, which also counts repeated
+ * identical messages of a session as distinct occurrences).
+ *
+ * When the active session goes down (sessionDown(), e.g. on disconnect) or goes quiet for
+ * longer than the stale timeout (checked against heartbeat(), which the session calls for
+ * every message it receives, including Pings), the next standby that is up is promoted.
+ * Each item then catches up from the new active session's backlog before its next message,
+ * so the messages the failed session never delivered are not lost, and the consumer sees
+ * no duplicates. The failed session is reported to the FailoverListener, which can rebuild
+ * it in the background (e.g. reconnect); once it logs in again (sessionUp()) it becomes a
+ * standby. The active session does not change back while it stays up.
+ */
+public class FailoverController {
+
+    /** Receives session failures. */
+    public interface FailoverListener
+    {
+        /**
+         * @param failed Session that failed (the active session or a standby)
+         * @param active Session now active, or null if none is up
+         * @param reason Why the session failed, e.g. "disconnected" or "stale"
+         */
+        void onFailover(String failed, String active, String reason);
+    }
+
+    /** A standby message of an item. */
+    static class Pending
+    {
+        final SubscriptionManager.Subscription _subscription;
+        final JSONObject _messageJson;
+        final long _identity;
+
+        Pending(SubscriptionManager.Subscription subscription, JSONObject messageJson, long identity)
+        {
+            _subscription = subscription;
+            _messageJson = messageJson;
+            _identity = identity;
+        }
+    }
+
+    /** A recent message of an item, as received from one or more sessions. */
+    static class Occurrence
+    {
+        /** A bit set for each session the message has arrived from. */
+        long _sessions;
+
+        /** Whether the message has been passed to the listener. */
+        boolean _delivered;
+    }
+
+    /**
+     * Delivery state of one item.
+     */
+    class ItemState
+    {
+        /** Occurrences of recent messages, by identity. */
+        final LinkedHashMap<Long, Occurrence> _seen = new LinkedHashMap<Long, Occurrence>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<Long, Occurrence> eldest)
+            {
+                return size() > _window;
+            }
+        };
+
+        /** Recent standby messages not delivered yet, oldest first. */
+        final ArrayDeque<Pending> _backlog = new ArrayDeque<Pending>();
+
+        /** Failover generation the item has caught up with. */
+        int _generation;
+
+        ItemState(int generation)
+        {
+            _generation = generation;
+        }
+    }
+
+    private final String[] _sessions;
+    private final SubscriptionManager.Listener _listener;
+    private final long _staleMillis;
+    private final int _window;
+    private FailoverListener _failoverListener;
+
+    private final boolean[] _up;
+
+    /** Time (in milliseconds) each session last received a message. */
+    private final AtomicLongArray _lastHeard;
+
+    /** Index of the active session, or -1 if none is up. */
+    private volatile int _active = -1;
+
+    /** Incremented on each change of the active session. */
+    private volatile int _generation = 0;
+
+    private final Map<ItemCache.Key, ItemState> _items = new ConcurrentHashMap<ItemCache.Key, ItemState>();
+    private ScheduledExecutorService _watchdog;
+
+    /**
+     * @param sessions Names of the sessions, in order of preference (at most 64)
+     * @param listener Listener receiving the messages of the active session
+     * @param staleMillis Time without any message after which a session is considered failed. 0 disables it.
+     * @param window Number of recent messages remembered per item, delivered or waiting in a standby backlog
+     */
+    public FailoverController(List<String> sessions, SubscriptionManager.Listener listener, long staleMillis, int window)
+    {
+        if (sessions.isEmpty() || sessions.size() > 64)
+            throw new IllegalArgumentException("Failover needs 1 to 64 sessions");
+        _sessions = sessions.toArray(new String[0]);
+        _listener = listener;
+        _staleMillis = staleMillis;
+        _window = window;
+        _up = new boolean[_sessions.length];
+        _lastHeard = new AtomicLongArray(_sessions.length);
+    }
+
+    public synchronized void setFailoverListener(FailoverListener failoverListener)
+    {
+        _failoverListener = failoverListener;
+    }
+
+    /** Start checking the active session for staleness. */
+    public synchronized void start()
+    {
+        if (_watchdog != null || _staleMillis <= 0)
+            return;
+        _watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FailoverController");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, _staleMillis / 4);
+        _watchdog.scheduleAtFixedRate(this::checkStale, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop()
+    {
+        if (_watchdog != null)
+        {
+            _watchdog.shutdownNow();
+            _watchdog = null;
+        }
+    }
+
+    /** Listener for the subscriptions of a session. */
+    public SubscriptionManager.Listener listener(String session)
+    {
+        int index = indexOf(session);
+        return (subscription, messageJson) -> onMessage(index, subscription, messageJson);
+    }
+
+    /** Record that a session received a message. */
+    public void heartbeat(String session)
+    {
+        _lastHeard.lazySet(indexOf(session), System.currentTimeMillis());
+    }
+
+    /** A session has logged in and is streaming. It becomes active if no session is. */
+    public void sessionUp(String session)
+    {
+        int index = indexOf(session);
+        synchronized (this)
+        {
+            _lastHeard.set(index, System.currentTimeMillis());
+            _up[index] = true;
+            if (_active >= 0)
+                return;
+            _active = index;
+            ++_generation;
+        }
+        catchUpAll();
+    }
+
+    /** A session has failed. If it was active, the next standby that is up is promoted. */
+    public void sessionDown(String session, String reason)
+    {
+        int index = indexOf(session);
+        int next;
+        FailoverListener failoverListener;
+        synchronized (this)
+        {
+            if (!_up[index])
+                return;
+            _up[index] = false;
+            failoverListener = _failoverListener;
+            next = _active;
+            if (next == index)
+            {
+                next = -1;
+                for (int i = 1; i < _sessions.length && next < 0; ++i)
+                {
+                    int candidate = (index + i) % _sessions.length;
+                    if (_up[candidate])
+                        next = candidate;
+                }
+                _active = next;
+                ++_generation;
+            }
+        }
+
+        // Items catch up as soon as the new active session delivers their next message; catch the others up now.
+        if (next >= 0)
+            catchUpAll();
+        if (failoverListener != null)
+            failoverListener.onFailover(session, (next >= 0) ? _sessions[next] : null, reason);
+    }
+
+    /** Name of the active session, or null if none is up. */
+    public String active()
+    {
+        int active = _active;
+        return (active >= 0) ? _sessions[active] : null;
+    }
+
+    void onMessage(int session, SubscriptionManager.Subscription subscription, JSONObject messageJson)
+    {
+        long identity = HotStandbyArbiter.identity(messageJson);
+        ItemState state = _items.computeIfAbsent(subscription.key(), key -> new ItemState(_generation));
+        synchronized (state)
+        {
+            // A message this session has already received is a new occurrence of it.
+            long bit = 1L << session;
+            Occurrence occurrence;
+            while ((occurrence = state._seen.get(identity)) != null && (occurrence._sessions & bit) != 0)
+                identity = HotStandbyArbiter.nextOccurrence(identity);
+            if (occurrence == null)
+            {
+                occurrence = new Occurrence();
+                state._seen.put(identity, occurrence);
+            }
+            occurrence._sessions |= bit;
+
+            if (session == _active)
+            {
+                catchUp(state);
+                deliver(state, subscription, messageJson, identity);
+                return;
+            }
+
+            // A standby message: keep it in case the standby is promoted before the active session delivers it.
+            if (occurrence._delivered)
+                return;
+            state._backlog.add(new Pending(subscription, messageJson, identity));
+            if (state._backlog.size() > _window)
+                state._backlog.poll();
+        }
+    }
+
+    /** After a failover, deliver what the item's backlog holds and the failed session did not deliver. */
+    private void catchUp(ItemState state)
+    {
+        int generation = _generation;
+        if (state._generation == generation)
+            return;
+        state._generation = generation;
+
+        Pending pending;
+        while ((pending = state._backlog.poll()) != null)
+            deliver(state, pending._subscription, pending._messageJson, pending._identity);
+    }
+
+    private void catchUpAll()
+    {
+        for (ItemState state : _items.values())
+        {
+            synchronized (state)
+            {
+                catchUp(state);
+            }
+        }
+    }
+
+    /** Deliver a message unless it has already been delivered, and drop it (and older messages) from the backlog. */
+    private void deliver(ItemState state, SubscriptionManager.Subscription subscription, JSONObject messageJson, long identity)
+    {
+        Occurrence occurrence = state._seen.get(identity);
+        if (occurrence == null)
+        {
+            occurrence = new Occurrence();
+            state._seen.put(identity, occurrence);
+        }
+        else if (occurrence._delivered)
+        {
+            return;
+        }
+        occurrence._delivered = true;
+
+        if (!state._backlog.isEmpty())
+        {
+            boolean inBacklog = false;
+            for (Pending pending : state._backlog)
+            {
+                if (pending._identity == identity)
+                {
+                    inBacklog = true;
+                    break;
+                }
+            }
+            if (inBacklog)
+            {
+                for (Iterator<Pending> iterator = state._backlog.iterator(); iterator.hasNext(); )
+                {
+                    long pendingIdentity = iterator.next()._identity;
+                    iterator.remove();
+                    if (pendingIdentity == identity)
+                        break;
+                }
+            }
+        }
+
+        _listener.onMessage(subscription, messageJson);
+    }
+
+    private void checkStale()
+    {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < _sessions.length; ++i)
+        {
+            boolean up;
+            synchronized (this)
+            {
+                up = _up[i];
+            }
+            if (up && now - _lastHeard.get(i) > _staleMillis)
+                sessionDown(_sessions[i], "stale");
+        }
+    }
+
+    private int indexOf(String session)
+    {
+        for (int i = 0; i < _sessions.length; ++i)
+        {
+            if (_sessions[i].equals(session))
+                return i;
+        }
+        throw new IllegalArgumentException("Unknown session " + session);
+    }
+}
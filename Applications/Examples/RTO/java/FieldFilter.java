@@ -0,0 +1,426 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.json.*;
+
+/*
+ * Predicate over the fields of Updates, letting a subscription receive only the Updates
+ * it cares about. A filter is written in a small expression language:
+ *
+ *   BID > 100.5                   Comparison of a field with a number: > >= < <= == !=
+ *   DSPLY_NAME == 'IBM'           Comparison of a field with a string: == !=
+ *   moved(BID, 0.01)              The field moved by at least 0.01 since the last Update
+ *                                 the subscription received (or the Refresh)
+ *   crosses(BIDSIZE, 1000)        The field crossed 1000 since the previous Update carrying it
+ *   a && b, a || b, !a, (a)       Combinations
+ *
+ * A comparison with a field that is not in the Update is false, so e.g. "moved(BID, 0.01)"
+ * rejects Updates that do not change BID. Refresh and Status messages are never filtered.
+ *
+ * An expression is parsed once and compiled into a tree of MethodHandles, with && and ||
+ * as guards, so that evaluating it needs no parsing or interpretation of the expression text.
+ * The tree depends only on the shape of the expression (its fields, operators and strings);
+ * its numbers are read from the filter's array of constants. Filters of the same shape, e.g.
+ * "BID > 100" and "BID > 101", share one tree, so the trees (and the code the JVM generates
+ * for them) grow with the number of distinct shapes, not with the number of filters. As
+ * filters can come from users, at most MAX_SHAPES shared trees are kept, evicting the least
+ * recently used. The tree is held in a field rather than a constant, so the JIT
+ * does not inline it into accept(): each evaluation is an indirect call into the tree.
+ *
+ * A compiled filter is immutable and can be shared; the values that moved() and crosses()
+ * compare against are kept in a per-subscription state array (see newState()).
+ * SubscriptionManager evaluates filters on the dispatching thread, before a message is
+ * handed to a listener, so rejected Updates are never copied or queued.
+ */
+public class FieldFilter {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /** Type of compiled expressions: (double[] constants, double[] state, JSONObject fields) -> boolean. */
+    private static final MethodType PREDICATE_TYPE = MethodType.methodType(boolean.class, double[].class, double[].class, JSONObject.class);
+
+    private static final MethodHandle AND_FALSE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, PREDICATE_TYPE.parameterList());
+    private static final MethodHandle OR_TRUE = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, PREDICATE_TYPE.parameterList());
+    private static final MethodHandle NOT = findStatic("not", MethodType.methodType(boolean.class, boolean.class));
+
+    /** Largest number of shapes whose compiled expressions are kept for sharing. */
+    static final int MAX_SHAPES = 256;
+
+    /** Compiled expressions, by shape, in access order, so that iteration starts with the least recently used. */
+    private static final LinkedHashMap<String, MethodHandle> _shapes = new LinkedHashMap<String, MethodHandle>(16, 0.75f, true);
+
+    private final String _expression;
+    private final MethodHandle _predicate;
+    private final double[] _constants;
+
+    /** Fields whose values are kept in the state, by slot. */
+    private final String[] _slotFields;
+    /** Whether each slot is for moved() (updated when an Update passes) or crosses() (updated on every Update). */
+    private final boolean[] _slotIsMoved;
+
+    private FieldFilter(String expression, MethodHandle predicate, List<Double> constants, List<String> slotFields, List<Boolean> slotIsMoved)
+    {
+        _expression = expression;
+        _predicate = predicate;
+        _constants = new double[constants.size()];
+        for (int i = 0; i < _constants.length; ++i)
+            _constants[i] = constants.get(i);
+        _slotFields = slotFields.toArray(new String[0]);
+        _slotIsMoved = new boolean[_slotFields.length];
+        for (int i = 0; i < _slotFields.length; ++i)
+            _slotIsMoved[i] = slotIsMoved.get(i);
+    }
+
+    /**
+     * Compile a filter expression.
+     * @throws IllegalArgumentException If the expression is not valid
+     */
+    public static FieldFilter compile(String expression)
+    {
+        Parser parser = new Parser(expression);
+        MethodHandle predicate = parser.parseOr();
+        parser.skipSpaces();
+        if (parser._pos != expression.length())
+            throw parser.error("Unexpected input");
+
+        String shape = parser._shape.toString();
+        MethodHandle shared;
+        synchronized (_shapes)
+        {
+            shared = _shapes.get(shape);
+            if (shared == null)
+            {
+                shared = predicate;
+                _shapes.put(shape, predicate);
+                if (_shapes.size() > MAX_SHAPES)
+                {
+                    Iterator<String> iter = _shapes.keySet().iterator();
+                    iter.next();
+                    iter.remove();
+                }
+            }
+        }
+        return new FieldFilter(expression, shared, parser._constants, parser._slotFields, parser._slotIsMoved);
+    }
+
+    /** Create the state of one subscription using the filter. */
+    public double[] newState()
+    {
+        double[] state = new double[_slotFields.length];
+        Arrays.fill(state, Double.NaN);
+        return state;
+    }
+
+    /**
+     * Decide whether a message passes the filter, updating the subscription's state.
+     * Refresh and Status messages always pass.
+     */
+    public boolean accept(double[] state, JSONObject messageJson)
+    {
+        JSONObject fieldsJson = messageJson.optJSONObject("Fields");
+        if (!messageJson.optString("Type").equals("Update"))
+        {
+            // A Refresh is the new reference for moved() and crosses().
+            if (fieldsJson != null && messageJson.optString("Type").equals("Refresh"))
+                record(state, fieldsJson, true);
+            return true;
+        }
+        if (fieldsJson == null)
+            return false;
+
+        boolean accepted;
+        try {
+            accepted = (boolean)_predicate.invokeExact(_constants, state, fieldsJson);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        record(state, fieldsJson, accepted);
+        return accepted;
+    }
+
+    /** Record the values that later Updates are compared against. */
+    private void record(double[] state, JSONObject fieldsJson, boolean accepted)
+    {
+        for (int slot = 0; slot < _slotFields.length; ++slot)
+        {
+            if (_slotIsMoved[slot] && !accepted)
+                continue;
+            double value = number(fieldsJson, _slotFields[slot]);
+            if (!Double.isNaN(value))
+                state[slot] = value;
+        }
+    }
+
+    public String toString()
+    {
+        return _expression;
+    }
+
+    /** Numeric value of a field, or NaN if the Update does not carry it as a number. */
+    static double number(JSONObject fieldsJson, String field)
+    {
+        Object value = fieldsJson.opt(field);
+        return (value instanceof Number) ? ((Number)value).doubleValue() : Double.NaN;
+    }
+
+    // Leaves of compiled expressions. NaN comparisons are false, so missing fields never match.
+
+    static boolean gt(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson) { return number(fieldsJson, field) > constants[operand]; }
+    static boolean ge(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson) { return number(fieldsJson, field) >= constants[operand]; }
+    static boolean lt(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson) { return number(fieldsJson, field) < constants[operand]; }
+    static boolean le(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson) { return number(fieldsJson, field) <= constants[operand]; }
+    static boolean eq(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson) { return number(fieldsJson, field) == constants[operand]; }
+
+    static boolean ne(String field, int operand, double[] constants, double[] state, JSONObject fieldsJson)
+    {
+        double value = number(fieldsJson, field);
+        return !Double.isNaN(value) && value != constants[operand];
+    }
+
+    static boolean stringEquals(String field, String operand, double[] constants, double[] state, JSONObject fieldsJson)
+    {
+        Object value = fieldsJson.opt(field);
+        return (value instanceof String) && value.equals(operand);
+    }
+
+    static boolean stringNotEquals(String field, String operand, double[] constants, double[] state, JSONObject fieldsJson)
+    {
+        Object value = fieldsJson.opt(field);
+        return (value instanceof String) && !value.equals(operand);
+    }
+
+    static boolean moved(String field, int slot, int by, double[] constants, double[] state, JSONObject fieldsJson)
+    {
+        double value = number(fieldsJson, field);
+        if (Double.isNaN(value))
+            return false;
+        double reference = state[slot];
+        // Allow for rounding, so that e.g. 100.05 has moved by 0.05 from 100.
+        return Double.isNaN(reference) || Math.abs(value - reference) >= constants[by] * (1 - 1e-9);
+    }
+
+    static boolean crosses(String field, int slot, int level, double[] constants, double[] state, JSONObject fieldsJson)
+    {
+        double value = number(fieldsJson, field);
+        double previous = state[slot];
+        double threshold = constants[level];
+        return (previous < threshold && value >= threshold) || (previous >= threshold && value < threshold);
+    }
+
+    static boolean not(boolean value)
+    {
+        return !value;
+    }
+
+    private static MethodHandle findStatic(String name, MethodType type)
+    {
+        try {
+            return LOOKUP.findStatic(FieldFilter.class, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Recursive-descent parser producing the compiled expression.
+     */
+    static class Parser
+    {
+        final String _text;
+        int _pos = 0;
+        /** The expression with its numbers replaced by '?', identifying compiled trees that can be shared. */
+        final StringBuilder _shape = new StringBuilder();
+        final List<Double> _constants = new ArrayList<Double>();
+        final List<String> _slotFields = new ArrayList<String>();
+        final List<Boolean> _slotIsMoved = new ArrayList<Boolean>();
+
+        Parser(String text)
+        {
+            _text = text;
+        }
+
+        MethodHandle parseOr()
+        {
+            MethodHandle left = parseAnd();
+            while (accept("||"))
+                left = MethodHandles.guardWithTest(left, OR_TRUE, parseAnd());
+            return left;
+        }
+
+        MethodHandle parseAnd()
+        {
+            MethodHandle left = parseUnary();
+            while (accept("&&"))
+                left = MethodHandles.guardWithTest(left, parseUnary(), AND_FALSE);
+            return left;
+        }
+
+        MethodHandle parseUnary()
+        {
+            if (accept("!"))
+                return MethodHandles.filterReturnValue(parseUnary(), NOT);
+            if (accept("("))
+            {
+                MethodHandle inner = parseOr();
+                expect(")");
+                return inner;
+            }
+
+            String name = parseName();
+            if (accept("("))
+            {
+                String field = parseName();
+                expect(",");
+                int operand = parseConstant();
+                expect(")");
+                if (name.equals("moved"))
+                    return slotPredicate("moved", field, operand, true);
+                if (name.equals("crosses"))
+                    return slotPredicate("crosses", field, operand, false);
+                throw error("Unknown function " + name);
+            }
+
+            String op = parseOperator();
+            skipSpaces();
+            if (_pos < _text.length() && _text.charAt(_pos) == '\'')
+            {
+                String operand = parseString();
+                if (op.equals("=="))
+                    return leaf("stringEquals", String.class, name, operand);
+                if (op.equals("!="))
+                    return leaf("stringNotEquals", String.class, name, operand);
+                throw error("Strings can only be compared with == or !=");
+            }
+
+            int operand = parseConstant();
+            switch (op)
+            {
+                case ">": return leaf("gt", int.class, name, operand);
+                case ">=": return leaf("ge", int.class, name, operand);
+                case "<": return leaf("lt", int.class, name, operand);
+                case "<=": return leaf("le", int.class, name, operand);
+                case "==": return leaf("eq", int.class, name, operand);
+                default: return leaf("ne", int.class, name, operand);
+            }
+        }
+
+        /** Bind a leaf method's field and operand, leaving (constants, state, fields). */
+        MethodHandle leaf(String method, Class<?> operandType, String field, Object operand)
+        {
+            MethodHandle handle = findStatic(method, PREDICATE_TYPE.insertParameterTypes(0, String.class, operandType));
+            return MethodHandles.insertArguments(handle, 0, field, operand);
+        }
+
+        MethodHandle slotPredicate(String method, String field, int operand, boolean isMoved)
+        {
+            int slot = _slotFields.size();
+            _slotFields.add(field);
+            _slotIsMoved.add(isMoved);
+            MethodHandle handle = findStatic(method, PREDICATE_TYPE.insertParameterTypes(0, String.class, int.class, int.class));
+            return MethodHandles.insertArguments(handle, 0, field, slot, operand);
+        }
+
+        String parseOperator()
+        {
+            skipSpaces();
+            for (String op : new String[] {">=", "<=", "==", "!=", ">", "<"})
+            {
+                if (_text.startsWith(op, _pos))
+                {
+                    _pos += op.length();
+                    _shape.append(op);
+                    return op;
+                }
+            }
+            throw error("Expected a comparison operator");
+        }
+
+        String parseName()
+        {
+            skipSpaces();
+            int start = _pos;
+            while (_pos < _text.length() && (Character.isLetterOrDigit(_text.charAt(_pos)) || _text.charAt(_pos) == '_'))
+                ++_pos;
+            if (start == _pos)
+                throw error("Expected a field name");
+            String name = _text.substring(start, _pos);
+            _shape.append(name).append(' ');
+            return name;
+        }
+
+        /** Parse a number into the constants, returning its index. */
+        int parseConstant()
+        {
+            skipSpaces();
+            int start = _pos;
+            while (_pos < _text.length() && "+-.0123456789eE".indexOf(_text.charAt(_pos)) >= 0)
+                ++_pos;
+            try {
+                _constants.add(Double.parseDouble(_text.substring(start, _pos)));
+            } catch (NumberFormatException e) {
+                _pos = start;
+                throw error("Expected a number");
+            }
+            _shape.append('?');
+            return _constants.size() - 1;
+        }
+
+        String parseString()
+        {
+            int start = _pos;
+            int end = _text.indexOf('\'', _pos + 1);
+            if (end < 0)
+                throw error("Unterminated string");
+            String value = _text.substring(_pos + 1, end);
+            _pos = end + 1;
+            _shape.append(_text, start, _pos);
+            return value;
+        }
+
+        boolean accept(String token)
+        {
+            skipSpaces();
+            if (!_text.startsWith(token, _pos))
+                return false;
+            // Don't take the '!' of "!=".
+            if (token.equals("!") && _text.startsWith("!=", _pos))
+                return false;
+            _pos += token.length();
+            _shape.append(token);
+            return true;
+        }
+
+        void expect(String token)
+        {
+            if (!accept(token))
+                throw error("Expected '" + token + "'");
+        }
+
+        void skipSpaces()
+        {
+            while (_pos < _text.length() && Character.isWhitespace(_text.charAt(_pos)))
+                ++_pos;
+        }
+
+        IllegalArgumentException error(String message)
+        {
+            return new IllegalArgumentException(message + " at position " + _pos + " of filter: " + _text);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.json.*;
+
+/*
+ * Measures the cost of evaluating FieldFilters in SubscriptionManager.dispatch, with many
+ * filtered subscriptions spread across many items and a stream of random-walk Updates.
+ *
+ * Usage: java FieldFilterBenchmark [filters] [items] [updates]
+ * Defaults to 10000 filters over 1000 items and 2000000 Updates.
+ */
+public class FieldFilterBenchmark {
+
+    public static void main(String[] args)
+    {
+        int filterCount = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int itemCount = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        int updateCount = (args.length > 2) ? Integer.parseInt(args[2]) : 2000000;
+        Random random = new Random(42);
+
+        // Items are opened in a cache, as by a WebSocketSession, without a server.
+        ItemCache itemCache = new ItemCache(ItemCache.EvictionPolicy.IDLE, 0, 0);
+        SubscriptionManager subscriptionManager = new SubscriptionManager(new SubscriptionManager.StreamProvider() {
+            int _nextStreamId = 2;
+
+            public ItemCache.Item acquireStream(ItemCache.Key key)
+            {
+                ItemCache.Item item = itemCache.acquire(key);
+                if (item == null)
+                {
+                    item = itemCache.add(key, _nextStreamId++);
+                    itemCache.acquire(item);
+                }
+                return item;
+            }
+
+            public void releaseStream(ItemCache.Item item)
+            {
+                itemCache.release(item);
+            }
+        });
+
+        long[] delivered = new long[1];
+        SubscriptionManager.Listener listener = (subscription, messageJson) -> ++delivered[0];
+
+        ItemCache.Item[] items = new ItemCache.Item[itemCount];
+        for (int i = 0; i < filterCount; ++i)
+        {
+            ItemCache.Key key = new ItemCache.Key("ELEKTRON_DD", "ITEM" + (i % itemCount), null);
+            SubscriptionManager.Subscription subscription = subscriptionManager.subscribe(key, listener, FieldFilter.compile(filterExpression(i, random)));
+            items[i % itemCount] = subscription.item();
+        }
+
+        // Refresh every item, then prepare a pool of random-walk Updates.
+        double[] bids = new double[itemCount];
+        for (int i = 0; i < itemCount; ++i)
+        {
+            bids[i] = 100;
+            JSONObject refreshJson = new JSONObject().put("Type", "Refresh").put("Fields",
+                    new JSONObject().put("BID", 100.0).put("ASK", 100.02).put("BIDSIZE", 500).put("ASKSIZE", 500));
+            refreshJson.put("ID", items[i].streamId());
+            subscriptionManager.dispatch(itemCache.apply(refreshJson), refreshJson);
+        }
+
+        int poolSize = 65536;
+        int[] poolItems = new int[poolSize];
+        JSONObject[] pool = new JSONObject[poolSize];
+        for (int i = 0; i < poolSize; ++i)
+        {
+            int item = random.nextInt(itemCount);
+            bids[item] = Math.max(1, bids[item] + (random.nextInt(5) - 2) * 0.01);
+            JSONObject fieldsJson = new JSONObject().put("BID", bids[item]).put("ASK", bids[item] + 0.02);
+            if (random.nextBoolean())
+                fieldsJson.put("BIDSIZE", 100 * random.nextInt(10)).put("ASKSIZE", 100 * random.nextInt(10));
+            poolItems[i] = item;
+            pool[i] = new JSONObject().put("ID", items[item].streamId()).put("Type", "Update").put("Fields", fieldsJson);
+        }
+
+        System.out.println("Filters: " + filterCount + ", items: " + itemCount + ", Updates: " + updateCount);
+
+        // Warm up, then measure.
+        run(subscriptionManager, items, poolItems, pool, updateCount / 4);
+        delivered[0] = 0;
+        long start = System.nanoTime();
+        run(subscriptionManager, items, poolItems, pool, updateCount);
+        long elapsed = System.nanoTime() - start;
+
+        long evaluations = (long)updateCount * filterCount / itemCount;
+        System.out.println("Elapsed:            " + (elapsed / 1000000) + " ms");
+        System.out.println("Updates per second: " + (long)(updateCount * 1e9 / elapsed));
+        System.out.println("Filter evaluations: " + evaluations + " (" + String.format(Locale.ROOT, "%.1f", (double)elapsed / evaluations) + " ns each, including dispatch)");
+        System.out.println("Delivered:          " + delivered[0] + " (" + String.format(Locale.ROOT, "%.1f", 100.0 * delivered[0] / evaluations) + "% of evaluations)");
+    }
+
+    static void run(SubscriptionManager subscriptionManager, ItemCache.Item[] items, int[] poolItems, JSONObject[] pool, int updateCount)
+    {
+        for (int i = 0; i < updateCount; ++i)
+        {
+            int index = i & (pool.length - 1);
+            subscriptionManager.dispatch(items[poolItems[index]], pool[index]);
+        }
+    }
+
+    /** Filter of the i-th subscription: one of a few kinds, with random thresholds near the prices and sizes. */
+    static String filterExpression(int i, Random random)
+    {
+        String tick = String.format(Locale.ROOT, "%.2f", 0.01 * (1 + random.nextInt(5)));
+        String price = String.format(Locale.ROOT, "%.2f", 99.9 + 0.01 * random.nextInt(20));
+        String size = String.valueOf(100 * (1 + random.nextInt(8)));
+        switch (i % 5)
+        {
+            case 0: return "moved(BID, " + tick + ")";
+            case 1: return "crosses(BIDSIZE, " + size + ")";
+            case 2: return "BID > " + price + " && ASK < " + String.format(Locale.ROOT, "%.2f", Double.parseDouble(price) + 0.05);
+            case 3: return "moved(BID, " + tick + ") || crosses(ASKSIZE, " + size + ")";
+            default: return "!(BID <= " + price + ") && BIDSIZE >= 100";
+        }
+    }
+}
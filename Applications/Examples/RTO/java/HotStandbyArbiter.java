@@ -0,0 +1,241 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.*;
+
+/*
+ * Merges redundant feeds of the same items (e.g. hot-standby sessions connected to
+ * different hosts) into one, delivering each message once: whichever copy arrives first.
+ *
+ * Each session's subscriptions use the listener returned by listener(session). Messages
+ * are matched across sessions by item and identity: the SeqNumber of the message if it
+ * has one, otherwise a hash of its type and fields (which does not depend on field
+ * order). The first copy of a message is passed to the downstream listener and later
+ * copies are dropped. Per item, the identities of recent messages are remembered along
+ * with the sessions they have arrived from, until every session has delivered them or
+ * the item's window of recent messages is full; a session lagging by more than the window
+ * can therefore cause a duplicate.
+ *
+ * Without a SeqNumber, the same Update can genuinely occur twice (e.g. a quote repeated
+ * unchanged). A message is only a copy if its session has not delivered that identity
+ * yet; otherwise it is the next occurrence, remembered under an identity derived from
+ * the previous one, so that the n-th occurrence from one session matches the n-th from
+ * another.
+ *
+ * A closed stream starts afresh if it is requested again: the item's state is dropped once
+ * every session has delivered the Status closing it, so that the later copies of that
+ * Status are still recognized as copies.
+ *
+ * The arbiter counts the messages each session delivered first, so the share of "won"
+ * messages shows which path is the faster one.
+ */
+public class HotStandbyArbiter {
+
+    /**
+     * Recent messages of one item.
+     */
+    static class ItemState
+    {
+        /** Identities of recent messages, with a bit set for each session they have arrived from. */
+        final LinkedHashMap<Long, Long> _seen;
+
+        ItemState(int window)
+        {
+            _seen = new LinkedHashMap<Long, Long>(16, 0.75f, false) {
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+                {
+                    return size() > window;
+                }
+            };
+        }
+    }
+
+    private final String[] _sessions;
+    private final long _allSessions;
+    private final SubscriptionManager.Listener _listener;
+    private final int _window;
+    private final Map<ItemCache.Key, ItemState> _items = new ConcurrentHashMap<ItemCache.Key, ItemState>();
+
+    /** Messages delivered first by each session. */
+    private final AtomicLongArray _won;
+
+    /** Messages received from each session. */
+    private final AtomicLongArray _received;
+
+    /**
+     * @param sessions Names of the sessions carrying the same items (at most 64)
+     * @param listener Listener receiving each message once
+     * @param window Number of recent messages remembered per item
+     */
+    public HotStandbyArbiter(List<String> sessions, SubscriptionManager.Listener listener, int window)
+    {
+        if (sessions.isEmpty() || sessions.size() > 64)
+            throw new IllegalArgumentException("Arbitration needs 1 to 64 sessions");
+        _sessions = sessions.toArray(new String[0]);
+        _allSessions = (_sessions.length == 64) ? -1L : (1L << _sessions.length) - 1;
+        _listener = listener;
+        _window = window;
+        _won = new AtomicLongArray(_sessions.length);
+        _received = new AtomicLongArray(_sessions.length);
+    }
+
+    /** Listener for the subscriptions of a session. */
+    public SubscriptionManager.Listener listener(String session)
+    {
+        for (int i = 0; i < _sessions.length; ++i)
+        {
+            if (_sessions[i].equals(session))
+            {
+                int index = i;
+                return (subscription, messageJson) -> onMessage(index, subscription, messageJson);
+            }
+        }
+        throw new IllegalArgumentException("Unknown session " + session);
+    }
+
+    void onMessage(int session, SubscriptionManager.Subscription subscription, JSONObject messageJson)
+    {
+        _received.incrementAndGet(session);
+        long identity = identity(messageJson);
+        boolean closing = isClosing(messageJson);
+        ItemState state = _items.computeIfAbsent(subscription.key(), key -> new ItemState(_window));
+
+        synchronized (state)
+        {
+            long bit = 1L << session;
+            Long sessions;
+            while ((sessions = state._seen.get(identity)) != null && (sessions & bit) != 0)
+                identity = nextOccurrence(identity);
+
+            if (sessions != null)
+            {
+                // A later copy: drop it, and forget the message once every session has delivered
+                // it, unless a later occurrence is remembered after it.
+                long arrived = sessions | bit;
+                if (arrived == _allSessions && closing)
+                    _items.remove(subscription.key(), state);
+                else if (arrived == _allSessions && !state._seen.containsKey(nextOccurrence(identity)))
+                    state._seen.remove(identity);
+                else
+                    state._seen.put(identity, arrived);
+                return;
+            }
+
+            if (_allSessions != bit)
+                state._seen.put(identity, bit);
+            _won.incrementAndGet(session);
+
+            // Deliver while holding the item's state, so that the item's messages stay in order.
+            _listener.onMessage(subscription, messageJson);
+            if (closing && _allSessions == bit)
+                _items.remove(subscription.key(), state);
+        }
+    }
+
+    /** Whether a message is a Status closing the item's stream. */
+    static boolean isClosing(JSONObject messageJson)
+    {
+        if (!messageJson.optString("Type").equals("Status"))
+            return false;
+        JSONObject messageState = messageJson.optJSONObject("State");
+        return messageState != null && messageState.optString("Stream").startsWith("Closed");
+    }
+
+    /** Identity of a message: its type and SeqNumber, or its type and a hash of its contents. */
+    static long identity(JSONObject messageJson)
+    {
+        String messageType = messageJson.optString("Type");
+        long typeHash = (long)messageType.hashCode() << 32;
+        if (messageJson.has("SeqNumber"))
+            return typeHash ^ (messageJson.optLong("SeqNumber") & 0xffffffffL);
+
+        long hash = typeHash;
+        JSONObject stateJson = messageJson.optJSONObject("State");
+        if (stateJson != null)
+            hash += mix(stateJson.toString().hashCode());
+        JSONObject fieldsJson = messageJson.optJSONObject("Fields");
+        if (fieldsJson != null)
+        {
+            // Sum the hashes of the fields, so that their order does not matter.
+            for (String fieldName : fieldsJson.keySet())
+                hash += mix(fieldName.hashCode() * 31L + String.valueOf(fieldsJson.opt(fieldName)).hashCode());
+        }
+        return hash;
+    }
+
+    /** Identity of the next occurrence of a message, after the one with the given identity. */
+    static long nextOccurrence(long identity)
+    {
+        return mix(identity + 1);
+    }
+
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /** Number of messages a session delivered first. */
+    public long won(String session)
+    {
+        return _won.get(indexOf(session));
+    }
+
+    /** Share of the delivered messages that a session delivered first, from 0 to 1. */
+    public double wonRatio(String session)
+    {
+        long delivered = 0;
+        for (int i = 0; i < _sessions.length; ++i)
+            delivered += _won.get(i);
+        return (delivered == 0) ? 0 : (double)won(session) / delivered;
+    }
+
+    /** Number of messages received from a session, delivered or not. */
+    public long received(String session)
+    {
+        return _received.get(indexOf(session));
+    }
+
+    private int indexOf(String session)
+    {
+        for (int i = 0; i < _sessions.length; ++i)
+        {
+            if (_sessions[i].equals(session))
+                return i;
+        }
+        throw new IllegalArgumentException("Unknown session " + session);
+    }
+
+    /** Won ratio of each session, with its won and received counts, e.g. "session1 won 61.5% (800/1300), session2 won 38.5% (500/1300)". */
+    public String toString()
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String session : _sessions)
+        {
+            if (stringBuilder.length() > 0)
+                stringBuilder.append(", ");
+            stringBuilder.append(session).append(" won ")
+                .append(String.format(Locale.ROOT, "%.1f%%", 100 * wonRatio(session)))
+                .append(" (").append(won(session)).append('/').append(received(session)).append(')');
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,537 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.*;
+
+/*
+ * Last-value cache of the items opened over a WebSocket session.
+ *
+ * Each item is identified by its Service, Name and Domain and holds the stream ID it
+ * was requested on along with the latest value of every field received in a Refresh
+ * or Update. Consumers acquire an item while they read from it and release it when they
+ * are done; an item that nobody reads is a candidate for eviction:
+ * - IDLE: the item is evicted once it has had no readers for the idle timeout.
+ * - LRU: unread items are kept until the cache exceeds its maximum number of items,
+ *   then the least recently used ones are evicted.
+ * The maximum-items budget is enforced under both policies.
+ *
+ * Evicted items are passed to an EvictionListener, which is expected to close the
+ * stream on the server.
+ *
+ * The names of cached items are also kept in sorted RicIndexes, so that items can be
+ * found by name prefix, suffix or range without scanning the whole cache.
+ *
+ * Each item counts the Refresh and Update messages applied to it: its sequence number.
+ * The fields are guarded by a sequence lock, so that readers can take a consistent
+ * snapshot of them (the image as of a sequence number) without blocking the thread that
+ * applies the messages. Messages of an item must be applied by one thread at a time.
+ *
+ * The parts of a multi-part Refresh ("Complete": false until the last one) are applied to
+ * the item as they arrive, so that the image is assembled in place rather than by keeping
+ * the messages. The estimated size of an image being assembled can be capped per item: once
+ * a Refresh exceeds it, its fields are dropped and the item is flagged, so that the caller
+ * can close the stream (see refreshLimitExceeded()).
+ */
+public class ItemCache {
+
+    /** Policy used to choose items to evict. */
+    public enum EvictionPolicy { IDLE, LRU }
+
+    /** Called for every item removed by eviction, so that the stream can be closed. */
+    public interface EvictionListener
+    {
+        void onEvict(Item item);
+    }
+
+    /**
+     * Identifies an item by Service, Name and Domain.
+     */
+    public static class Key
+    {
+        final String _service;
+        final String _name;
+        final String _domain;
+        final int _hashCode;
+
+        public Key(String service, String name, String domain)
+        {
+            _service = service;
+            _name = name;
+            _domain = (domain == null) ? "MarketPrice" : domain;
+            _hashCode = (_service.hashCode() * 31 + _name.hashCode()) * 31 + _domain.hashCode();
+        }
+
+        public String service() { return _service; }
+        public String name() { return _name; }
+        public String domain() { return _domain; }
+
+        /** Build the Key member of a request message for this item. */
+        public JSONObject toJson()
+        {
+            JSONObject keyJson = new JSONObject();
+            keyJson.put("Name", _name);
+            keyJson.put("Service", _service);
+            return keyJson;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (this == other)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key)other;
+            return _hashCode == key._hashCode && _name.equals(key._name)
+                && _service.equals(key._service) && _domain.equals(key._domain);
+        }
+
+        @Override
+        public int hashCode() { return _hashCode; }
+
+        @Override
+        public String toString() { return _service + "/" + _name + " (" + _domain + ")"; }
+    }
+
+    /**
+     * Cached item: the stream it was opened on and its latest field values.
+     */
+    public static class Item
+    {
+        final Key _key;
+        final int _streamId;
+
+        /** Latest value of each field. Concurrent so that readers can copy it while it is updated. */
+        final Map<String, Object> _fields = new ConcurrentHashMap<String, Object>();
+
+        /** Number of consumers currently reading this item. */
+        int _readers;
+
+        /** Time (in milliseconds) at which the last reader released the item. */
+        long _idleSince;
+
+        /** Twice the number of messages applied to the fields, plus one while a message is being applied. */
+        volatile long _version = 0;
+
+        /** Whether the fields hold a complete image, i.e. the last Refresh applied was complete. */
+        boolean _complete = false;
+
+        /** Whether the parts of a multi-part Refresh are being applied. */
+        boolean _refreshing = false;
+
+        /** Number of parts of the current Refresh applied so far. */
+        int _refreshParts = 0;
+
+        /** Estimated size (in bytes) of the fields of the current Refresh. */
+        long _refreshBytes = 0;
+
+        /** Whether the current Refresh was dropped for exceeding the size limit. */
+        boolean _refreshLimitExceeded = false;
+
+        Item(Key key, int streamId, long now)
+        {
+            _key = key;
+            _streamId = streamId;
+            _idleSince = now;
+        }
+
+        public Key key() { return _key; }
+        public int streamId() { return _streamId; }
+        public Map<String, Object> fields() { return _fields; }
+
+        /** Number of Refresh and Update messages applied to the item. */
+        public long seq() { return _version >>> 1; }
+
+        /** Number of parts of the last Refresh applied (more than 1 for a multi-part Refresh). */
+        public int refreshParts() { return _refreshParts; }
+
+        /** Whether the last Refresh was dropped because its image exceeded the cache's size limit. */
+        public boolean refreshLimitExceeded() { return _refreshLimitExceeded; }
+
+        /**
+         * Take a consistent copy of the fields, retrying if a message is applied while
+         * they are being copied.
+         */
+        public Snapshot snapshot()
+        {
+            while (true)
+            {
+                long version = _version;
+                if ((version & 1) == 0)
+                {
+                    Map<String, Object> fields = new HashMap<String, Object>(_fields);
+                    boolean complete = _complete;
+                    VarHandle.loadLoadFence();
+                    if (_version == version)
+                        return new Snapshot(version >>> 1, complete, fields);
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Fields of an item as of a sequence number.
+     */
+    public static class Snapshot
+    {
+        final long _seq;
+        final boolean _complete;
+        final Map<String, Object> _fields;
+
+        Snapshot(long seq, boolean complete, Map<String, Object> fields)
+        {
+            _seq = seq;
+            _complete = complete;
+            _fields = fields;
+        }
+
+        /** Sequence number of the last message included. */
+        public long seq() { return _seq; }
+
+        /** Whether the fields are a complete image. */
+        public boolean isComplete() { return _complete; }
+
+        public Map<String, Object> fields() { return _fields; }
+    }
+
+    /** Items in access order, so that iteration starts with the least recently used. */
+    private final LinkedHashMap<Key, Item> _items = new LinkedHashMap<Key, Item>(16, 0.75f, true);
+
+    private final Map<Integer, Item> _itemsByStreamId = new HashMap<Integer, Item>();
+
+    /** Sorted indexes of the names of cached items, front to back and back to front. */
+    private final RicIndex _ricIndex = new RicIndex();
+    private final RicIndex _ricSuffixIndex = new RicIndex(true);
+
+    /** Number of cached items with each name (the same name may be cached for several services or domains). */
+    private final Map<String, Integer> _nameCounts = new HashMap<String, Integer>();
+
+    private final EvictionPolicy _policy;
+    private final long _idleTimeoutMillis;
+    private final int _maxItems;
+    private EvictionListener _evictionListener;
+    private long _maxRefreshBytes = 0;
+    private ScheduledExecutorService _evictionTimer;
+
+    /**
+     * @param policy Policy used to choose items to evict
+     * @param idleTimeoutMillis Time an item may go without readers before it is evicted (IDLE policy). 0 disables it.
+     * @param maxItems Maximum number of items to keep. 0 means unlimited.
+     */
+    public ItemCache(EvictionPolicy policy, long idleTimeoutMillis, int maxItems)
+    {
+        _policy = policy;
+        _idleTimeoutMillis = idleTimeoutMillis;
+        _maxItems = maxItems;
+    }
+
+    public synchronized void setEvictionListener(EvictionListener evictionListener)
+    {
+        _evictionListener = evictionListener;
+    }
+
+    /**
+     * Cap the estimated size of the image assembled from a Refresh.
+     * @param maxRefreshBytes Size limit in bytes. 0 means unlimited.
+     */
+    public void setMaxRefreshBytes(long maxRefreshBytes)
+    {
+        _maxRefreshBytes = maxRefreshBytes;
+    }
+
+    public EvictionPolicy policy() { return _policy; }
+    public long idleTimeoutMillis() { return _idleTimeoutMillis; }
+    public int maxItems() { return _maxItems; }
+
+    /**
+     * Whether items without readers stay cached until eviction. If not, their streams
+     * should be closed as soon as the last reader leaves.
+     */
+    public boolean retainsUnreadItems()
+    {
+        if (_policy == EvictionPolicy.IDLE)
+            return _idleTimeoutMillis > 0;
+        return _maxItems > 0;
+    }
+
+    /** Add an item opened on the given stream. */
+    public synchronized Item add(Key key, int streamId)
+    {
+        Item item = new Item(key, streamId, System.currentTimeMillis());
+        _items.put(key, item);
+        _itemsByStreamId.put(streamId, item);
+        if (_nameCounts.merge(key._name, 1, Integer::sum) == 1)
+        {
+            _ricIndex.add(key._name);
+            _ricSuffixIndex.add(key._name);
+        }
+        return item;
+    }
+
+    /** Find an item by key, marking it as recently used. */
+    public synchronized Item get(Key key)
+    {
+        return _items.get(key);
+    }
+
+    public synchronized Item getByStreamId(int streamId)
+    {
+        return _itemsByStreamId.get(streamId);
+    }
+
+    /** Snapshot of all cached items, least recently used first. */
+    public synchronized List<Item> items()
+    {
+        return new ArrayList<Item>(_items.values());
+    }
+
+    public synchronized int size()
+    {
+        return _items.size();
+    }
+
+    /** Remove an item, e.g. because its stream was closed by the server. */
+    public synchronized Item remove(int streamId)
+    {
+        Item item = _itemsByStreamId.remove(streamId);
+        if (item != null)
+        {
+            _items.remove(item._key);
+            unindex(item);
+        }
+        return item;
+    }
+
+    private void unindex(Item item)
+    {
+        String name = item._key._name;
+        if (_nameCounts.merge(name, -1, Integer::sum) == 0)
+        {
+            _nameCounts.remove(name);
+            _ricIndex.remove(name);
+            _ricSuffixIndex.remove(name);
+        }
+    }
+
+    /** Remove all items, e.g. when the session is closed. */
+    public synchronized void clear()
+    {
+        _items.clear();
+        _itemsByStreamId.clear();
+        _nameCounts.clear();
+        _ricIndex.clear();
+        _ricSuffixIndex.clear();
+    }
+
+    /**
+     * Visit the names of cached items that start with the given prefix, in sorted order.
+     * The cache is locked during the iteration, so the visitor should be quick.
+     */
+    public synchronized void forEachRicWithPrefix(String prefix, RicIndex.Visitor visitor)
+    {
+        _ricIndex.forEachWithPrefix(prefix, visitor);
+    }
+
+    /** Visit the names of cached items that end with the given suffix (e.g. ".N"). */
+    public synchronized void forEachRicWithSuffix(String suffix, RicIndex.Visitor visitor)
+    {
+        _ricSuffixIndex.forEachWithPrefix(suffix, visitor);
+    }
+
+    /** Visit the names of cached items in the range [from, to), in sorted order. */
+    public synchronized void forEachRicInRange(String from, String to, RicIndex.Visitor visitor)
+    {
+        _ricIndex.forEachInRange(from, to, visitor);
+    }
+
+    /** Register a reader of the item. */
+    public synchronized void acquire(Item item)
+    {
+        ++item._readers;
+        _items.get(item._key); // Touch for LRU ordering.
+    }
+
+    /**
+     * Register a reader of the item with the given key, if it is cached. Looking up and
+     * registering in one step keeps the item from being evicted in between.
+     * @return The item, or null if it is not cached.
+     */
+    public synchronized Item acquire(Key key)
+    {
+        Item item = _items.get(key);
+        if (item != null)
+            ++item._readers;
+        return item;
+    }
+
+    /** Unregister a reader of the item. The idle period starts when the last reader leaves. */
+    public synchronized void release(Item item)
+    {
+        if (item._readers > 0 && --item._readers == 0)
+            item._idleSince = System.currentTimeMillis();
+    }
+
+    public synchronized int readers(Item item)
+    {
+        return item._readers;
+    }
+
+    /**
+     * Apply the fields of a Refresh or Update to the cached item on the message's stream.
+     * @return The item, or null if the stream is not cached.
+     */
+    public Item apply(JSONObject messageJson) throws JSONException
+    {
+        Item item = getByStreamId(messageJson.getInt("ID"));
+        if (item == null)
+            return null;
+
+        long version = item._version;
+        item._version = version + 1;
+        VarHandle.storeStoreFence();
+
+        boolean isRefresh = messageJson.getString("Type").equals("Refresh");
+        if (isRefresh)
+        {
+            // A new image replaces the fields; the later parts of a multi-part Refresh add to them.
+            boolean complete = messageJson.optBoolean("Complete", true);
+            if (!item._refreshing)
+            {
+                item._fields.clear();
+                item._refreshParts = 0;
+                item._refreshBytes = 0;
+                item._refreshLimitExceeded = false;
+            }
+            ++item._refreshParts;
+            item._refreshing = !complete;
+            item._complete = complete;
+        }
+
+        JSONObject fieldsJson = messageJson.optJSONObject("Fields");
+        if (fieldsJson != null)
+        {
+            for (String fieldName : fieldsJson.keySet())
+            {
+                Object value = fieldsJson.get(fieldName);
+                if (isRefresh && _maxRefreshBytes > 0)
+                {
+                    item._refreshBytes += estimateSize(fieldName, value);
+                    if (item._refreshBytes > _maxRefreshBytes)
+                    {
+                        item._fields.clear();
+                        item._refreshing = false;
+                        item._complete = false;
+                        item._refreshLimitExceeded = true;
+                        break;
+                    }
+                }
+                item._fields.put(fieldName, value);
+            }
+        }
+
+        item._version = version + 2;
+        return item;
+    }
+
+    /** Rough heap size of a cached field: map entry, name and value. */
+    private static long estimateSize(String fieldName, Object value)
+    {
+        long size = 64 + 2 * fieldName.length();
+        if (value instanceof String)
+            size += 48 + 2 * ((String)value).length();
+        else if (value instanceof JSONObject || value instanceof JSONArray)
+            size += 32 + 2 * value.toString().length();
+        else
+            size += 16;
+        return size;
+    }
+
+    /**
+     * Remove the items selected by the eviction policy.
+     * @param now Current time, in milliseconds
+     * @return The evicted items
+     */
+    public List<Item> evict(long now)
+    {
+        List<Item> evicted = new ArrayList<Item>();
+        EvictionListener evictionListener;
+
+        synchronized (this)
+        {
+            int excess = (_maxItems > 0) ? _items.size() - _maxItems : 0;
+
+            Iterator<Item> iter = _items.values().iterator();
+            while (iter.hasNext())
+            {
+                Item item = iter.next();
+                if (item._readers > 0)
+                    continue;
+
+                boolean timedOut = _policy == EvictionPolicy.IDLE && _idleTimeoutMillis > 0
+                    && now - item._idleSince >= _idleTimeoutMillis;
+
+                if (excess > 0 || timedOut)
+                {
+                    iter.remove();
+                    _itemsByStreamId.remove(item._streamId);
+                    unindex(item);
+                    evicted.add(item);
+                    --excess;
+                }
+            }
+            evictionListener = _evictionListener;
+        }
+
+        if (evictionListener != null)
+        {
+            for (Item item : evicted)
+                evictionListener.onEvict(item);
+        }
+        return evicted;
+    }
+
+    /**
+     * Start a background timer that periodically runs eviction.
+     * @param periodMillis Interval between eviction passes
+     */
+    public synchronized void startEvictionTimer(long periodMillis)
+    {
+        if (_evictionTimer != null)
+            return;
+
+        _evictionTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ItemCache-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _evictionTimer.scheduleAtFixedRate(() -> evict(System.currentTimeMillis()),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopEvictionTimer()
+    {
+        if (_evictionTimer != null)
+        {
+            _evictionTimer.shutdownNow();
+            _evictionTimer = null;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.*;
+
+/*
+ * Reactive-streams view of an item: a java.util.concurrent.Flow.Publisher whose
+ * subscribers receive the item's messages as they request them.
+ *
+ * Each Flow subscriber gets its own subscription to the item through a SubscriptionManager
+ * (sharing the item's stream with the other consumers) and is signalled on an Executor,
+ * never on the thread that dispatches the messages. Messages are only delivered against
+ * demand signalled with request(n). While there is no demand, messages wait in a queue:
+ * an Update is merged into an Update already waiting at the end of the queue (latest value
+ * of each field wins, with a ConflationInfo member as in conflated streams), so a stream of
+ * Updates never takes more than one place in the queue. Other messages (Refresh, Status and
+ * the like) cannot be conflated and are queued as they are, up to a bound; a subscriber that
+ * lets more pile up is cancelled with an error rather than buffering without limit.
+ *
+ * A Status that closes the item's stream is delivered, then the subscriber is completed.
+ */
+public class ItemPublisher implements Flow.Publisher<ItemPublisher.Update> {
+
+    /**
+     * A message of the item.
+     */
+    public static class Update
+    {
+        final ItemCache.Key _key;
+        JSONObject _messageJson;
+        final boolean _conflatable;
+
+        /** Number of Updates merged into this one (0 if not merged). */
+        int _mergeCount = 0;
+
+        Update(ItemCache.Key key, JSONObject messageJson)
+        {
+            _key = key;
+            _messageJson = messageJson;
+            _conflatable = messageJson.optString("Type").equals("Update");
+        }
+
+        public ItemCache.Key key() { return _key; }
+
+        /** Message type, e.g. Refresh, Update or Status. */
+        public String type() { return _messageJson.optString("Type"); }
+
+        /** The message. Must not be modified, as it can be shared with other consumers. */
+        public JSONObject messageJson() { return _messageJson; }
+
+        /** Number of Updates this one stands for: more than 1 if Updates were conflated while there was no demand. */
+        public int count() { return _mergeCount + 1; }
+
+        boolean closesStream()
+        {
+            JSONObject stateJson = _messageJson.optJSONObject("State");
+            return type().equals("Status") && stateJson != null && stateJson.optString("Stream").startsWith("Closed");
+        }
+    }
+
+    /**
+     * One Flow subscriber's subscription.
+     */
+    class ItemSubscription implements Flow.Subscription, SubscriptionManager.Listener
+    {
+        final Flow.Subscriber<? super Update> _subscriber;
+        SubscriptionManager.Subscription _itemSubscription;
+
+        final ArrayDeque<Update> _queue = new ArrayDeque<Update>();
+        /** Queued messages that cannot be conflated. */
+        int _bufferedCount = 0;
+        long _demand = 0;
+        boolean _cancelled = false;
+        Throwable _error = null;
+
+        /** Drain requests; the drain loop runs while it is non-zero. */
+        final AtomicInteger _drainRequests = new AtomicInteger(0);
+
+        ItemSubscription(Flow.Subscriber<? super Update> subscriber)
+        {
+            _subscriber = subscriber;
+        }
+
+        /** Queue a message from the item's stream. Called on the dispatching thread. */
+        public void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+        {
+            synchronized (this)
+            {
+                if (_cancelled || _error != null)
+                    return;
+
+                Update update = new Update(_key, messageJson);
+                Update last = _queue.peekLast();
+                if (update._conflatable && last != null && last._conflatable)
+                {
+                    // The queued Update may be shared with other consumers, so merge into a copy.
+                    if (last._mergeCount == 0)
+                        last._messageJson = Conflator.copy(last._messageJson);
+                    Conflator.merge(last._messageJson, messageJson);
+                    ++last._mergeCount;
+                    return;
+                }
+
+                if (!update._conflatable && ++_bufferedCount > _maxBuffered)
+                {
+                    _error = new IllegalStateException("More than " + _maxBuffered + " messages of " + _key
+                            + " are waiting for demand");
+                    _queue.clear();
+                }
+                else
+                    _queue.add(update);
+            }
+            drain();
+        }
+
+        public void request(long n)
+        {
+            synchronized (this)
+            {
+                if (_cancelled)
+                    return;
+                if (n <= 0)
+                {
+                    _error = new IllegalArgumentException("request(" + n + "): demand must be positive");
+                    _queue.clear();
+                }
+                else
+                {
+                    _demand += n;
+                    if (_demand < 0)
+                        _demand = Long.MAX_VALUE; // Unbounded.
+                }
+            }
+            drain();
+        }
+
+        public void cancel()
+        {
+            synchronized (this)
+            {
+                if (_cancelled)
+                    return;
+                _cancelled = true;
+                _queue.clear();
+            }
+            closeItemSubscription();
+        }
+
+        /** Leave the item. If the subscription is cancelled before it has joined the item, subscribe() leaves it. */
+        void closeItemSubscription()
+        {
+            SubscriptionManager.Subscription itemSubscription;
+            synchronized (this)
+            {
+                itemSubscription = _itemSubscription;
+            }
+            if (itemSubscription != null)
+                itemSubscription.close();
+        }
+
+        /** Run the drain loop on the executor, unless it is already running. */
+        void drain()
+        {
+            if (_drainRequests.getAndIncrement() == 0)
+                _executor.execute(this::drainLoop);
+        }
+
+        /** Signal the subscriber. Only runs on one thread at a time. */
+        void drainLoop()
+        {
+            int requests = _drainRequests.get();
+            while (true)
+            {
+                while (true)
+                {
+                    Update update = null;
+                    Throwable error;
+                    synchronized (this)
+                    {
+                        if (_cancelled)
+                            return;
+                        error = _error;
+                        if (error != null)
+                            _cancelled = true;
+                        else
+                        {
+                            if (_demand == 0 || _queue.isEmpty())
+                                break;
+                            update = _queue.poll();
+                            if (!update._conflatable)
+                                --_bufferedCount;
+                            if (_demand != Long.MAX_VALUE)
+                                --_demand;
+                        }
+                    }
+
+                    if (error != null)
+                    {
+                        closeItemSubscription();
+                        _subscriber.onError(error);
+                        return;
+                    }
+
+                    if (update._mergeCount > 0)
+                        update._messageJson.put("ConflationInfo", new JSONObject().put("Count", update._mergeCount + 1));
+                    _subscriber.onNext(update);
+
+                    if (update.closesStream())
+                    {
+                        cancel();
+                        _subscriber.onComplete();
+                        return;
+                    }
+                }
+
+                requests = _drainRequests.addAndGet(-requests);
+                if (requests == 0)
+                    return;
+            }
+        }
+    }
+
+    private final SubscriptionManager _subscriptionManager;
+    private final ItemCache.Key _key;
+    private final int _maxBuffered;
+    private final Executor _executor;
+
+    /**
+     * @param subscriptionManager Subscriptions of the session the item is received on
+     * @param key Item to publish
+     * @param maxBuffered Largest number of messages other than Updates that are kept for a subscriber without demand
+     * @param executor Executor that subscribers are signalled on
+     */
+    public ItemPublisher(SubscriptionManager subscriptionManager, ItemCache.Key key, int maxBuffered, Executor executor)
+    {
+        _subscriptionManager = subscriptionManager;
+        _key = key;
+        _maxBuffered = maxBuffered;
+        _executor = executor;
+    }
+
+    /** Publisher that signals subscribers on the common ForkJoinPool. */
+    public ItemPublisher(SubscriptionManager subscriptionManager, ItemCache.Key key, int maxBuffered)
+    {
+        this(subscriptionManager, key, maxBuffered, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Subscribe to the item. The subscriber first receives the item's image if it is
+     * already cached, then its messages as they arrive, as far as it has requested them.
+     */
+    public void subscribe(Flow.Subscriber<? super Update> subscriber)
+    {
+        ItemSubscription subscription = new ItemSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        SubscriptionManager.Subscription itemSubscription = _subscriptionManager.subscribe(_key, subscription);
+        synchronized (subscription)
+        {
+            subscription._itemSubscription = itemSubscription;
+            if (!subscription._cancelled)
+                return;
+        }
+        // Cancelled from onSubscribe.
+        itemSubscription.close();
+    }
+
+    public ItemCache.Key key()
+    {
+        return _key;
+    }
+}
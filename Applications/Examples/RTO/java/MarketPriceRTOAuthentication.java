@@ -9,7 +9,6 @@
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
 import com.neovisionaries.ws.client.WebSocketException;
-import com.neovisionaries.ws.client.WebSocketExtension;
 import com.neovisionaries.ws.client.WebSocketFactory;
 
 import java.io.File;
@@ -34,7 +33,6 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 
 /*
@@ -73,6 +71,7 @@ public class MarketPriceRTOAuthentication {
     public static String service = "ELEKTRON_DD";
     public static String scope = "trapi.streaming.pricing.read";
     public static JSONObject authJson = null;
+    public static DeflateSettings deflate = new DeflateSettings();
 
     final private static int passwordLengthMask               = 0x1;
     final private static int passwordUppercaseLetterMask      = 0x2;
@@ -107,6 +106,7 @@ public class MarketPriceRTOAuthentication {
         options.addOption(Option.builder().longOpt("ric").hasArg().desc("ric").build());
         options.addOption(Option.builder().longOpt("service").hasArg().desc("service").build());
         options.addOption(Option.builder().longOpt("scope").hasArg().desc("scope").build());
+        options.addOption(Option.builder().longOpt("deflate").hasArg().desc("deflate").build());
         options.addOption(Option.builder().longOpt("help").desc("help").build());
 
 
@@ -161,6 +161,16 @@ public class MarketPriceRTOAuthentication {
             service = cmd.getOptionValue("service");
         if(cmd.hasOption("scope"))
             scope = cmd.getOptionValue("scope");
+        if(cmd.hasOption("deflate"))
+        {
+            try {
+                deflate = DeflateSettings.parse(cmd.getOptionValue("deflate"));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid deflate setting: " + e.getMessage());
+                formatter.printHelp("MarketPriceRTOAuthentication", options);
+                System.exit(1);
+            }
+        }
         if(cmd.hasOption("newPassword")) {
         	newPassword = cmd.getOptionValue("newPassword");
         	if ((newPassword == null) || (newPassword.length() == 0)) {
@@ -308,7 +318,7 @@ public class MarketPriceRTOAuthentication {
     	boolean result = false;
         try
         {
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+            SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
             HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
             HttpPost httppost = new HttpPost(authServer);
@@ -398,7 +408,7 @@ public class MarketPriceRTOAuthentication {
      */
     public static WebSocket connect() throws IOException, WebSocketException
     {
-        return new WebSocketFactory()
+        WebSocket websocket = TlsConfig.webSocketFactory()
                 .createSocket(server)
                 .addProtocol("tr_json2")
                 .addListener(new WebSocketAdapter() {
@@ -426,9 +436,10 @@ public class MarketPriceRTOAuthentication {
                         System.out.println("WebSocket successfully connected!");
                         sendLoginRequest(websocket, authJson.getString("access_token"), true);
                     }
-                })
-                .addExtension(WebSocketExtension.PERMESSAGE_DEFLATE)
-                .connect();
+                });
+        if (deflate.isEnabled())
+            websocket.addExtension(deflate.offer());
+        return websocket.connect();
     }
 
     /**
@@ -454,7 +465,7 @@ public class MarketPriceRTOAuthentication {
     public static JSONObject getAuthenticationInfo(JSONObject previousAuthResponseJson, String url) {
         try
         {
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+            SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
             HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
             HttpPost httppost = new HttpPost(url);
@@ -9,12 +9,12 @@
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
 import com.neovisionaries.ws.client.WebSocketException;
-import com.neovisionaries.ws.client.WebSocketExtension;
 import com.neovisionaries.ws.client.WebSocketFactory;
 import com.neovisionaries.ws.client.WebSocketFrame;
 
 import java.io.IOException;
 import java.net.Inet4Address;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -38,7 +38,6 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 
 /*
@@ -86,11 +85,13 @@ public class MarketPriceRTOClientCredAuth {
     public static JSONObject serviceJson = null;
     public static List<String> hostList = new LinkedList<String>();
     public static List<String> backupHostList = new LinkedList<String>();
-    public static WebSocketFactory websocketFactory = new WebSocketFactory();
+    public static WebSocketFactory websocketFactory = TlsConfig.webSocketFactory();
     public static WebSocketSession webSocketSession1 = null;
     public static WebSocketSession webSocketSession2 = null;
     public static boolean hotstandby = false;
+    public static ReconnectScheduler reconnectScheduler = new ReconnectScheduler(5000, 60000, 3);
     public static String region = "us-east-1";
+    public static DeflateSettings deflate = new DeflateSettings();
     
     /**
      * Helper class for date time stamp formatting.
@@ -128,6 +129,9 @@ public class MarketPriceRTOClientCredAuth {
         /** Whether the session was disconnected and needs a new authentication token. */
         boolean _needNewToken = false;
 
+        /** Delays the reconnect attempts, rotating through the backup hosts. */
+        ReconnectScheduler.Backoff _reconnectBackoff;
+
         /** Static map used by WebSocketAdapter callbacks to find the associated WebSocketSession object. */
         public static Map<WebSocket, WebSocketSession> webSocketSessionMap = new ConcurrentHashMap<WebSocket, WebSocketSession>();
 
@@ -136,16 +140,27 @@ public class MarketPriceRTOClientCredAuth {
             _name = name;
             _url = String.format("wss://%s/WebSocket", host);
             _authToken = authToken;
+            _reconnectBackoff = reconnectScheduler.backoff(host, backupHostList);
+            connect();
+        }
+
+        /** Connect a WebSocket to another host. */
+        public synchronized void connect(String host)
+        {
+            _url = String.format("wss://%s/WebSocket", host);
             connect();
         }
 
         /** Connect a WebSocket (and reconnect if a previous connection failed). */
         public synchronized void connect()
         {
+            /* Remove the previous websocket from the map; its replacement is added below. */
             if (_websocket != null)
+                webSocketSessionMap.remove(_websocket);
+
+            if (_websocket != null && URI.create(_url).equals(_websocket.getURI()))
             {
-                /* Remove websocket from map, and create a new one based on the previous websocket. */
-                webSocketSessionMap.remove(this);
+                /* Create a new websocket based on the previous websocket. */
                 try {
                     _websocket = _websocket.recreate();
                 } catch (IOException e) {
@@ -208,7 +223,7 @@ public class MarketPriceRTOClientCredAuth {
                                 }
 
                                 /**
-                                 * Reconnect after a delay.
+                                 * Reconnect after a delay, without blocking the WebSocket's thread.
                                  */
                                 public void reconnect(WebSocket websocket, boolean needNewToken)
                                 {
@@ -216,27 +231,18 @@ public class MarketPriceRTOClientCredAuth {
                                     webSocketSession.isLoggedIn(false);
                                     webSocketSession.needNewToken(needNewToken);
 
-                                    do {
-                                        try {
-                                            Thread.sleep(5000);
-                                        } catch (InterruptedException e) {
-                                            e.printStackTrace();
-                                            System.exit(1);
-                                        }
-
+                                    // If a new token is needed, the attempt waits until the main thread has got it.
+                                    long delay = _reconnectBackoff.schedule(host -> {
                                         if (needNewToken && webSocketSession.needNewToken())
-                                        {
-                                            continue;
-                                        }
-                                        else
-                                        {
-                                            webSocketSession.connect();
-                                            break;
-                                        }
-                                    } while(true);
+                                            return false;
+                                        webSocketSession.connect(host);
+                                        return true;
+                                    });
+                                    System.out.println(DateTimeStamp.getCurrentTime() + " Reconnecting " + _name + " to " + _reconnectBackoff.endpoint() + " in " + delay + " ms...");
                                 }
-                        })
-                    .addExtension(WebSocketExtension.PERMESSAGE_DEFLATE);
+                        });
+                    if (deflate.isEnabled())
+                        _websocket.addExtension(deflate.offer());
                 } catch (IOException e) {
                     e.printStackTrace();
                     System.exit(1);
@@ -303,6 +309,7 @@ public class MarketPriceRTOClientCredAuth {
 
                                 // Login succeeded, send item request.
                                 isLoggedIn(true);
+                                _reconnectBackoff.connected();
                                 sendRequest();
                             }
 
@@ -377,6 +384,7 @@ public class MarketPriceRTOClientCredAuth {
         options.addOption(Option.builder().longOpt("scope").hasArg().desc("scope").build());
         options.addOption(Option.builder().longOpt("hotstandby").desc("hotstandby").build());
         options.addOption(Option.builder().longOpt("region").hasArg().desc("region").build());
+        options.addOption(Option.builder().longOpt("deflate").hasArg().desc("deflate").build());
         options.addOption(Option.builder().longOpt("help").desc("help").build());
 
         CommandLineParser parser = new DefaultParser();
@@ -440,6 +448,16 @@ public class MarketPriceRTOClientCredAuth {
         {
             region = cmd.getOptionValue("region");
         }
+        if(cmd.hasOption("deflate"))
+        {
+            try {
+                deflate = DeflateSettings.parse(cmd.getOptionValue("deflate"));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid deflate setting: " + e.getMessage());
+                formatter.printHelp("MarketPriceRTOClientCredAuth", options);
+                System.exit(1);
+            }
+        }
 
         try {
 
@@ -597,7 +615,7 @@ public class MarketPriceRTOClientCredAuth {
      public static JSONObject getAuthenticationInfo(String url) {
          try
          {
-             SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+             SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
              HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
              HttpPost httppost = new HttpPost(url);
@@ -689,7 +707,7 @@ public class MarketPriceRTOClientCredAuth {
     public static JSONObject queryServiceDiscovery( String url ) {
         try
         {
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+            SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
             HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
 
@@ -6,21 +6,28 @@
 //|-----------------------------------------------------------------------------
 
 
-import com.neovisionaries.ws.client.WebSocket;
-import com.neovisionaries.ws.client.WebSocketAdapter;
-import com.neovisionaries.ws.client.WebSocketException;
-import com.neovisionaries.ws.client.WebSocketExtension;
 import com.neovisionaries.ws.client.WebSocketFactory;
-import com.neovisionaries.ws.client.WebSocketFrame;
 
 import java.io.IOException;
 import java.net.Inet4Address;
+import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.json.*;
 import org.apache.commons.cli.*;
@@ -36,7 +43,6 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 
 /*
@@ -84,11 +90,57 @@ public class MarketPriceRTOServiceDiscovery {
     public static JSONObject serviceJson = null;
     public static List<String> hostList = new LinkedList<String>();
 	public static List<String> backupHostList = new LinkedList<String>();
-    public static WebSocketFactory websocketFactory = new WebSocketFactory();
+    public static WebSocketFactory websocketFactory = TlsConfig.webSocketFactory();
     public static WebSocketSession webSocketSession1 = null;
     public static WebSocketSession webSocketSession2 = null;
     public static boolean hotstandby = false;
     public static String region = "us-east-1";
+    public static ItemCache.EvictionPolicy evictionPolicy = ItemCache.EvictionPolicy.IDLE;
+    public static long idleTimeout = 0;
+    public static int maxItems = 0;
+    public static long conflationInterval = 0;
+    public static int queueHighWater = 0;
+    public static RingBufferDispatcher.WaitStrategy dispatcherWaitStrategy = null;
+    public static int serverPort = 0;
+    public static int serverThreads = 2;
+    public static RedistributionServer redistributionServer = null;
+    public static String shmRingFile = null;
+    public static int shmRingSize = 8 * 1024 * 1024;
+    public static SharedMemoryRing.Publisher shmRingPublisher = null;
+    public static String unixSocketPath = null;
+    public static UnixSocketFanout unixSocketFanout = null;
+    public static FieldFilter filter = null;
+    public static String alerts = null;
+    public static AlertEngine alertEngine = null;
+    public static boolean flow = false;
+    public static String snapshots = null;
+    public static long snapshotWindow = 10;
+    public static String ricQuery = null;
+    public static long maxRefreshBytes = 64 * 1024 * 1024;
+    public static int sessions = 1;
+    public static boolean arbitrate = false;
+    public static HotStandbyArbiter arbiter = null;
+    public static boolean failover = false;
+    public static long staleTimeout = 45000;
+    public static FailoverController failoverController = null;
+    public static long reconnectDelay = 3000;
+    public static long maxReconnectDelay = 60000;
+    public static int reconnectAttempts = 3;
+    public static ReconnectScheduler reconnectScheduler = null;
+    public static ScheduledExecutorService tokenRefreshTimer = null;
+    public static final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    public static boolean probe = false;
+    public static long probeInterval = 300;
+    public static EndpointSelector endpointSelector = null;
+    public static TransportProfile transportProfile = new TransportProfile();
+    public static WebSocketTransport transport = null;
+    public static int ioThreads = 2;
+    public static DeflateSettings deflate = new DeflateSettings();
+    public static boolean adaptiveDeflate = false;
+    public static double linkBandwidth = 100;
+    public static SessionPool sessionPool = null;
+    public static Map<String, WebSocketSession> pooledSessions = new ConcurrentHashMap<String, WebSocketSession>();
+    public static TimerWheel timerWheel = null;
     
     final private static int passwordLengthMask               = 0x1;
     final private static int passwordUppercaseLetterMask      = 0x2;
@@ -110,13 +162,19 @@ public class MarketPriceRTOServiceDiscovery {
     /**
      * Class representing a session over a WebSocket.
      */
-    public static class WebSocketSession
+    public static final class WebSocketSession implements SubscriptionManager.StreamProvider
     {
         /** Name to use when printing messages sent/received over this WebSocket. */
         String _name;
 
-        /** Current WebSocket associated with this session. */
-        WebSocket _websocket;
+        /** Current WebSocket connection associated with this session. */
+        WebSocketTransport.Connection _websocket;
+
+        /** Connection logging in to the host the session is migrating to, if any; it replaces _websocket once logged in. */
+        WebSocketTransport.Connection _migration;
+
+        /** Host of the migration connection. */
+        String _migrationHost;
 
         /** URL to connect the websocket to. */
         String _url;
@@ -127,114 +185,324 @@ public class MarketPriceRTOServiceDiscovery {
         /** Whether the session has successfully logged in. */
         boolean _isLoggedIn = false;
 
-        /** Static map used by WebSocketAdapter callbacks to find the associated WebSocketSession object. */
-        public static Map<WebSocket, WebSocketSession> webSocketSessionMap = new ConcurrentHashMap<WebSocket, WebSocketSession>();
+        /** Last-value cache of the items requested over this session. */
+        ItemCache _itemCache;
+
+        /** Next stream ID to use for an item request. ID 1 is used by the login stream. */
+        int _nextStreamId = 2;
+
+        /** Shares the streams of this session among in-process consumers. */
+        SubscriptionManager _subscriptionManager;
+
+        /** Batches the snapshot requests made over this session. */
+        SnapshotBatcher _snapshotBatcher;
+
+        /** If set, hands received messages from the reading thread to the journal and cache handler threads. */
+        RingBufferDispatcher _dispatcher;
+
+        /** Delays the reconnect attempts, rotating through the backup hosts. */
+        ReconnectScheduler.Backoff _reconnectBackoff;
+
+        /** If set, chooses whether to offer compression on this session's connections. */
+        AdaptiveDeflate _adaptiveDeflate;
+
+        /** If set, is told the endpoint this session is on whenever it logs in or migrates. */
+        EndpointSelector _endpointSelector;
 
         public WebSocketSession(String name, String host, String authToken)
         {
             _name = name;
             _url = String.format("wss://%s/WebSocket", host);
             _authToken = authToken;
+            _itemCache = new ItemCache(evictionPolicy, idleTimeout * 1000, maxItems);
+            _itemCache.setEvictionListener(item -> sendCloseRequest(item.streamId()));
+            _itemCache.setMaxRefreshBytes(maxRefreshBytes);
+            if (idleTimeout > 0 || maxItems > 0)
+                _itemCache.startEvictionTimer(1000);
+            _subscriptionManager = new SubscriptionManager(this);
+            _snapshotBatcher = new SnapshotBatcher(this::sendBatchRequest, _subscriptionManager, snapshotWindow, 100);
+            _reconnectBackoff = reconnectScheduler.backoff(host, backupHostList);
+            if (adaptiveDeflate)
+                _adaptiveDeflate = new AdaptiveDeflate(deflate, linkBandwidth);
+            if (dispatcherWaitStrategy != null)
+            {
+                _dispatcher = new RingBufferDispatcher(4096, dispatcherWaitStrategy);
+                _dispatcher.addHandler(_name + "-journal", (event, sequence, endOfBatch) -> {
+                    System.out.println("RECEIVED on " + _name + ":");
+                    System.out.println(event.messageJson().toString(2));
+                });
+                _dispatcher.addHandler(_name + "-cache", (event, sequence, endOfBatch) -> processMessage(event.messageJson()));
+                _dispatcher.start();
+            }
             connect();
         }
 
-        /** Connect a WebSocket (and reconnect if a previous connection failed). */
-        public synchronized void connect()
+        /**
+         * Move the session to another host. While the session is logged in, it is made before it
+         * is broken: a connection to the new host is opened and logged in alongside the current
+         * one, then replaces it and requests the items again, so the items only wait for their
+         * new Refreshes. If that connection fails, the session stays where it is. A session that
+         * is not logged in is disconnected instead, and reconnects to the new host through its
+         * backoff.
+         */
+        public synchronized void migrate(String host)
         {
-            if (_websocket != null)
+            if (!_isLoggedIn)
             {
-                /* Remove websocket from map, and create a new one based on the previous websocket. */
-                webSocketSessionMap.remove(this);
-                try {
-                    _websocket = _websocket.recreate();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.exit(1);
-                }
+                _reconnectBackoff.moveTo(host);
+                _websocket.disconnect();
+                return;
             }
-            else
-            {
-                /* Create new websocket. */
-                System.out.println("Connecting to WebSocket " + _url + " for " + _name + "...");
 
-                try {
-                    _websocket = websocketFactory.createSocket(_url)
-                        .addProtocol("tr_json2")
-                        .addListener(new WebSocketAdapter() {
-
-                                /**
-                                 * Called when message received, parse message into JSON for processing
-                                 */
-                                public void onTextMessage(WebSocket websocket, String message) throws JSONException {
-                                    System.out.println("RECEIVED on " + _name +":");
-                                    WebSocketSession webSocketSession = webSocketSessionMap.get(websocket);
-
-                                    JSONArray jsonArray = new JSONArray(message);
-                                    System.out.println(jsonArray.toString(2));
-
-                                    for (int i = 0; i < jsonArray.length(); ++i)
-                                        webSocketSession.processMessage(jsonArray.getJSONObject(i));
-                                }
+            abandonMigration("migrating to " + host + " instead");
+            System.out.println("Connecting to WebSocket " + String.format("wss://%s/WebSocket", host) + " to migrate " + _name + "...");
+            WebSocketTransport.Listener listener = listener();
+            try {
+                _migrationHost = host;
+                _migration = transport.connect(URI.create(String.format("wss://%s/WebSocket", host)), "tr_json2", deflateOffer(), new WebSocketTransport.Listener() {
 
-                                /**
-                                 * Called when handshake is complete and websocket is open, send login
-                                 */
-                                public void onConnected(WebSocket websocket, Map<String, List<String>> headers) throws JSONException {
-                                    System.out.println("WebSocket successfully connected for " + _name + "!");
-                                    sendLoginRequest(true);
-                                }
+                        public void onConnected(WebSocketTransport.Connection connection) throws JSONException {
+                            if (isMigration(connection))
+                                sendLoginRequest(connection, true);
+                        }
+
+                        /**
+                         * Until the new connection is logged in, only answer its login and Pings.
+                         * Once it has replaced the current one, it is handled like any other.
+                         */
+                        public void onTextMessage(WebSocketTransport.Connection connection, String message) throws JSONException {
+                            if (!isMigration(connection))
+                            {
+                                listener.onTextMessage(connection, message);
+                                return;
+                            }
 
-                                /**
-                                 * Called when an error occurs while attempting to connect the WebSocket.
-                                 */
-                                public void onConnectError(WebSocket websocket, WebSocketException e)
+                            JSONArray jsonArray = new JSONArray(message);
+                            System.out.println("RECEIVED on " + _name + " (migrating to " + host + "):");
+                            System.out.println(jsonArray.toString(2));
+                            for (int i = 0; i < jsonArray.length(); ++i)
+                            {
+                                JSONObject messageJson = jsonArray.getJSONObject(i);
+                                if (messageJson.optString("Type").equals("Ping"))
                                 {
-                                    System.out.println("Connect error for " + _name + ":" + e);
-                                    reconnect(websocket);
+                                    connection.sendText("{\"Type\":\"Pong\"}");
                                 }
-
-                                /**
-                                 * Called when the WebSocket is disconnected.
-                                 */
-                                public void onDisconnected(WebSocket websocket,
-                                        WebSocketFrame serverCloseFrame,
-                                        WebSocketFrame clientCloseFrame,
-                                        boolean closedByServer)
-
+                                else if (messageJson.optString("Domain").equals("Login"))
                                 {
-                                    System.out.println("WebSocket disconnected for " + _name + ".");
-                                    reconnect(websocket);
+                                    JSONObject messageState = messageJson.optJSONObject("State");
+                                    if (messageState != null && messageState.optString("Stream").equals("Open") && messageState.optString("Data").equals("Ok"))
+                                        completeMigration(connection);
+                                    else
+                                        abandonMigration("login failed");
                                 }
+                            }
+                        }
 
-                                /**
-                                 * Reconnect after a delay.
-                                 */
-                                public void reconnect(WebSocket websocket)
-                                {
-                                    WebSocketSession webSocketSession = webSocketSessionMap.get(websocket);
-                                    webSocketSession.isLoggedIn(false);
+                        public void onConnectError(WebSocketTransport.Connection connection, Exception e)
+                        {
+                            if (isMigration(connection))
+                                abandonMigration("connect error: " + e);
+                            else
+                                listener.onConnectError(connection, e);
+                        }
+
+                        public void onDisconnected(WebSocketTransport.Connection connection)
+                        {
+                            if (isMigration(connection))
+                                abandonMigration("disconnected");
+                            else
+                                listener.onDisconnected(connection);
+                        }
+                });
+            } catch (IOException e) {
+                _migration = null;
+                System.out.println("Migration of " + _name + " to " + host + " failed: " + e);
+            }
+        }
 
-                                    System.out.println("Reconnecting to " + _name + " in 3 seconds...");
+        /**
+         * Apply a new compression offer without interrupting the session: while it is logged in,
+         * migrate it to the host it is on, over a new connection made before the current one is
+         * closed. Otherwise the offer applies when the session reconnects.
+         */
+        private synchronized void renewConnection()
+        {
+            if (_isLoggedIn)
+                migrate(_reconnectBackoff.endpoint());
+        }
 
-                                    try {
-                                        Thread.sleep(3000);
-                                    } catch (InterruptedException e) {
-                                        e.printStackTrace();
-                                        System.exit(1);
-                                    }
+        /** The migration connection has logged in: make it the session's connection, and close the previous one. */
+        private void completeMigration(WebSocketTransport.Connection connection) throws JSONException {
+            WebSocketTransport.Connection previous;
+            synchronized (this)
+            {
+                if (_migration != connection)
+                    return;
+
+                previous = _websocket;
+                String host = _migrationHost;
+                _websocket = connection;
+                _url = String.format("wss://%s/WebSocket", host);
+                _migration = null;
+                _reconnectBackoff.moveTo(host);
+                _reconnectBackoff.connected();
+                System.out.println("Migrated " + _name + " to " + host + ".");
+                if (_endpointSelector != null)
+                    _endpointSelector.select(host);
+
+                sendRequest();
+            }
 
-                                    webSocketSession.connect();
-                                }
-                        })
-                    .addExtension(WebSocketExtension.PERMESSAGE_DEFLATE);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    System.exit(1);
-                }
+            // Not holding the session's lock: the batcher sends its requests on the session while holding its own.
+            _snapshotBatcher.resend();
+            previous.disconnect();
+        }
+
+        /**
+         * Give up the migration in progress, if any, closing its connection.
+         * @return Host the session was migrating to, or null if none
+         */
+        private synchronized String abandonMigration(String reason)
+        {
+            if (_migration == null)
+                return null;
+
+            WebSocketTransport.Connection connection = _migration;
+            String host = _migrationHost;
+            _migration = null;
+            System.out.println("Migration of " + _name + " to " + host + " abandoned (" + reason + ").");
+            connection.disconnect();
+            return host;
+        }
+
+        /** Whether a connection is the one logging in for a migration. */
+        private synchronized boolean isMigration(WebSocketTransport.Connection connection)
+        {
+            return connection == _migration;
+        }
+
+        /** Whether a connection has been replaced by a migration; its remaining events are ignored. */
+        private synchronized boolean isReplaced(WebSocketTransport.Connection connection)
+        {
+            return connection != _websocket;
+        }
+
+        /** permessage-deflate offer for a new connection. */
+        private DeflateSettings deflateOffer()
+        {
+            return (_adaptiveDeflate != null) ? _adaptiveDeflate.settings() : deflate;
+        }
+
+        /** Connect a WebSocket to another host. */
+        public synchronized void connect(String host)
+        {
+            _url = String.format("wss://%s/WebSocket", host);
+            connect();
+        }
+
+        /** Connect a WebSocket (and reconnect if a previous connection failed). */
+        public synchronized void connect()
+        {
+            System.out.println("Connecting to WebSocket " + _url + " for " + _name + "...");
+
+            try {
+                _websocket = transport.connect(URI.create(_url), "tr_json2", deflateOffer(), listener());
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
             }
+        }
+
+        /** Listener of the session's connection. */
+        private WebSocketTransport.Listener listener()
+        {
+            return new WebSocketTransport.Listener() {
+
+                /**
+                 * Called when message received, parse message into JSON for processing
+                 */
+                public void onTextMessage(WebSocketTransport.Connection connection, String message) throws JSONException {
+                    WebSocketSession webSocketSession = WebSocketSession.this;
+                    if (isReplaced(connection))
+                        return;
+                    if (failoverController != null)
+                        failoverController.heartbeat(_name);
+                    if (_adaptiveDeflate != null && _adaptiveDeflate.record(message, connection.deflateStats()))
+                    {
+                        System.out.println("Compression for " + _name + " switched " + _adaptiveDeflate);
+                        renewConnection();
+                    }
+
+                    JSONArray jsonArray = new JSONArray(message);
 
-            webSocketSessionMap.put(_websocket, this);
-            _websocket.connectAsynchronously();
+                    if (_dispatcher != null)
+                    {
+                        // Handlers print and process the messages on their own threads.
+                        for (int i = 0; i < jsonArray.length(); ++i)
+                            _dispatcher.publish(webSocketSession, jsonArray.getJSONObject(i));
+                        return;
+                    }
+
+                    System.out.println("RECEIVED on " + _name +":");
+                    System.out.println(jsonArray.toString(2));
+
+                    for (int i = 0; i < jsonArray.length(); ++i)
+                        webSocketSession.processMessage(jsonArray.getJSONObject(i));
+                }
+
+                /**
+                 * Called when handshake is complete and websocket is open, send login
+                 */
+                public void onConnected(WebSocketTransport.Connection connection) throws JSONException {
+                    if (isReplaced(connection))
+                        return;
+                    System.out.println("WebSocket successfully connected for " + _name + "!");
+                    sendLoginRequest(true);
+                }
+
+                /**
+                 * Called when an error occurs while attempting to connect the WebSocket.
+                 */
+                public void onConnectError(WebSocketTransport.Connection connection, Exception e)
+                {
+                    if (isReplaced(connection))
+                        return;
+                    System.out.println("Connect error for " + _name + ":" + e);
+                    reconnect();
+                }
+
+                /**
+                 * Called when the WebSocket is disconnected.
+                 */
+                public void onDisconnected(WebSocketTransport.Connection connection)
+                {
+                    if (isReplaced(connection))
+                        return;
+                    System.out.println("WebSocket disconnected for " + _name + ".");
+                    reconnect();
+                }
+
+                /**
+                 * Reconnect after a delay, without blocking the WebSocket's thread. A migration in
+                 * progress is given up, and the reconnect goes to its host instead.
+                 */
+                public void reconnect()
+                {
+                    WebSocketSession webSocketSession = WebSocketSession.this;
+                    webSocketSession.isLoggedIn(false);
+                    String migrationHost = abandonMigration("the current connection failed");
+                    if (migrationHost != null)
+                        _reconnectBackoff.moveTo(migrationHost);
+                    if (failoverController != null)
+                        failoverController.sessionDown(_name, "disconnected");
+
+                    long delay = _reconnectBackoff.schedule(host -> {
+                        webSocketSession.connect(host);
+                        return true;
+                    });
+                    System.out.println("Reconnecting " + _name + " to " + _reconnectBackoff.endpoint() + " in " + delay + " ms...");
+                }
+            };
         }
 
         /**
@@ -244,6 +512,14 @@ public class MarketPriceRTOServiceDiscovery {
          * @throws JSONException
          */
         private void sendLoginRequest(boolean isFirstLogin) throws JSONException {
+            sendLoginRequest(_websocket, isFirstLogin);
+        }
+
+        /**
+         * Send a login request on a given connection, e.g. one logging in for a migration.
+         * @throws JSONException
+         */
+        private void sendLoginRequest(WebSocketTransport.Connection connection, boolean isFirstLogin) throws JSONException {
             String loginJsonString = "{\"ID\":1,\"Domain\":\"Login\",\"Key\":{\"Elements\":{\"ApplicationId\":\"\",\"Position\":\"\",\"AuthenticationToken\":\"\"},\"NameType\":\"AuthnToken\"}}";
             JSONObject loginJson = new JSONObject(loginJsonString);
             loginJson.getJSONObject("Key").getJSONObject("Elements").put("AuthenticationToken", _authToken);
@@ -253,22 +529,108 @@ public class MarketPriceRTOServiceDiscovery {
             if (!isFirstLogin) // If this isn't our first login, we don't need another refresh for it.
                 loginJson.put("Refresh", false);
 
-            _websocket.sendText(loginJson.toString());
+            connection.sendText(loginJson.toString());
             System.out.println("SENT on " + _name + ": \n" + loginJson.toString(2));
         }
 
         /**
-         * Create and send simple Market Price request
+         * Request every cached item on its stream, after the first login or a reconnect.
          * @throws JSONException
          */
         private void sendRequest() throws JSONException {
-            String requestJsonString;
-            requestJsonString = "{\"ID\":2,\"Key\":{\"Name\":\"" + ric + "\",\"Service\":\"" + service + "\"}}";
-            JSONObject mpRequestJson = new JSONObject(requestJsonString);
-            _websocket.sendText(requestJsonString);
+            for (ItemCache.Item item : _itemCache.items())
+                sendItemRequest(item);
+        }
+
+        public SubscriptionManager subscriptionManager() { return _subscriptionManager; }
+
+        public SnapshotBatcher snapshotBatcher() { return _snapshotBatcher; }
+
+        /**
+         * Open a stream for a subscribed item, or reuse the cached one, and register a reader of it.
+         */
+        public synchronized ItemCache.Item acquireStream(ItemCache.Key key) {
+            ItemCache.Item item = _itemCache.acquire(key);
+            if (item == null)
+            {
+                item = openItem(key);
+                _itemCache.acquire(item);
+            }
+            return item;
+        }
+
+        /**
+         * Unregister a reader of an item. Once the last reader leaves, the stream is closed
+         * unless the cache keeps unread items until they are evicted.
+         */
+        public synchronized void releaseStream(ItemCache.Item item) {
+            _itemCache.release(item);
+            if (_itemCache.readers(item) == 0 && !_itemCache.retainsUnreadItems()
+                    && _itemCache.remove(item.streamId()) != null)
+                sendCloseRequest(item.streamId());
+        }
+
+        /**
+         * Open a stream for an item, adding it to the cache.
+         * @throws JSONException
+         */
+        private synchronized ItemCache.Item openItem(ItemCache.Key key) throws JSONException {
+            ItemCache.Item item = _itemCache.add(key, _nextStreamId++);
+            if (_isLoggedIn)
+                sendItemRequest(item);
+            return item;
+        }
+
+        /**
+         * Create and send simple Market Price request for a cached item
+         * @throws JSONException
+         */
+        private void sendItemRequest(ItemCache.Item item) throws JSONException {
+            JSONObject mpRequestJson = new JSONObject();
+            mpRequestJson.put("ID", item.streamId());
+            mpRequestJson.put("Key", item.key().toJson());
+            if (!item.key().domain().equals("MarketPrice"))
+                mpRequestJson.put("Domain", item.key().domain());
+            _websocket.sendText(mpRequestJson.toString());
             System.out.println("SENT on " + _name + ": \n" + mpRequestJson.toString(2));
         }
 
+        /**
+         * Send a non-streaming batch request for items, reserving a stream ID for the batch
+         * and one for each item.
+         * @return ID of the batch's stream, or -1 if not logged in
+         * @throws JSONException
+         */
+        private synchronized int sendBatchRequest(String service, String domain, List<String> names) throws JSONException {
+            if (!_isLoggedIn)
+                return -1;
+
+            int streamId = _nextStreamId;
+            _nextStreamId += names.size() + 1;
+
+            JSONObject batchRequestJson = new JSONObject();
+            batchRequestJson.put("ID", streamId);
+            batchRequestJson.put("Key", new JSONObject().put("Name", new JSONArray(names)).put("Service", service));
+            if (!domain.equals("MarketPrice"))
+                batchRequestJson.put("Domain", domain);
+            batchRequestJson.put("Streaming", false);
+            _websocket.sendText(batchRequestJson.toString());
+            System.out.println("SENT on " + _name + ": \n" + batchRequestJson.toString(2));
+            return streamId;
+        }
+
+        /**
+         * Close a stream on the server, e.g. after its item was evicted from the cache.
+         * @throws JSONException
+         */
+        private void sendCloseRequest(int streamId) throws JSONException {
+            JSONObject closeJson = new JSONObject();
+            closeJson.put("ID", streamId);
+            closeJson.put("Type", "Close");
+            _websocket.sendText(closeJson.toString());
+            System.out.println("SENT on " + _name + ": \n" + closeJson.toString(2));
+        }
+
         /**
          * Process a message received over the WebSocket
          * @param messageJson
@@ -296,11 +658,39 @@ public class MarketPriceRTOServiceDiscovery {
 
                                 // Login succeeded, send item request.
                                 isLoggedIn(true);
+                                _reconnectBackoff.connected();
+                                if (_endpointSelector != null)
+                                    _endpointSelector.select(_reconnectBackoff.endpoint());
                                 sendRequest();
+                                _snapshotBatcher.resend();
+                                if (failoverController != null)
+                                    failoverController.sessionUp(_name);
                             }
 
+                            break;
                         }
                     }
+
+                    if (_snapshotBatcher.onMessage(messageJson))
+                        break;
+
+                    if (messageType.equals("Refresh"))
+                    {
+                        processRefresh(messageJson);
+                    }
+                    else
+                    {
+                        // Free the cache slot of any stream closed by the server.
+                        JSONObject messageState = messageJson.optJSONObject("State");
+                        if (messageState != null && messageState.getString("Stream").startsWith("Closed"))
+                            dispatch(_itemCache.remove(messageJson.getInt("ID")), messageJson);
+                        else
+                            dispatch(_itemCache.getByStreamId(messageJson.getInt("ID")), messageJson);
+                    }
+                    break;
+
+                case "Update":
+                    dispatch(_itemCache.apply(messageJson), messageJson);
                     break;
 
                 case "Ping":
@@ -314,6 +704,45 @@ public class MarketPriceRTOServiceDiscovery {
             }
         }
 
+        /**
+         * Apply a Refresh to the cache. The parts of a multi-part Refresh are assembled in the
+         * cache, and consumers receive the whole image once, with the last part.
+         * @throws JSONException
+         */
+        private void processRefresh(JSONObject messageJson) throws JSONException {
+            ItemCache.Item item = _itemCache.apply(messageJson);
+            if (item == null)
+                return;
+
+            if (item.refreshLimitExceeded())
+            {
+                // Stop the stream rather than let its image grow without bound.
+                System.out.println("Refresh of " + item.key() + " on " + _name + " exceeds " + maxRefreshBytes + " bytes, closing its stream.");
+                sendCloseRequest(item.streamId());
+                JSONObject statusJson = new JSONObject();
+                statusJson.put("ID", item.streamId());
+                statusJson.put("Type", "Status");
+                statusJson.put("State", new JSONObject().put("Stream", "Closed").put("Data", "Suspect")
+                        .put("Text", "Refresh exceeds " + maxRefreshBytes + " bytes"));
+                dispatch(_itemCache.remove(item.streamId()), statusJson);
+            }
+            else if (!messageJson.optBoolean("Complete", true))
+                return;
+            else if (item.refreshParts() > 1)
+                dispatch(item, SubscriptionManager.refreshOf(item, messageJson));
+            else
+                dispatch(item, messageJson);
+        }
+
+        /**
+         * Deliver a message for a cached item to the consumers subscribed to it.
+         * @throws JSONException
+         */
+        private void dispatch(ItemCache.Item item, JSONObject messageJson) throws JSONException {
+            if (item != null)
+                _subscriptionManager.dispatch(item, messageJson);
+        }
+
         /**
          * Send a login request on the websocket that includes our updated access token.
          */
@@ -356,6 +785,42 @@ public class MarketPriceRTOServiceDiscovery {
         options.addOption(Option.builder().longOpt("scope").hasArg().desc("scope").build());
         options.addOption(Option.builder().longOpt("hotstandby").desc("hotstandby").build());
         options.addOption(Option.builder().longOpt("region").hasArg().desc("region").build());
+        options.addOption(Option.builder().longOpt("evictionPolicy").hasArg().desc("evictionPolicy").build());
+        options.addOption(Option.builder().longOpt("idleTimeout").hasArg().desc("idleTimeout").build());
+        options.addOption(Option.builder().longOpt("maxItems").hasArg().desc("maxItems").build());
+        options.addOption(Option.builder().longOpt("conflate").hasArg().desc("conflate").build());
+        options.addOption(Option.builder().longOpt("queueHighWater").hasArg().desc("queueHighWater").build());
+        options.addOption(Option.builder().longOpt("dispatcher").hasArg().desc("dispatcher").build());
+        options.addOption(Option.builder().longOpt("serverPort").hasArg().desc("serverPort").build());
+        options.addOption(Option.builder().longOpt("serverThreads").hasArg().desc("serverThreads").build());
+        options.addOption(Option.builder().longOpt("shmRing").hasArg().desc("shmRing").build());
+        options.addOption(Option.builder().longOpt("shmRingSize").hasArg().desc("shmRingSize").build());
+        options.addOption(Option.builder().longOpt("unixSocket").hasArg().desc("unixSocket").build());
+        options.addOption(Option.builder().longOpt("filter").hasArg().desc("filter").build());
+        options.addOption(Option.builder().longOpt("alerts").hasArg().desc("alerts").build());
+        options.addOption(Option.builder().longOpt("flow").desc("flow").build());
+        options.addOption(Option.builder().longOpt("snapshots").hasArg().desc("snapshots").build());
+        options.addOption(Option.builder().longOpt("snapshotWindow").hasArg().desc("snapshotWindow").build());
+        options.addOption(Option.builder().longOpt("ricQuery").hasArg().desc("ricQuery").build());
+        options.addOption(Option.builder().longOpt("maxRefreshBytes").hasArg().desc("maxRefreshBytes").build());
+        options.addOption(Option.builder().longOpt("sessions").hasArg().desc("sessions").build());
+        options.addOption(Option.builder().longOpt("arbitrate").desc("arbitrate").build());
+        options.addOption(Option.builder().longOpt("failover").desc("failover").build());
+        options.addOption(Option.builder().longOpt("staleTimeout").hasArg().desc("staleTimeout").build());
+        options.addOption(Option.builder().longOpt("reconnectDelay").hasArg().desc("reconnectDelay").build());
+        options.addOption(Option.builder().longOpt("maxReconnectDelay").hasArg().desc("maxReconnectDelay").build());
+        options.addOption(Option.builder().longOpt("reconnectAttempts").hasArg().desc("reconnectAttempts").build());
+        options.addOption(Option.builder().longOpt("probe").desc("probe").build());
+        options.addOption(Option.builder().longOpt("probeInterval").hasArg().desc("probeInterval").build());
+        options.addOption(Option.builder().longOpt("tcpNoDelay").desc("tcpNoDelay").build());
+        options.addOption(Option.builder().longOpt("keepAlive").desc("keepAlive").build());
+        options.addOption(Option.builder().longOpt("receiveBuffer").hasArg().desc("receiveBuffer").build());
+        options.addOption(Option.builder().longOpt("sendBuffer").hasArg().desc("sendBuffer").build());
+        options.addOption(Option.builder().longOpt("connectTimeout").hasArg().desc("connectTimeout").build());
+        options.addOption(Option.builder().longOpt("transport").hasArg().desc("transport").build());
+        options.addOption(Option.builder().longOpt("ioThreads").hasArg().desc("ioThreads").build());
+        options.addOption(Option.builder().longOpt("deflate").hasArg().desc("deflate").build());
+        options.addOption(Option.builder().longOpt("linkBandwidth").hasArg().desc("linkBandwidth").build());
         options.addOption(Option.builder().longOpt("help").desc("help").build());
 
         CommandLineParser parser = new DefaultParser();
@@ -415,6 +880,142 @@ public class MarketPriceRTOServiceDiscovery {
         {
             region = cmd.getOptionValue("region");
         }
+        if(cmd.hasOption("evictionPolicy"))
+            evictionPolicy = ItemCache.EvictionPolicy.valueOf(cmd.getOptionValue("evictionPolicy").toUpperCase());
+        if(cmd.hasOption("idleTimeout"))
+            idleTimeout = Long.parseLong(cmd.getOptionValue("idleTimeout"));
+        if(cmd.hasOption("maxItems"))
+            maxItems = Integer.parseInt(cmd.getOptionValue("maxItems"));
+        if(cmd.hasOption("conflate"))
+            conflationInterval = Long.parseLong(cmd.getOptionValue("conflate"));
+        if(cmd.hasOption("queueHighWater"))
+            queueHighWater = Integer.parseInt(cmd.getOptionValue("queueHighWater"));
+        if(cmd.hasOption("serverPort"))
+            serverPort = Integer.parseInt(cmd.getOptionValue("serverPort"));
+        if(cmd.hasOption("serverThreads"))
+            serverThreads = Integer.parseInt(cmd.getOptionValue("serverThreads"));
+        if(cmd.hasOption("shmRing"))
+            shmRingFile = cmd.getOptionValue("shmRing");
+        if(cmd.hasOption("shmRingSize"))
+            shmRingSize = Integer.parseInt(cmd.getOptionValue("shmRingSize"));
+        if(cmd.hasOption("filter"))
+        {
+            try {
+                filter = FieldFilter.compile(cmd.getOptionValue("filter"));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                formatter.printHelp("MarketPriceRTOServiceDiscovery", options);
+                System.exit(1);
+            }
+        }
+        if(cmd.hasOption("alerts"))
+            alerts = cmd.getOptionValue("alerts");
+        if(cmd.hasOption("flow"))
+            flow = true;
+        if(cmd.hasOption("snapshots"))
+            snapshots = cmd.getOptionValue("snapshots");
+        if(cmd.hasOption("snapshotWindow"))
+            snapshotWindow = Long.parseLong(cmd.getOptionValue("snapshotWindow"));
+        if(cmd.hasOption("ricQuery"))
+        {
+            ricQuery = cmd.getOptionValue("ricQuery");
+            if (!ricQuery.matches("(prefix|suffix):.+|range:.*\\.\\..*"))
+            {
+                System.out.println("Invalid ricQuery (expected prefix:<text>, suffix:<text> or range:<from>..<to>): " + ricQuery);
+                System.exit(1);
+            }
+        }
+        if(cmd.hasOption("maxRefreshBytes"))
+            maxRefreshBytes = Long.parseLong(cmd.getOptionValue("maxRefreshBytes"));
+        if(cmd.hasOption("sessions"))
+            sessions = Integer.parseInt(cmd.getOptionValue("sessions"));
+        if(cmd.hasOption("arbitrate"))
+            arbitrate = true;
+        if(cmd.hasOption("failover"))
+            failover = true;
+        if(cmd.hasOption("staleTimeout"))
+            staleTimeout = Long.parseLong(cmd.getOptionValue("staleTimeout"));
+        if(cmd.hasOption("reconnectDelay"))
+            reconnectDelay = Long.parseLong(cmd.getOptionValue("reconnectDelay"));
+        if(cmd.hasOption("maxReconnectDelay"))
+            maxReconnectDelay = Long.parseLong(cmd.getOptionValue("maxReconnectDelay"));
+        if(cmd.hasOption("reconnectAttempts"))
+            reconnectAttempts = Integer.parseInt(cmd.getOptionValue("reconnectAttempts"));
+        if(cmd.hasOption("probe"))
+            probe = true;
+        if(cmd.hasOption("probeInterval"))
+            probeInterval = Long.parseLong(cmd.getOptionValue("probeInterval"));
+        if(cmd.hasOption("tcpNoDelay"))
+            transportProfile.setTcpNoDelay(true);
+        if(cmd.hasOption("keepAlive"))
+            transportProfile.setKeepAlive(true);
+        if(cmd.hasOption("receiveBuffer"))
+            transportProfile.setReceiveBufferSize(Integer.parseInt(cmd.getOptionValue("receiveBuffer")));
+        if(cmd.hasOption("sendBuffer"))
+            transportProfile.setSendBufferSize(Integer.parseInt(cmd.getOptionValue("sendBuffer")));
+        if(cmd.hasOption("connectTimeout"))
+            transportProfile.setConnectTimeout(Integer.parseInt(cmd.getOptionValue("connectTimeout")));
+        transportProfile.apply(websocketFactory);
+        if(cmd.hasOption("ioThreads"))
+            ioThreads = Integer.parseInt(cmd.getOptionValue("ioThreads"));
+        if(cmd.hasOption("deflate"))
+        {
+            String deflateValue = cmd.getOptionValue("deflate");
+            adaptiveDeflate = deflateValue.startsWith("adaptive");
+            if (adaptiveDeflate)
+                deflateValue = deflateValue.substring("adaptive".length());
+            try {
+                deflate = DeflateSettings.parse(deflateValue.isEmpty() ? "on" : deflateValue);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid deflate setting: " + e.getMessage());
+                formatter.printHelp("MarketPriceRTOServiceDiscovery", options);
+                System.exit(1);
+            }
+        }
+        if(cmd.hasOption("linkBandwidth"))
+            linkBandwidth = Double.parseDouble(cmd.getOptionValue("linkBandwidth"));
+        switch (cmd.getOptionValue("transport", "nv"))
+        {
+            case "nv":
+                transport = new NvWebSocketTransport(websocketFactory);
+                break;
+            case "virtual":
+                transport = new VirtualThreadWebSocketTransport(transportProfile);
+                break;
+            case "nio":
+                try {
+                    transport = new NioWebSocketTransport(ioThreads, transportProfile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                break;
+            default:
+                System.out.println("Invalid transport: " + cmd.getOptionValue("transport"));
+                formatter.printHelp("MarketPriceRTOServiceDiscovery", options);
+                System.exit(1);
+        }
+        if(cmd.hasOption("unixSocket"))
+            unixSocketPath = cmd.getOptionValue("unixSocket");
+        if(cmd.hasOption("dispatcher"))
+        {
+            switch (cmd.getOptionValue("dispatcher"))
+            {
+                case "busyspin":
+                    dispatcherWaitStrategy = RingBufferDispatcher.WaitStrategy.BUSY_SPIN;
+                    break;
+                case "yield":
+                    dispatcherWaitStrategy = RingBufferDispatcher.WaitStrategy.YIELD;
+                    break;
+                case "park":
+                    dispatcherWaitStrategy = RingBufferDispatcher.WaitStrategy.PARK;
+                    break;
+                default:
+                    System.out.println("Invalid dispatcher wait strategy: " + cmd.getOptionValue("dispatcher"));
+                    formatter.printHelp("MarketPriceRTOServiceDiscovery", options);
+                    System.exit(1);
+            }
+        }
         if(cmd.hasOption("newPassword")) {
         	newPassword = cmd.getOptionValue("newPassword");
         	if ((newPassword == null) || (newPassword.length() == 0)) {
@@ -524,37 +1125,182 @@ public class MarketPriceRTOServiceDiscovery {
 				System.exit(1);
 			}
 
+            // Rank the endpoints by the latency of connecting to them, and connect to the fastest ones.
+            if (probe)
+            {
+                endpointSelector = new EndpointSelector(hostList, 5000, 0.7);
+                for (EndpointSelector.Probe endpointProbe : endpointSelector.probeAll())
+                    System.out.println("PROBE: " + endpointProbe);
+                hostList = endpointSelector.rankedHosts();
+            }
+
+            // Reconnects of all the sessions are scheduled on one thread.
+            reconnectScheduler = new ReconnectScheduler(reconnectDelay, maxReconnectDelay, reconnectAttempts, timerThreadFactory("ReconnectScheduler"));
+
+            // Read the items from the active hot-standby session, failing over to the other one.
+            // Set up before connecting, so that the sessions report their first login.
+            if (hotstandby && failover)
+            {
+                failoverController = new FailoverController(Arrays.asList("session1", "session2"), createListener("failover"), staleTimeout, 1024);
+                failoverController.setFailoverListener((failed, active, reason) -> {
+                    System.out.println("FAILOVER: " + failed + " failed (" + reason + "), " + active + " is active");
+                    // Rebuild a session that went quiet; a disconnected one is already reconnecting.
+                    if (reason.equals("stale"))
+                        (failed.equals(webSocketSession1._name) ? webSocketSession1 : webSocketSession2)._websocket.disconnect();
+                });
+                failoverController.start();
+            }
+
             // Connect WebSocket(s).
             webSocketSession1 = new WebSocketSession("session1", hostList.get(0), authJson.getString("access_token"));
             if (hotstandby)
                 webSocketSession2 = new WebSocketSession("session2", hostList.get(1), authJson.getString("access_token"));
 
-            while(true) {
-                // Continue using current token until 90% of initial time before it expires.
-                Thread.sleep(expireTime * 900);  // The value 900 means 90% of expireTime in milliseconds
+            // Keep probing the endpoints, and move a single session to a clearly faster one.
+            if (endpointSelector != null && !hotstandby && sessions <= 1)
+            {
+                endpointSelector.select(hostList.get(0));
+                webSocketSession1._endpointSelector = endpointSelector;
+                endpointSelector.setMigrationListener((from, to, endpointProbe) -> {
+                    System.out.println("MIGRATE: " + webSocketSession1._name + " from " + from + " to " + endpointProbe);
+                    webSocketSession1.migrate(to);
+                });
+                endpointSelector.start(probeInterval * 1000);
+            }
 
-                // Connect to LSEG Delivery Platform and re-authenticate, using the refresh token provided in the previous response
-                authJson = getAuthenticationInfo(authJson);
-                if (authJson == null)
+            // Spread the items across several sessions, connected to the endpoints in turn.
+            if (sessions > 1)
+            {
+                sessionPool = new SessionPool(128);
+                pooledSessions.put(webSocketSession1._name, webSocketSession1);
+                sessionPool.addSession(webSocketSession1._name, webSocketSession1.subscriptionManager());
+                for (int i = 1; i < sessions; ++i)
+                {
+                    String name = "pool" + (i + 1);
+                    WebSocketSession webSocketSession = new WebSocketSession(name, hostList.get(i % hostList.size()), authJson.getString("access_token"));
+                    pooledSessions.put(name, webSocketSession);
+                    sessionPool.addSession(name, webSocketSession.subscriptionManager());
+                }
+            }
+
+            // Subscribe to the requested item(s). The example keeps reading them, so they are never evicted.
+            // With conflation, the merged Updates published at the end of each interval are printed;
+            // with a filter, the Updates that pass it.
+            if (conflationInterval > 0)
+                timerWheel = new TimerWheel("conflation", 10, 512);
+            // Publish the items from the first session to co-located readers through shared memory.
+            if (shmRingFile != null)
+            {
+                try {
+                    shmRingPublisher = new SharedMemoryRing.Publisher(SharedMemoryRing.create(Paths.get(shmRingFile), shmRingSize));
+                } catch (IOException e) {
+                    e.printStackTrace();
                     System.exit(1);
- 
-                // If expiration time returned by refresh request is less then initial expiration time,
-                // re-authenticate using password
-                int refreshingExpireTime = Integer.parseInt(authJson.getString("expires_in"));
-                if (refreshingExpireTime != expireTime) {
-                   	System.out.println("expire time changed from " + expireTime + " sec to " + refreshingExpireTime + 
-                    		" sec; retry with password");
-                    authJson = getAuthenticationInfo(null);
-                    if (authJson == null)
-                        System.exit(1);
-                    expireTime = Integer.parseInt(authJson.getString("expires_in"));
                 }
+            }
+            // Merge the hot-standby sessions, reading each message once from whichever session delivers it first.
+            if (hotstandby && arbitrate && !failover)
+            {
+                arbiter = new HotStandbyArbiter(Arrays.asList(webSocketSession1._name, webSocketSession2._name), createListener("arbiter"), 4096);
+                ScheduledExecutorService statsTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "HotStandbyArbiter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                statsTimer.scheduleAtFixedRate(() -> System.out.println("ARBITRATION: " + arbiter), 60, 60, TimeUnit.SECONDS);
+            }
+            for (String itemName : ric.split(","))
+            {
+                ItemCache.Key key = new ItemCache.Key(service, itemName.trim(), null);
+                if (sessionPool != null)
+                    sessionPool.subscribe(key, createListener("pool"), filter);
+                else if (arbiter == null && failoverController == null)
+                    webSocketSession1.subscriptionManager().subscribe(key, createListener(webSocketSession1), filter);
+                if (flow)
+                    new ItemPublisher(webSocketSession1.subscriptionManager(), key, 100).subscribe(createFlowSubscriber(webSocketSession1));
+                if (shmRingPublisher != null)
+                    webSocketSession1.subscriptionManager().subscribe(key, shmRingPublisher);
+                if (failoverController != null)
+                {
+                    webSocketSession1.subscriptionManager().subscribe(key, failoverController.listener(webSocketSession1._name), filter);
+                    webSocketSession2.subscriptionManager().subscribe(key, failoverController.listener(webSocketSession2._name), filter);
+                }
+                else if (arbiter != null)
+                {
+                    webSocketSession1.subscriptionManager().subscribe(key, arbiter.listener(webSocketSession1._name), filter);
+                    webSocketSession2.subscriptionManager().subscribe(key, arbiter.listener(webSocketSession2._name), filter);
+                }
+                else if (hotstandby)
+                    webSocketSession2.subscriptionManager().subscribe(key, createListener(webSocketSession2), filter);
+            }
+
+            // Take snapshots of items on the first session. Those requested together are batched.
+            if (snapshots != null)
+            {
+                for (String itemName : snapshots.split(","))
+                {
+                    ItemCache.Key key = new ItemCache.Key(service, itemName.trim(), null);
+                    webSocketSession1.snapshotBatcher().snapshot(key).whenComplete((refreshJson, throwable) -> {
+                        if (throwable != null)
+                            System.out.println("SNAPSHOT on " + webSocketSession1._name + " failed: " + throwable.getMessage());
+                        else
+                            System.out.println("SNAPSHOT on " + webSocketSession1._name + ": \n" + refreshJson.toString(2));
+                    });
+                }
+            }
+
+            // Periodically list the items cached by the first session that match the query.
+            if (ricQuery != null)
+            {
+                ScheduledExecutorService queryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "RicQuery");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                queryTimer.scheduleAtFixedRate(() -> System.out.println("RIC QUERY " + ricQuery + " on " + webSocketSession1._name + ": "
+                        + queryRics(webSocketSession1._itemCache, ricQuery)), 10, 60, TimeUnit.SECONDS);
+            }
+
+            // Re-distribute items from the first session to local WebSocket clients.
+            if (serverPort > 0)
+            {
+                try {
+                    redistributionServer = new RedistributionServer(serverPort, serverThreads, webSocketSession1.subscriptionManager(), service);
+                    redistributionServer.start();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            }
 
-                // Send the updated access token over our WebSockets.
-                webSocketSession1.updateToken(authJson.getString("access_token"));
-                if (hotstandby)
-                    webSocketSession2.updateToken(authJson.getString("access_token"));
+            // Watch the alert thresholds on the first session, printing alerts as they fire.
+            if (alerts != null)
+            {
+                ExecutorService alertExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "AlertEngine");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                alertEngine = new AlertEngine(alertExecutor);
+                addAlerts(alertEngine, alerts, webSocketSession1.subscriptionManager());
             }
+
+            // Fan items from the first session out to local subscribers over a Unix domain socket.
+            if (unixSocketPath != null)
+            {
+                try {
+                    unixSocketFanout = new UnixSocketFanout(Paths.get(unixSocketPath), webSocketSession1.subscriptionManager(), service, 10000);
+                    unixSocketFanout.start();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+            }
+
+            // Refresh the token before it expires, on a timer; main waits until the refresh fails.
+            tokenRefreshTimer = Executors.newSingleThreadScheduledExecutor(timerThreadFactory("TokenRefresh"));
+            scheduleTokenRefresh(expireTime);
+            shutdownLatch.await();
         } catch (JSONException e) {
             e.printStackTrace();
         } catch (InterruptedException e) {
@@ -562,6 +1308,195 @@ public class MarketPriceRTOServiceDiscovery {
         }
     }
 
+    /**
+     * Threads of the example's timers: virtual threads with --transport virtual, daemon
+     * platform threads otherwise.
+     */
+    static ThreadFactory timerThreadFactory(String name) {
+        if (transport instanceof VirtualThreadWebSocketTransport)
+            return VirtualThreads.factory(name);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Schedule the next token refresh.
+     * @param expireTime Lifetime (in seconds) of the current access token
+     */
+    static void scheduleTokenRefresh(int expireTime) {
+        // Continue using current token until 90% of initial time before it expires.
+        tokenRefreshTimer.schedule(() -> refreshToken(expireTime), expireTime * 900L, TimeUnit.MILLISECONDS);  // The value 900 means 90% of expireTime in milliseconds
+    }
+
+    /**
+     * Re-authenticate before the access token expires, send the new token over the
+     * WebSockets, and schedule the next refresh. If the refresh fails, main is released.
+     * @param expireTime Lifetime (in seconds) of the current access token
+     */
+    public static void refreshToken(int expireTime) {
+        try {
+            // Connect to LSEG Delivery Platform and re-authenticate, using the refresh token provided in the previous response
+            authJson = getAuthenticationInfo(authJson);
+            if (authJson == null)
+                System.exit(1);
+ 
+            // If expiration time returned by refresh request is less then initial expiration time,
+            // re-authenticate using password
+            int refreshingExpireTime = Integer.parseInt(authJson.getString("expires_in"));
+            if (refreshingExpireTime != expireTime) {
+               	System.out.println("expire time changed from " + expireTime + " sec to " + refreshingExpireTime + 
+                		" sec; retry with password");
+                authJson = getAuthenticationInfo(null);
+                if (authJson == null)
+                    System.exit(1);
+                expireTime = Integer.parseInt(authJson.getString("expires_in"));
+            }
+
+            // Send the updated access token over our WebSockets.
+            webSocketSession1.updateToken(authJson.getString("access_token"));
+            if (hotstandby)
+                webSocketSession2.updateToken(authJson.getString("access_token"));
+            for (WebSocketSession webSocketSession : pooledSessions.values())
+            {
+                if (webSocketSession != webSocketSession1)
+                    webSocketSession.updateToken(authJson.getString("access_token"));
+            }
+
+            scheduleTokenRefresh(expireTime);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            shutdownLatch.countDown();
+        }
+    }
+
+    /**
+     * Create the listener used by the example to read a subscribed item. With a queue
+     * high-water mark, the listener runs on its own thread behind a ConsumerQueue.
+     */
+    public static SubscriptionManager.Listener createListener(WebSocketSession webSocketSession) {
+        return createListener(webSocketSession._name);
+    }
+
+    /**
+     * Create the listener used by the example to read items from a named source, e.g. the
+     * arbiter merging the hot-standby sessions. For "pool", messages are attributed to the
+     * pooled session they were received on, which changes when an item moves.
+     */
+    public static SubscriptionManager.Listener createListener(String name) {
+        SubscriptionManager.Listener listener = (subscription, messageJson) -> {
+            String source = name.equals("pool") ? pooledSessionName(subscription) : name;
+            if (messageJson.has("ConflationInfo"))
+                System.out.println("CONFLATED on " + source + ": \n" + messageJson.toString(2));
+            else if (filter != null && messageJson.optString("Type").equals("Update"))
+                System.out.println("FILTERED on " + source + ": \n" + messageJson.toString(2));
+        };
+
+        if (conflationInterval > 0)
+            listener = new Conflator(listener, timerWheel, conflationInterval);
+        if (queueHighWater > 0)
+            listener = new ConsumerQueue(name, listener, queueHighWater, queueHighWater / 4);
+        return listener;
+    }
+
+    /** Name of the pooled session a subscription was made on. */
+    public static String pooledSessionName(SubscriptionManager.Subscription subscription) {
+        for (WebSocketSession webSocketSession : pooledSessions.values())
+        {
+            if (webSocketSession.subscriptionManager() == subscription.manager())
+                return webSocketSession._name;
+        }
+        return "pool";
+    }
+
+    /**
+     * Create a Flow subscriber that prints an item's messages, requesting one at a time.
+     * Updates that arrive while it is printing are conflated by the publisher.
+     */
+    public static Flow.Subscriber<ItemPublisher.Update> createFlowSubscriber(WebSocketSession webSocketSession) {
+        return new Flow.Subscriber<ItemPublisher.Update>() {
+            Flow.Subscription _subscription;
+
+            public void onSubscribe(Flow.Subscription subscription) {
+                _subscription = subscription;
+                subscription.request(1);
+            }
+
+            public void onNext(ItemPublisher.Update update) {
+                System.out.println("FLOW on " + webSocketSession._name + " (" + update.count() + " message(s)): \n" + update.messageJson().toString(2));
+                _subscription.request(1);
+            }
+
+            public void onError(Throwable throwable) {
+                System.out.println("FLOW on " + webSocketSession._name + " failed: " + throwable.getMessage());
+            }
+
+            public void onComplete() {
+                System.out.println("FLOW on " + webSocketSession._name + " completed");
+            }
+        };
+    }
+
+    /**
+     * Add alerts given as "<item> <field> >= <threshold>" or "<item> <field> <= <threshold>",
+     * separated by semicolons, subscribing the engine to their items.
+     */
+    public static void addAlerts(AlertEngine alertEngine, String alerts, SubscriptionManager subscriptionManager) {
+        Set<String> subscribed = new HashSet<String>();
+        for (String alert : alerts.split(";"))
+        {
+            String[] parts = alert.trim().split("\\s+");
+            double threshold = Double.NaN;
+            try {
+                if (parts.length == 4 && (parts[2].equals(">=") || parts[2].equals("<=")))
+                    threshold = Double.parseDouble(parts[3]);
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+            if (Double.isNaN(threshold))
+            {
+                System.out.println("Invalid alert (expected \"<item> <field> >= <threshold>\" or \"<item> <field> <= <threshold>\"): " + alert);
+                System.exit(1);
+            }
+
+            subscribed.add(parts[0]);
+            alertEngine.add(parts[0], parts[1],
+                    parts[2].equals(">=") ? AlertEngine.Direction.ABOVE : AlertEngine.Direction.BELOW,
+                    threshold,
+                    (firedAlert, value) -> System.out.println("ALERT: " + firedAlert + " (" + parts[1] + " is " + value + ")"));
+        }
+
+        // Subscribe once the alerts are in place, so that the images are checked against them.
+        for (String itemName : subscribed)
+            subscriptionManager.subscribe(new ItemCache.Key(service, itemName, null), alertEngine);
+    }
+
+    /**
+     * Names of the cached items matching a query: "prefix:<text>", "suffix:<text>" or
+     * "range:<from>..<to>" (from inclusive, to exclusive), in sorted order.
+     */
+    public static List<String> queryRics(ItemCache itemCache, String query) {
+        List<String> rics = new ArrayList<String>();
+        RicIndex.Visitor collector = ric -> rics.add(ric.toString());
+        String argument = query.substring(query.indexOf(':') + 1);
+        if (query.startsWith("prefix:"))
+            itemCache.forEachRicWithPrefix(argument, collector);
+        else if (query.startsWith("suffix:"))
+        {
+            itemCache.forEachRicWithSuffix(argument, collector);
+            // The suffix index visits names in order of their reversed text.
+            rics.sort(null);
+        }
+        else
+        {
+            int separator = argument.indexOf("..");
+            itemCache.forEachRicInRange(argument.substring(0, separator), argument.substring(separator + 2), collector);
+        }
+        return rics;
+    }
+
     public static int checkPassword(String pwd) {
     	int result = 0;
     	
@@ -621,7 +1556,7 @@ public class MarketPriceRTOServiceDiscovery {
     	boolean result = false;
         try
         {
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+            SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
             HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
             HttpPost httppost = new HttpPost(authServer);
@@ -731,7 +1666,7 @@ public class MarketPriceRTOServiceDiscovery {
      public static JSONObject getAuthenticationInfo(JSONObject previousAuthResponseJson, String url) {
          try
          {
-             SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+             SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
              HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
              HttpPost httppost = new HttpPost(url);
@@ -846,7 +1781,7 @@ public class MarketPriceRTOServiceDiscovery {
     public static JSONObject queryServiceDiscovery( String url ) {
         try
         {
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(new SSLContextBuilder().build());
+            SSLConnectionSocketFactory sslsf = TlsConfig.httpSocketFactory();
 
             HttpClient httpclient = HttpClients.custom().setSSLSocketFactory(sslsf).build();
 
@@ -0,0 +1,321 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.*;
+
+/*
+ * Minimal local stand-in for a Real-Time server, for exercising clients without a network
+ * connection: a plain (ws://) WebSocket server speaking enough tr_json2 to accept a Login,
+ * open MarketPrice streams with a Refresh, close them, and push the Updates handed to
+ * publish() to every client that has the item open.
+ *
+ * Failures can be simulated: drop() closes every client connection abruptly, and
+ * setStalled(true) keeps the connections open but stops sending anything, as a hung
+ * server would.
+ */
+public class MockRealTimeServer {
+
+    /**
+     * A connected client.
+     */
+    class Connection
+    {
+        final Socket _socket;
+        final OutputStream _out;
+
+        /** Stream IDs of the client's open items, by item name. */
+        final Map<String, Integer> _streams = new ConcurrentHashMap<String, Integer>();
+
+        Connection(Socket socket) throws IOException
+        {
+            _socket = socket;
+            _out = socket.getOutputStream();
+        }
+
+        /** Send a tr_json2 message (wrapped in an array) as a text frame. */
+        synchronized void send(JSONObject messageJson) throws IOException
+        {
+            byte[] payload = new JSONArray().put(messageJson).toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(WebSocketFrames.MAX_HEADER_LENGTH);
+            WebSocketFrames.writeHeader(header, 0x80 | WebSocketFrames.OPCODE_TEXT, payload.length, null);
+            _out.write(header.array(), 0, header.position());
+            _out.write(payload);
+            _out.flush();
+        }
+
+        void close()
+        {
+            try {
+                _socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    private final ServerSocket _serverSocket;
+    private final List<Connection> _connections = new CopyOnWriteArrayList<Connection>();
+
+    /** Latest fields of each published item, sent in Refreshes. */
+    private final Map<String, JSONObject> _images = new ConcurrentHashMap<String, JSONObject>();
+
+    private volatile boolean _stalled = false;
+
+    /**
+     * @param port Port to listen on (on the loopback interface), or 0 for any free port
+     */
+    public MockRealTimeServer(int port) throws IOException
+    {
+        _serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    public int port()
+    {
+        return _serverSocket.getLocalPort();
+    }
+
+    /** URL that clients connect to. */
+    public String url()
+    {
+        return "ws://127.0.0.1:" + port() + "/WebSocket";
+    }
+
+    /** Start accepting clients, each served on its own thread. */
+    public void start()
+    {
+        Thread acceptThread = new Thread(() -> {
+            while (!_serverSocket.isClosed())
+            {
+                try {
+                    Socket socket = _serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread thread = new Thread(() -> serve(socket), "MockRealTimeServer-" + socket.getPort());
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    // Closed.
+                }
+            }
+        }, "MockRealTimeServer-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /** Close the listening socket and every connection. */
+    public void stop() throws IOException
+    {
+        _serverSocket.close();
+        drop();
+    }
+
+    /** Close every client connection abruptly. */
+    public void drop()
+    {
+        for (Connection connection : _connections)
+            connection.close();
+        _connections.clear();
+    }
+
+    /** Stop (or resume) sending anything to the clients, as if the server hung. */
+    public void setStalled(boolean stalled)
+    {
+        _stalled = stalled;
+    }
+
+    /**
+     * Publish an Update of an item to the clients that have it open.
+     * @param seqNumber SeqNumber of the Update; redundant servers publishing the same Updates should use the same numbers
+     */
+    public void publish(String itemName, long seqNumber, JSONObject fieldsJson)
+    {
+        JSONObject imageJson = _images.computeIfAbsent(itemName, name -> new JSONObject());
+
+        // Send while holding the image, so that a stream being opened gets either the Update or a Refresh that includes it.
+        synchronized (imageJson)
+        {
+            for (String fieldName : fieldsJson.keySet())
+                imageJson.put(fieldName, fieldsJson.get(fieldName));
+            if (_stalled)
+                return;
+
+            for (Connection connection : _connections)
+            {
+                Integer streamId = connection._streams.get(itemName);
+                if (streamId == null)
+                    continue;
+                JSONObject updateJson = new JSONObject();
+                updateJson.put("ID", streamId);
+                updateJson.put("Type", "Update");
+                updateJson.put("SeqNumber", seqNumber);
+                updateJson.put("Fields", fieldsJson);
+                send(connection, updateJson);
+            }
+        }
+    }
+
+    /** Send a Ping to every client. */
+    public void ping()
+    {
+        if (_stalled)
+            return;
+        for (Connection connection : _connections)
+            send(connection, new JSONObject().put("Type", "Ping"));
+    }
+
+    private void send(Connection connection, JSONObject messageJson)
+    {
+        try {
+            connection.send(messageJson);
+        } catch (IOException e) {
+            connection.close();
+            _connections.remove(connection);
+        }
+    }
+
+    /** Serve a client: WebSocket handshake, then its requests until it disconnects. */
+    private void serve(Socket socket)
+    {
+        Connection connection = null;
+        try {
+            InputStream in = socket.getInputStream();
+            if (!handshake(socket, in))
+            {
+                socket.close();
+                return;
+            }
+            connection = new Connection(socket);
+            _connections.add(connection);
+
+            WebSocketFrames.Decoder decoder = new WebSocketFrames.Decoder(1024 * 1024);
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            byte[] chunk = new byte[16 * 1024];
+            int length;
+            while ((length = in.read(chunk)) > 0)
+            {
+                if (buf.remaining() < length)
+                    throw new IOException("Request too long");
+                buf.put(chunk, 0, length);
+                buf.flip();
+                WebSocketFrames.Frame frame;
+                while ((frame = decoder.next(buf)) != null)
+                {
+                    if (frame.opcode() == WebSocketFrames.OPCODE_CLOSE)
+                        return;
+                    if (frame.opcode() == WebSocketFrames.OPCODE_TEXT)
+                        onRequest(connection, new String(frame.payload(), StandardCharsets.UTF_8));
+                }
+                buf.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Client gone, or dropped.
+        } finally {
+            if (connection != null)
+            {
+                connection.close();
+                _connections.remove(connection);
+            }
+        }
+    }
+
+    /** Read the HTTP upgrade request and accept it. */
+    private boolean handshake(Socket socket, InputStream in) throws IOException
+    {
+        // Read the request byte by byte, so that nothing after it is buffered away from the frame reader.
+        StringBuilder request = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0)
+        {
+            request.append((char)c);
+            if (request.length() >= 4 && request.lastIndexOf("\r\n\r\n") == request.length() - 4)
+                break;
+        }
+
+        String key = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(
+                request.toString().getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.ISO_8859_1));
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key"))
+                key = line.substring(colon + 1).trim();
+        }
+        if (key == null)
+            return false;
+
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(key) + "\r\n"
+            + "Sec-WebSocket-Protocol: tr_json2\r\n\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return true;
+    }
+
+    /** Answer the messages of a request frame. */
+    private void onRequest(Connection connection, String text) throws IOException
+    {
+        String trimmed = text.trim();
+        JSONArray messages = trimmed.startsWith("[") ? new JSONArray(trimmed) : new JSONArray().put(new JSONObject(trimmed));
+        for (int i = 0; i < messages.length(); ++i)
+        {
+            JSONObject requestJson = messages.getJSONObject(i);
+            String type = requestJson.optString("Type", "Request");
+            int streamId = requestJson.optInt("ID");
+
+            if (type.equals("Close"))
+            {
+                connection._streams.values().remove(streamId);
+            }
+            else if (type.equals("Request") && requestJson.optString("Domain").equals("Login"))
+            {
+                JSONObject refreshJson = new JSONObject();
+                refreshJson.put("ID", streamId);
+                refreshJson.put("Type", "Refresh");
+                refreshJson.put("Domain", "Login");
+                refreshJson.put("Key", new JSONObject().put("Name", "mock"));
+                refreshJson.put("State", new JSONObject().put("Stream", "Open").put("Data", "Ok"));
+                connection.send(refreshJson);
+            }
+            else if (type.equals("Request"))
+            {
+                String itemName = requestJson.getJSONObject("Key").getString("Name");
+                JSONObject imageJson = _images.computeIfAbsent(itemName, name -> new JSONObject());
+                JSONObject refreshJson = new JSONObject();
+                refreshJson.put("ID", streamId);
+                refreshJson.put("Type", "Refresh");
+                refreshJson.put("Key", new JSONObject().put("Name", itemName).put("Service", "MOCK"));
+                refreshJson.put("State", new JSONObject().put("Stream", "Open").put("Data", "Ok"));
+                synchronized (imageJson)
+                {
+                    refreshJson.put("Fields", new JSONObject(imageJson.toString()));
+                    connection.send(refreshJson);
+                    connection._streams.put(itemName, streamId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Selector thread of the local servers (RedistributionServer and UnixSocketFanout), and the
+ * non-blocking connections it serves.
+ *
+ * A loop runs a Selector on its own thread. Tasks can be handed to it from any thread; it
+ * runs them between selects. The connections registered with it are read and written on
+ * its thread; a server channel registered without an attachment is handed to the loop's
+ * accept handler.
+ *
+ * A Peer's outbound frames can be queued from any thread, without copying; each is queued
+ * as one unit, so the buffers of frames sent by different threads never interleave. The
+ * loop's thread writes them with gathering writes, continuing when the socket becomes
+ * writable. The queue is bounded: a peer that falls more than maxQueuedFrames behind is
+ * disconnected, so that a slow consumer cannot make the server's memory grow without bound.
+ */
+public class NioServerLoop implements Runnable {
+
+    /** Largest number of buffers written by one gathering write. */
+    static final int GATHER_SIZE = 64;
+
+    /**
+     * A connection served by a loop. Subclasses read the peer's requests, and release what
+     * the connection holds when it is closed.
+     */
+    public abstract static class Peer
+    {
+        final SocketChannel _channel;
+        final NioServerLoop _loop;
+        final int _maxQueuedFrames;
+        SelectionKey _key;
+
+        /** Frames (each one or more buffers) queued by any thread, and frames being written by the loop's thread. */
+        final ConcurrentLinkedQueue<ByteBuffer[]> _outbound = new ConcurrentLinkedQueue<ByteBuffer[]>();
+        final ArrayDeque<ByteBuffer[]> _writing = new ArrayDeque<ByteBuffer[]>();
+        final ByteBuffer[] _gather = new ByteBuffer[GATHER_SIZE];
+        final AtomicInteger _queuedFrames = new AtomicInteger(0);
+        final AtomicBoolean _flushScheduled = new AtomicBoolean(false);
+
+        volatile boolean _closed = false;
+
+        /**
+         * @param channel Connected, non-blocking channel
+         * @param loop Loop serving the connection
+         * @param maxQueuedFrames Largest number of frames queued to the peer before it is disconnected as too slow
+         */
+        Peer(SocketChannel channel, NioServerLoop loop, int maxQueuedFrames)
+        {
+            _channel = channel;
+            _loop = loop;
+            _maxQueuedFrames = maxQueuedFrames;
+        }
+
+        /** Read from the channel, on the loop's thread. */
+        abstract void read();
+
+        /** Release what the connection holds. Called once, when it is closed. */
+        abstract void onClose();
+
+        /** Register the channel with the loop, on the loop's thread. */
+        void register()
+        {
+            try {
+                _key = _channel.register(_loop._selector, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /** Queue a frame, made of the given buffers, for writing. Can be called from any thread. */
+        void send(ByteBuffer... frame)
+        {
+            if (_closed)
+                return;
+
+            int queuedFrames = _queuedFrames.incrementAndGet();
+            if (queuedFrames > _maxQueuedFrames)
+            {
+                // Only the send that crosses the limit schedules the disconnect.
+                if (queuedFrames == _maxQueuedFrames + 1)
+                {
+                    System.out.println(this + " is too slow, disconnecting.");
+                    _loop.execute(this::close);
+                }
+                return;
+            }
+
+            _outbound.add(frame);
+            if (_flushScheduled.compareAndSet(false, true))
+                _loop.execute(this::flush);
+        }
+
+        /** Write queued buffers, on the loop's thread. */
+        void flush()
+        {
+            _flushScheduled.set(false);
+            if (_closed)
+                return;
+
+            ByteBuffer[] frame;
+            while ((frame = _outbound.poll()) != null)
+                _writing.add(frame);
+
+            try {
+                while (!_writing.isEmpty())
+                {
+                    int count = 0;
+                    gather:
+                    for (ByteBuffer[] writing : _writing)
+                    {
+                        for (ByteBuffer buffer : writing)
+                        {
+                            if (!buffer.hasRemaining())
+                                continue;
+                            _gather[count++] = buffer;
+                            if (count == _gather.length)
+                                break gather;
+                        }
+                    }
+                    long written = _channel.write(_gather, 0, count);
+
+                    while (!_writing.isEmpty() && isWritten(_writing.peek()))
+                    {
+                        _writing.poll();
+                        _queuedFrames.decrementAndGet();
+                    }
+
+                    // Socket buffer is full. Continue when it becomes writable.
+                    if (written == 0)
+                        break;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+
+            if (_key != null && _key.isValid())
+                _key.interestOps(_writing.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private static boolean isWritten(ByteBuffer[] frame)
+        {
+            for (ByteBuffer buffer : frame)
+            {
+                if (buffer.hasRemaining())
+                    return false;
+            }
+            return true;
+        }
+
+        void close()
+        {
+            if (_closed)
+                return;
+            _closed = true;
+
+            onClose();
+            _outbound.clear();
+            _writing.clear();
+
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    final Selector _selector;
+    private final ConcurrentLinkedQueue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean _wakeupPending = new AtomicBoolean(false);
+    private final Runnable _acceptHandler;
+    private volatile boolean _running = false;
+
+    /**
+     * @param acceptHandler Called on the loop's thread when a server channel registered with
+     *                      the loop has connections to accept, or null if none is registered
+     */
+    public NioServerLoop(Runnable acceptHandler) throws IOException
+    {
+        _selector = Selector.open();
+        _acceptHandler = acceptHandler;
+    }
+
+    /** Start the loop's thread. */
+    public void start(String threadName)
+    {
+        _running = true;
+        Thread thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop the loop. Its selector is closed. */
+    public void stop()
+    {
+        _running = false;
+        _selector.wakeup();
+    }
+
+    /** Run a task on the loop's thread. */
+    public void execute(Runnable task)
+    {
+        _tasks.add(task);
+        if (_wakeupPending.compareAndSet(false, true))
+            _selector.wakeup();
+    }
+
+    public void run()
+    {
+        while (_running)
+        {
+            try {
+                _selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            _wakeupPending.set(false);
+            Runnable task;
+            while ((task = _tasks.poll()) != null)
+                task.run();
+
+            Iterator<SelectionKey> iter = _selector.selectedKeys().iterator();
+            while (iter.hasNext())
+            {
+                SelectionKey key = iter.next();
+                iter.remove();
+                if (!key.isValid())
+                    continue;
+
+                if (key.attachment() == null)
+                    _acceptHandler.run();
+                else
+                {
+                    Peer peer = (Peer)key.attachment();
+                    if (key.isReadable())
+                        peer.read();
+                    if (key.isValid() && key.isWritable())
+                        peer.flush();
+                }
+            }
+        }
+
+        try {
+            _selector.close();
+        } catch (IOException e) {
+            // Shutting down.
+        }
+    }
+}
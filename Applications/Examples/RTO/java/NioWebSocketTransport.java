@@ -0,0 +1,742 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLParameters;
+
+/*
+ * WebSocketTransport serving all its connections on a small, fixed number of NIO event
+ * loops, each running a Selector on its own thread, so that the number of threads does not
+ * grow with the number of connections.
+ *
+ * The loops do the whole protocol without blocking: TCP connect, TLS (through an
+ * SSLEngine using the shared TlsConfig context), the HTTP upgrade, WebSocket framing and
+ * masking, and inflating messages compressed with permessage-deflate (with the
+ * WebSocketFrames.MessageReader). Reads and writes go through direct ByteBuffers pooled per
+ * loop, and inflation through one direct buffer per loop; a connection only holds a
+ * buffer while it has bytes in it, so idle connections hold none. Messages larger than a
+ * pooled buffer get a dedicated one while they are in flight. Client messages are sent
+ * uncompressed, which permessage-deflate allows.
+ *
+ * A connection must be open (TCP connected, TLS handshake done and upgrade accepted) within
+ * the profile's connect timeout, or DEFAULT_OPEN_TIMEOUT_MILLIS if it has none; otherwise it
+ * fails with a SocketTimeoutException. Each loop checks the deadlines of the connections it
+ * is opening between selects.
+ *
+ * Listeners are called on the connection's event loop thread, and should hand off any
+ * lengthy processing; messages can be sent from any thread.
+ */
+public class NioWebSocketTransport implements WebSocketTransport {
+
+    /** Size of the pooled buffers. Holds a TLS record (about 16 KB) with room to spare. */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Largest number of free buffers kept by each event loop. */
+    static final int MAX_POOLED_BUFFERS = 256;
+
+    /** Time (in milliseconds) allowed to open a connection when the profile has no connect timeout. */
+    static final int DEFAULT_OPEN_TIMEOUT_MILLIS = 30000;
+
+    /** Largest accepted HTTP upgrade response. */
+    static final int MAX_HANDSHAKE_LENGTH = 16 * 1024;
+
+    static final int CONNECTING = 0;
+    static final int TLS_HANDSHAKE = 1;
+    static final int UPGRADING = 2;
+    static final int OPEN = 3;
+    static final int CLOSED = 4;
+
+    /**
+     * Selector thread serving a share of the connections, with its pool of buffers.
+     */
+    class EventLoop implements Runnable
+    {
+        final Selector _selector;
+        final ConcurrentLinkedQueue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+        final AtomicBoolean _wakeupPending = new AtomicBoolean(false);
+        final ArrayDeque<ByteBuffer> _pool = new ArrayDeque<ByteBuffer>();
+
+        /** Connections being opened, in order of their deadlines (they all have the same timeout). */
+        final ArrayDeque<NioConnection> _opening = new ArrayDeque<NioConnection>();
+
+        final SecureRandom _random = new SecureRandom();
+        final ByteBuffer _empty = ByteBuffer.allocate(0);
+        final WebSocketFrames.InflateBuffers _inflateBuffers = new WebSocketFrames.InflateBuffers(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        Thread _thread;
+
+        EventLoop() throws IOException
+        {
+            _selector = Selector.open();
+        }
+
+        /** Run a task on the loop's thread. */
+        void execute(Runnable task)
+        {
+            _tasks.add(task);
+            if (_wakeupPending.compareAndSet(false, true))
+                _selector.wakeup();
+        }
+
+        /** Fail the connections that are still not open at their deadline, and forget those that are. */
+        void expireOpening()
+        {
+            long now = System.nanoTime();
+            NioConnection connection;
+            while ((connection = _opening.peek()) != null)
+            {
+                if (connection._state != OPEN && connection._state != CLOSED)
+                {
+                    if (connection._openDeadline - now > 0)
+                        return;
+                    connection.close(new SocketTimeoutException("Connection to " + connection._uri + " not open within " + _openTimeoutMillis + " ms"));
+                }
+                _opening.poll();
+            }
+        }
+
+        ByteBuffer acquire()
+        {
+            ByteBuffer buffer = _pool.poll();
+            return (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /** Return a buffer to the pool; dedicated (larger) buffers are dropped. */
+        void release(ByteBuffer buffer)
+        {
+            if (buffer.capacity() != BUFFER_SIZE || !buffer.isDirect() || _pool.size() >= MAX_POOLED_BUFFERS)
+                return;
+            buffer.clear();
+            _pool.push(buffer);
+        }
+
+        public void run()
+        {
+            while (_running)
+            {
+                try {
+                    // Wake up in time for the earliest deadline of the connections being opened.
+                    NioConnection opening = _opening.peek();
+                    if (opening == null)
+                        _selector.select();
+                    else
+                        _selector.select(Math.max(1, (opening._openDeadline - System.nanoTime()) / 1000000 + 1));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+
+                _wakeupPending.set(false);
+                Runnable task;
+                while ((task = _tasks.poll()) != null)
+                    task.run();
+
+                Iterator<SelectionKey> iter = _selector.selectedKeys().iterator();
+                while (iter.hasNext())
+                {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    NioConnection connection = (NioConnection)key.attachment();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isConnectable())
+                        connection.onConnectable();
+                    else if (key.isReadable() || key.isWritable())
+                        connection.onReady(key.isReadable());
+                }
+
+                expireOpening();
+            }
+
+            try {
+                _selector.close();
+            } catch (IOException e) {
+                // Shutting down.
+            }
+        }
+    }
+
+    /**
+     * A connection. Its state and buffers are only touched on its event loop's thread.
+     * All buffers are kept in write mode (the bytes they hold are from 0 to position).
+     */
+    class NioConnection implements Connection
+    {
+        final URI _uri;
+        final InetSocketAddress _address;
+        final boolean _secure;
+        final String _protocol;
+        final DeflateSettings _deflateOffer;
+        final DeflateSettings.Stats _deflateStats = new DeflateSettings.Stats();
+        final Listener _listener;
+        final EventLoop _loop;
+
+        SocketChannel _channel;
+        SelectionKey _selectionKey;
+        SSLEngine _engine;
+        String _secWebSocketKey;
+        volatile int _state = CONNECTING;
+
+        /** Time (System.nanoTime()) by which the connection must be open. */
+        long _openDeadline;
+
+        /** Bytes read from the socket, not decrypted yet (TLS only). */
+        ByteBuffer _netIn;
+
+        /** Bytes of the upgrade response or frames, not processed yet. */
+        ByteBuffer _appIn;
+
+        /** Frames not encrypted yet (TLS only). */
+        ByteBuffer _appOut;
+
+        /** Bytes not written to the socket yet. */
+        ByteBuffer _netOut;
+
+        final ConcurrentLinkedQueue<WebSocketFrames.Outbound> _outbound = new ConcurrentLinkedQueue<WebSocketFrames.Outbound>();
+        final AtomicBoolean _flushScheduled = new AtomicBoolean(false);
+
+        final WebSocketFrames.Decoder _decoder = new WebSocketFrames.Decoder(WebSocketFrames.MAX_PAYLOAD_LENGTH);
+        final WebSocketFrames.MessageReader _messageReader;
+
+        NioConnection(URI uri, String protocol, DeflateSettings deflateOffer, Listener listener, EventLoop loop)
+        {
+            _uri = uri;
+            _secure = uri.getScheme().equalsIgnoreCase("wss");
+            int port = (uri.getPort() > 0) ? uri.getPort() : _secure ? 443 : 80;
+            _address = new InetSocketAddress(uri.getHost(), port);
+            _protocol = protocol;
+            _deflateOffer = deflateOffer;
+            _listener = listener;
+            _loop = loop;
+            _messageReader = new WebSocketFrames.MessageReader(_deflateStats, loop._inflateBuffers);
+        }
+
+        public URI uri()
+        {
+            return _uri;
+        }
+
+        public DeflateSettings.Stats deflateStats()
+        {
+            return _deflateStats;
+        }
+
+        public void sendText(String text)
+        {
+            if (_state != OPEN)
+                return;
+            send(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        public void disconnect()
+        {
+            _loop.execute(() -> {
+                if (_state == OPEN)
+                {
+                    _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_CLOSE, new byte[] { 0x03, (byte)0xE8 }));
+                    try {
+                        pump();
+                    } catch (IOException | DataFormatException | RuntimeException e) {
+                        // Closing anyway.
+                    }
+                }
+                close(null);
+            });
+        }
+
+        private void send(WebSocketFrames.Outbound outbound)
+        {
+            _outbound.add(outbound);
+            if (_flushScheduled.compareAndSet(false, true))
+            {
+                _loop.execute(() -> {
+                    _flushScheduled.set(false);
+                    run(this::pump);
+                });
+            }
+        }
+
+        /** Start connecting, on the loop's thread. */
+        void open()
+        {
+            _openDeadline = System.nanoTime() + _openTimeoutMillis * 1000000L;
+            _loop._opening.add(this);
+            try {
+                if (_address.isUnresolved())
+                    throw new IOException("Unknown host " + _address.getHostString());
+                _channel = SocketChannel.open();
+                _channel.configureBlocking(false);
+                _profile.configure(_channel.socket());
+                _selectionKey = _channel.register(_loop._selector, SelectionKey.OP_CONNECT, this);
+                if (_channel.connect(_address))
+                    onConnectable();
+            } catch (IOException | RuntimeException e) {
+                close(e);
+            }
+        }
+
+        void onConnectable()
+        {
+            run(() -> {
+                if (!_channel.finishConnect())
+                    return;
+                if (_secure)
+                {
+                    _engine = TlsConfig.sslContext().createSSLEngine(_address.getHostString(), _address.getPort());
+                    _engine.setUseClientMode(true);
+                    SSLParameters sslParameters = _engine.getSSLParameters();
+                    sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    _engine.setSSLParameters(sslParameters);
+                    _engine.beginHandshake();
+                    _state = TLS_HANDSHAKE;
+                }
+                else
+                {
+                    _state = UPGRADING;
+                    putUpgradeRequest();
+                }
+                pump();
+            });
+        }
+
+        void onReady(boolean readable)
+        {
+            run(() -> {
+                if (readable)
+                {
+                    int count;
+                    if (_engine != null)
+                    {
+                        if (_netIn == null)
+                            _netIn = _loop.acquire();
+                        count = _channel.read(_netIn);
+                    }
+                    else
+                    {
+                        _appIn = ensureSpace(_appIn);
+                        count = _channel.read(_appIn);
+                    }
+                    if (count < 0)
+                        throw new EOFException("Connection closed by the server");
+                }
+                pump();
+            });
+        }
+
+        /** Run a step on the loop's thread, closing the connection if it fails. */
+        private void run(IOStep step)
+        {
+            if (_state == CLOSED)
+                return;
+            try {
+                step.run();
+            } catch (IOException | DataFormatException | RuntimeException e) {
+                close(e);
+            }
+            releaseIdleBuffers();
+        }
+
+        /** Move everything along: decrypt, process what was received, frame and encrypt what is queued, write. */
+        private void pump() throws IOException, DataFormatException
+        {
+            if (_engine != null)
+            {
+                unwrap();
+                if (_state == TLS_HANDSHAKE && !isHandshaking())
+                {
+                    _state = UPGRADING;
+                    putUpgradeRequest();
+                }
+            }
+            if (_appIn != null && _appIn.position() > 0)
+                process();
+
+            while (_state != CLOSED)
+            {
+                if (_state == OPEN)
+                    encodeOutbound();
+                if (_engine != null && !wrapAll())
+                    break;
+                if (!write())
+                    break;
+                if (_outbound.isEmpty() || _state != OPEN)
+                    break;
+            }
+
+            if (_state != CLOSED && _selectionKey.isValid())
+                _selectionKey.interestOps((_netOut != null && _netOut.position() > 0) ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        private boolean isHandshaking()
+        {
+            SSLEngineResult.HandshakeStatus handshakeStatus = _engine.getHandshakeStatus();
+            return handshakeStatus != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                && handshakeStatus != SSLEngineResult.HandshakeStatus.FINISHED;
+        }
+
+        /** Decrypt what has been read, performing the TLS handshake steps it calls for. */
+        private void unwrap() throws IOException
+        {
+            if (_netIn == null)
+                _netIn = _loop.acquire();
+            _netIn.flip();
+            try {
+                while (true)
+                {
+                    SSLEngineResult.HandshakeStatus handshakeStatus = _engine.getHandshakeStatus();
+                    if (handshakeStatus == SSLEngineResult.HandshakeStatus.NEED_TASK)
+                    {
+                        Runnable task;
+                        while ((task = _engine.getDelegatedTask()) != null)
+                            task.run();
+                        continue;
+                    }
+                    if (handshakeStatus == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+                    {
+                        if (!wrap(_loop._empty) && !write())
+                            return;
+                        continue;
+                    }
+                    if (!_netIn.hasRemaining())
+                        return;
+
+                    _appIn = ensureSpace(_appIn);
+                    SSLEngineResult result = _engine.unwrap(_netIn, _appIn);
+                    switch (result.getStatus())
+                    {
+                        case BUFFER_UNDERFLOW:
+                            return;
+                        case BUFFER_OVERFLOW:
+                            _appIn = grow(_appIn, _appIn.position() + _engine.getSession().getApplicationBufferSize());
+                            break;
+                        case CLOSED:
+                            throw new EOFException("TLS connection closed by the server");
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                _netIn.compact();
+            }
+        }
+
+        /** Encrypt bytes into _netOut. Returns false if _netOut is full. */
+        private boolean wrap(ByteBuffer src) throws IOException
+        {
+            if (_netOut == null)
+                _netOut = _loop.acquire();
+            src.flip();
+            try {
+                SSLEngineResult result = _engine.wrap(src, _netOut);
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+                    throw new EOFException("TLS connection closed");
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW)
+                {
+                    if (_netOut.position() > 0)
+                        return false;
+                    _netOut = grow(_netOut, _engine.getSession().getPacketBufferSize());
+                }
+                return true;
+            } finally {
+                src.compact();
+            }
+        }
+
+        /** Encrypt all of _appOut, writing as _netOut fills. Returns false if the socket cannot take more. */
+        private boolean wrapAll() throws IOException
+        {
+            while (_appOut != null && _appOut.position() > 0)
+            {
+                if (!wrap(_appOut) && !write())
+                    return false;
+            }
+            return true;
+        }
+
+        /** Write _netOut to the socket. Returns false if the socket could not take all of it. */
+        private boolean write() throws IOException
+        {
+            if (_netOut == null || _netOut.position() == 0)
+                return true;
+            _netOut.flip();
+            try {
+                while (_netOut.hasRemaining())
+                {
+                    if (_channel.write(_netOut) == 0)
+                        return false;
+                }
+                return true;
+            } finally {
+                _netOut.compact();
+            }
+        }
+
+        /** The buffer that frames are written to: encrypted later with TLS, written as is otherwise. */
+        private ByteBuffer plainOut(int length)
+        {
+            if (_engine != null)
+                return _appOut = ensureSpace(_appOut, length);
+            return _netOut = ensureSpace(_netOut, length);
+        }
+
+        private void putUpgradeRequest()
+        {
+            byte[] key = new byte[16];
+            _loop._random.nextBytes(key);
+            _secWebSocketKey = Base64.getEncoder().encodeToString(key);
+
+            byte[] bytes = WebSocketFrames.upgradeRequest(_uri, _secWebSocketKey, _protocol, _deflateOffer.offer()).getBytes(StandardCharsets.ISO_8859_1);
+            plainOut(bytes.length).put(bytes);
+        }
+
+        /** Frame the queued messages, as many as fit in the buffer (a larger one gets a buffer of its own). */
+        private void encodeOutbound()
+        {
+            WebSocketFrames.Outbound outbound;
+            while ((outbound = _outbound.peek()) != null)
+            {
+                int frameLength = WebSocketFrames.headerLength(outbound._payload.length, true) + outbound._payload.length;
+                ByteBuffer current = (_engine != null) ? _appOut : _netOut;
+                if (current != null && current.position() > 0 && current.remaining() < frameLength)
+                    return;
+                _outbound.poll();
+
+                ByteBuffer buf = plainOut(frameLength);
+                byte[] maskKey = new byte[4];
+                _loop._random.nextBytes(maskKey);
+                WebSocketFrames.writeHeader(buf, 0x80 | outbound._opcode, outbound._payload.length, maskKey);
+                int start = buf.position();
+                buf.put(outbound._payload);
+                WebSocketFrames.mask(buf, start, buf.position(), maskKey, 0);
+            }
+        }
+
+        /** Process the upgrade response, then the frames received. */
+        private void process() throws IOException, DataFormatException
+        {
+            _appIn.flip();
+            try {
+                if (_state == UPGRADING && !upgrade())
+                    return;
+                WebSocketFrames.Frame frame;
+                while (_state == OPEN && (frame = _decoder.next(_appIn)) != null)
+                    onFrame(frame);
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                if (_appIn != null)
+                    _appIn.compact();
+            }
+        }
+
+        /** Check the upgrade response, once complete. Returns whether the WebSocket is open. */
+        private boolean upgrade() throws IOException
+        {
+            int end = -1;
+            for (int i = _appIn.position(); i + 3 < _appIn.limit(); ++i)
+            {
+                if (_appIn.get(i) == '\r' && _appIn.get(i + 1) == '\n' && _appIn.get(i + 2) == '\r' && _appIn.get(i + 3) == '\n')
+                {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0)
+            {
+                if (_appIn.remaining() >= MAX_HANDSHAKE_LENGTH)
+                    throw new IOException("WebSocket upgrade response too long");
+                return false;
+            }
+
+            byte[] header = new byte[end - _appIn.position()];
+            _appIn.get(header);
+            _appIn.position(end + 4);
+            String extensions = WebSocketFrames.checkUpgradeResponse(new String(header, StandardCharsets.ISO_8859_1), _secWebSocketKey);
+            _messageReader.setExtensions(extensions);
+
+            _state = OPEN;
+            WebSocketFrames.callback(() -> _listener.onConnected(this));
+            return true;
+        }
+
+        private void onFrame(WebSocketFrames.Frame frame) throws IOException, DataFormatException
+        {
+            switch (frame.opcode())
+            {
+                case WebSocketFrames.OPCODE_PING:
+                    _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_PONG, frame.payload()));
+                    return;
+                case WebSocketFrames.OPCODE_PONG:
+                    return;
+                case WebSocketFrames.OPCODE_CLOSE:
+                    _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_CLOSE, new byte[0]));
+                    encodeOutbound();
+                    if (_engine == null || wrapAll())
+                        write();
+                    close(null);
+                    return;
+                default:
+                    String text = _messageReader.read(frame);
+                    if (text != null)
+                        WebSocketFrames.callback(() -> _listener.onTextMessage(this, text));
+                    return;
+            }
+        }
+
+        /** A buffer with room to read or write into: the given one, a pooled one, or a larger one if it is full. */
+        private ByteBuffer ensureSpace(ByteBuffer buffer)
+        {
+            if (buffer == null)
+                return _loop.acquire();
+            return buffer.hasRemaining() ? buffer : grow(buffer, buffer.capacity() * 2);
+        }
+
+        /** A buffer with room for a number of bytes. */
+        private ByteBuffer ensureSpace(ByteBuffer buffer, int length)
+        {
+            if (buffer == null)
+                buffer = _loop.acquire();
+            return (buffer.remaining() >= length) ? buffer : grow(buffer, buffer.position() + length);
+        }
+
+        /** Move the contents of a buffer to a larger one. */
+        private ByteBuffer grow(ByteBuffer buffer, int capacity)
+        {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(capacity, buffer.capacity()));
+            buffer.flip();
+            larger.put(buffer);
+            _loop.release(buffer);
+            return larger;
+        }
+
+        /** Give the empty buffers back to the pool. */
+        private void releaseIdleBuffers()
+        {
+            if (_netIn != null && _netIn.position() == 0)
+            {
+                _loop.release(_netIn);
+                _netIn = null;
+            }
+            if (_appIn != null && _appIn.position() == 0)
+            {
+                _loop.release(_appIn);
+                _appIn = null;
+            }
+            if (_appOut != null && _appOut.position() == 0)
+            {
+                _loop.release(_appOut);
+                _appOut = null;
+            }
+            if (_netOut != null && _netOut.position() == 0)
+            {
+                _loop.release(_netOut);
+                _netOut = null;
+            }
+        }
+
+        /** Close the connection, on the loop's thread, and tell the listener. */
+        void close(Exception cause)
+        {
+            int state = _state;
+            if (state == CLOSED)
+                return;
+            _state = CLOSED;
+
+            if (_selectionKey != null)
+                _selectionKey.cancel();
+            try {
+                if (_channel != null)
+                    _channel.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+            for (ByteBuffer buffer : new ByteBuffer[] { _netIn, _appIn, _appOut, _netOut })
+            {
+                if (buffer != null)
+                    _loop.release(buffer);
+            }
+            _netIn = _appIn = _appOut = _netOut = null;
+            _outbound.clear();
+            _messageReader.end();
+
+            if (state == OPEN)
+                WebSocketFrames.callback(() -> _listener.onDisconnected(this));
+            else
+                WebSocketFrames.callback(() -> _listener.onConnectError(this, (cause != null) ? cause : new IOException("Connection closed")));
+        }
+    }
+
+    /** A step of a connection that may fail. */
+    interface IOStep
+    {
+        void run() throws IOException, DataFormatException;
+    }
+
+    private final EventLoop[] _loops;
+    private final TransportProfile _profile;
+    private final long _openTimeoutMillis;
+    private final AtomicInteger _nextLoop = new AtomicInteger(0);
+    private volatile boolean _running = true;
+
+    /**
+     * @param eventLoops Number of event loop threads
+     * @param profile Socket settings of the connections. Its connect timeout bounds the whole opening of a
+     *                connection (TCP connect, TLS handshake and upgrade); its socket factories are not used.
+     */
+    public NioWebSocketTransport(int eventLoops, TransportProfile profile) throws IOException
+    {
+        _profile = profile;
+        _openTimeoutMillis = (profile.getConnectTimeout() > 0) ? profile.getConnectTimeout() : DEFAULT_OPEN_TIMEOUT_MILLIS;
+        _loops = new EventLoop[Math.max(1, eventLoops)];
+        for (int i = 0; i < _loops.length; ++i)
+        {
+            _loops[i] = new EventLoop();
+            _loops[i]._thread = new Thread(_loops[i], "NioWebSocketTransport-" + i);
+            _loops[i]._thread.setDaemon(true);
+            _loops[i]._thread.start();
+        }
+    }
+
+    public Connection connect(URI uri, String protocol, DeflateSettings deflate, Listener listener) throws IOException
+    {
+        if (!_running)
+            throw new IOException("Transport stopped");
+        // The host name is resolved here, on the caller's thread, rather than on an event loop.
+        EventLoop loop = _loops[Math.floorMod(_nextLoop.getAndIncrement(), _loops.length)];
+        NioConnection connection = new NioConnection(uri, protocol, deflate, listener, loop);
+        loop.execute(connection::open);
+        return connection;
+    }
+
+    /** Stop the event loops. Open connections are dropped without notice. */
+    public void stop()
+    {
+        _running = false;
+        for (EventLoop loop : _loops)
+            loop._selector.wakeup();
+    }
+}
@@ -0,0 +1,75 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * WebSocketTransport over nv-websocket-client: each connection has its own reading and
+ * writing threads, and the listener is called on the reading thread. The library inflates
+ * messages itself, so no compression counters are kept.
+ */
+public class NvWebSocketTransport implements WebSocketTransport {
+
+    private final WebSocketFactory _websocketFactory;
+
+    /**
+     * @param websocketFactory Factory creating the connections, e.g. configured with a TransportProfile
+     */
+    public NvWebSocketTransport(WebSocketFactory websocketFactory)
+    {
+        _websocketFactory = websocketFactory;
+    }
+
+    public Connection connect(URI uri, String protocol, DeflateSettings deflate, Listener listener) throws IOException
+    {
+        WebSocket websocket = _websocketFactory.createSocket(uri)
+            .addProtocol(protocol);
+        if (deflate.isEnabled())
+            websocket.addExtension(deflate.offer());
+        Connection connection = new Connection() {
+            public URI uri() { return uri; }
+            public void sendText(String text) { websocket.sendText(text); }
+            public void disconnect() { websocket.disconnect(); }
+            public DeflateSettings.Stats deflateStats() { return null; }
+        };
+
+        websocket.addListener(new WebSocketAdapter() {
+            public void onTextMessage(WebSocket websocket, String message)
+            {
+                listener.onTextMessage(connection, message);
+            }
+
+            public void onConnected(WebSocket websocket, Map<String, List<String>> headers)
+            {
+                listener.onConnected(connection);
+            }
+
+            public void onConnectError(WebSocket websocket, WebSocketException e)
+            {
+                listener.onConnectError(connection, e);
+            }
+
+            public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                    WebSocketFrame clientCloseFrame, boolean closedByServer)
+            {
+                listener.onDisconnected(connection);
+            }
+        });
+        websocket.connectAsynchronously();
+        return connection;
+    }
+}
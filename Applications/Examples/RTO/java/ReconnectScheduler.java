@@ -0,0 +1,165 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/*
+ * Schedules the reconnect attempts of WebSocket sessions on one shared thread, instead of
+ * sleeping in the WebSocket library's callbacks.
+ *
+ * The delay before each attempt grows exponentially with the number of consecutive failed
+ * attempts, from the base delay up to the maximum delay, and is then jittered to a random
+ * value between half and all of it, so that clients disconnected by the same outage do not
+ * all reconnect at the same moment. Each session rotates through a list of endpoints (its
+ * own host, then the backup hosts), moving on to the next one after a number of failed
+ * attempts on the current one. A successful login resets the backoff.
+ */
+public class ReconnectScheduler {
+
+    /**
+     * Reconnect state of one session.
+     */
+    public class Backoff
+    {
+        final List<String> _endpoints;
+        int _endpointIndex = 0;
+        int _attemptsOnEndpoint = 0;
+        int _failures = 0;
+
+        Backoff(List<String> endpoints)
+        {
+            _endpoints = endpoints;
+        }
+
+        /** Endpoint to connect to: the one of the scheduled attempt, or the first one. */
+        public synchronized String endpoint()
+        {
+            return _endpoints.get(_endpointIndex);
+        }
+
+        /**
+         * Schedule an attempt to connect.
+         * @param connect Connects to the given endpoint, or returns false if it cannot try yet (e.g. while
+         *                waiting for a new token); it is then called again after the base delay, without
+         *                counting as an attempt
+         * @return The delay before the attempt, in milliseconds
+         */
+        public long schedule(Predicate<String> connect)
+        {
+            String endpoint;
+            long delay;
+            synchronized (this)
+            {
+                if (_attemptsOnEndpoint >= _attemptsPerEndpoint && _endpoints.size() > 1)
+                {
+                    _endpointIndex = (_endpointIndex + 1) % _endpoints.size();
+                    _attemptsOnEndpoint = 0;
+                }
+                ++_attemptsOnEndpoint;
+                endpoint = _endpoints.get(_endpointIndex);
+                delay = delay(_failures++);
+            }
+            _executor.schedule(() -> attempt(connect, endpoint), delay, TimeUnit.MILLISECONDS);
+            return delay;
+        }
+
+        private void attempt(Predicate<String> connect, String endpoint)
+        {
+            if (!connect.test(endpoint))
+                _executor.schedule(() -> attempt(connect, endpoint), _baseMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /** Make an endpoint the one to connect to next, e.g. to migrate to a faster one. */
+        public synchronized void moveTo(String endpoint)
+        {
+            int index = _endpoints.indexOf(endpoint);
+            if (index < 0)
+            {
+                _endpoints.add(endpoint);
+                index = _endpoints.size() - 1;
+            }
+            _endpointIndex = index;
+            _attemptsOnEndpoint = 0;
+            _failures = 0;
+        }
+
+        /** The session has connected and logged in; the next reconnect starts again from the base delay. */
+        public synchronized void connected()
+        {
+            _attemptsOnEndpoint = 0;
+            _failures = 0;
+        }
+    }
+
+    private final long _baseMillis;
+    private final long _maxMillis;
+    private final int _attemptsPerEndpoint;
+    private final ScheduledExecutorService _executor;
+
+    /**
+     * @param baseMillis Delay before the first attempt after a disconnect, in milliseconds (before jitter)
+     * @param maxMillis Maximum delay between attempts, in milliseconds (before jitter)
+     * @param attemptsPerEndpoint Number of consecutive failed attempts on an endpoint before moving on to the next one
+     */
+    public ReconnectScheduler(long baseMillis, long maxMillis, int attemptsPerEndpoint)
+    {
+        this(baseMillis, maxMillis, attemptsPerEndpoint, runnable -> {
+            Thread thread = new Thread(runnable, "ReconnectScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param baseMillis Delay before the first attempt after a disconnect, in milliseconds (before jitter)
+     * @param maxMillis Maximum delay between attempts, in milliseconds (before jitter)
+     * @param attemptsPerEndpoint Number of consecutive failed attempts on an endpoint before moving on to the next one
+     * @param threadFactory Creates the thread the attempts run on, e.g. a virtual thread (see VirtualThreads)
+     */
+    public ReconnectScheduler(long baseMillis, long maxMillis, int attemptsPerEndpoint, ThreadFactory threadFactory)
+    {
+        _baseMillis = Math.max(1, baseMillis);
+        _maxMillis = Math.max(_baseMillis, maxMillis);
+        _attemptsPerEndpoint = Math.max(1, attemptsPerEndpoint);
+        _executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Reconnect state for a session.
+     * @param host Endpoint the session connects to first
+     * @param backupHosts Endpoints to rotate through when the first one keeps failing (host itself is skipped)
+     */
+    public Backoff backoff(String host, List<String> backupHosts)
+    {
+        List<String> endpoints = new ArrayList<String>();
+        endpoints.add(host);
+        for (String backupHost : backupHosts)
+        {
+            if (!endpoints.contains(backupHost))
+                endpoints.add(backupHost);
+        }
+        return new Backoff(endpoints);
+    }
+
+    /** Jittered delay before an attempt, in milliseconds, after a number of consecutive failed attempts. */
+    long delay(int failures)
+    {
+        long ceiling = _maxMillis;
+        if (failures < 63 && _baseMillis <= (_maxMillis >> failures))
+            ceiling = _baseMillis << failures;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+}
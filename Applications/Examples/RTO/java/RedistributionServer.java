@@ -0,0 +1,552 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.*;
+
+/*
+ * Local WebSocket server that re-distributes items from an upstream session to many
+ * downstream clients, speaking the same tr_json2 protocol as the Real-Time service.
+ *
+ * Clients connect with the tr_json2 subprotocol, log in (no authentication is performed,
+ * so the server is meant for trusted local networks) and request items by Service and
+ * Name. All client requests for an item share one upstream subscription through a
+ * SubscriptionManager; a client that joins an item that is already streaming receives
+ * its image from the last-value cache. As for subscriptions, the image is taken as of a
+ * sequence number, and the Refresh and Update messages it already includes are not sent
+ * to the client again.
+ *
+ * Connections are served by a small, fixed number of NIO event loops (NioServerLoop), each
+ * running a Selector on its own thread. Every upstream message is encoded once per item: the
+ * encoded JSON (without its stream ID) is shared by all clients of the item, and only a
+ * short frame header and "[{"ID":n," prefix is written per client, using gathering writes.
+ * A client whose outbound queue grows past MAX_QUEUED_FRAMES is disconnected.
+ */
+public class RedistributionServer {
+
+    /** Largest number of frames queued to a client before it is disconnected as too slow. */
+    static final int MAX_QUEUED_FRAMES = 10000;
+
+    /** Largest accepted frame from a client. Must fit in a client's read buffer. */
+    static final int MAX_PAYLOAD_LENGTH = 32 * 1024;
+
+    /** Largest accepted HTTP upgrade request. */
+    static final int MAX_HANDSHAKE_LENGTH = 8192;
+
+    /**
+     * A downstream client connection. Read and written on its event loop's thread; messages
+     * can be queued to it from any thread.
+     */
+    class Client extends NioServerLoop.Peer
+    {
+        final ByteBuffer _readBuf = ByteBuffer.allocate(64 * 1024);
+        boolean _upgraded = false;
+        boolean _loggedIn = false;
+        final WebSocketFrames.Decoder _decoder = new WebSocketFrames.Decoder(MAX_PAYLOAD_LENGTH);
+        final ByteArrayOutputStream _fragments = new ByteArrayOutputStream();
+
+        /** Items this client has open, by the client's stream ID. */
+        final Map<Integer, ClientStream> _streams = new HashMap<Integer, ClientStream>();
+
+        Client(SocketChannel channel, NioServerLoop loop)
+        {
+            super(channel, loop, MAX_QUEUED_FRAMES);
+        }
+
+        void read()
+        {
+            int count;
+            try {
+                count = _channel.read(_readBuf);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0)
+            {
+                close();
+                return;
+            }
+
+            try {
+                if (!_upgraded && !handshake())
+                    return;
+
+                _readBuf.flip();
+                WebSocketFrames.Frame frame;
+                while (!_closed && (frame = _decoder.next(_readBuf)) != null)
+                    onFrame(frame);
+                _readBuf.compact();
+            } catch (RuntimeException e) {
+                System.out.println("Closing client " + _channel + ": " + e);
+                close();
+            }
+        }
+
+        /** Process the HTTP upgrade request, once complete. Returns whether the connection is upgraded. */
+        boolean handshake()
+        {
+            String request = new String(_readBuf.array(), 0, _readBuf.position(), StandardCharsets.ISO_8859_1);
+            int end = request.indexOf("\r\n\r\n");
+            if (end < 0)
+            {
+                if (_readBuf.position() >= MAX_HANDSHAKE_LENGTH)
+                    close();
+                return false;
+            }
+
+            String key = null;
+            boolean hasProtocol = false;
+            for (String line : request.substring(0, end).split("\r\n"))
+            {
+                int colon = line.indexOf(':');
+                if (colon < 0)
+                    continue;
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Sec-WebSocket-Key"))
+                    key = value;
+                else if (name.equalsIgnoreCase("Sec-WebSocket-Protocol") && value.contains("tr_json2"))
+                    hasProtocol = true;
+            }
+
+            if (key == null || !hasProtocol)
+            {
+                send(ByteBuffer.wrap("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+                flush();
+                close();
+                return false;
+            }
+
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + WebSocketFrames.acceptKey(key) + "\r\n"
+                + "Sec-WebSocket-Protocol: tr_json2\r\n\r\n";
+            send(ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII)));
+            _upgraded = true;
+
+            // Keep any bytes that followed the request.
+            _readBuf.flip();
+            _readBuf.position(end + 4);
+            _readBuf.compact();
+            return true;
+        }
+
+        void onFrame(WebSocketFrames.Frame frame)
+        {
+            switch (frame.opcode())
+            {
+                case WebSocketFrames.OPCODE_PING:
+                    sendFrame(0x80 | WebSocketFrames.OPCODE_PONG, frame.payload());
+                    return;
+                case WebSocketFrames.OPCODE_PONG:
+                    return;
+                case WebSocketFrames.OPCODE_CLOSE:
+                    sendFrame(0x80 | WebSocketFrames.OPCODE_CLOSE, new byte[0]);
+                    flush();
+                    close();
+                    return;
+                default:
+                    break;
+            }
+
+            _fragments.write(frame.payload(), 0, frame.payload().length);
+            if (!frame.fin())
+                return;
+
+            String text = new String(_fragments.toByteArray(), StandardCharsets.UTF_8);
+            _fragments.reset();
+
+            if (text.trim().startsWith("["))
+            {
+                JSONArray jsonArray = new JSONArray(text);
+                for (int i = 0; i < jsonArray.length(); ++i)
+                    onMessage(jsonArray.getJSONObject(i));
+            }
+            else
+                onMessage(new JSONObject(text));
+        }
+
+        void onMessage(JSONObject messageJson)
+        {
+            String messageType = messageJson.optString("Type", "Request");
+            int streamId = messageJson.optInt("ID", 0);
+
+            switch (messageType)
+            {
+                case "Request":
+                    if (messageJson.optString("Domain", "MarketPrice").equals("Login"))
+                    {
+                        _loggedIn = true;
+                        JSONObject refreshJson = new JSONObject();
+                        refreshJson.put("ID", streamId);
+                        refreshJson.put("Type", "Refresh");
+                        refreshJson.put("Domain", "Login");
+                        refreshJson.put("Key", new JSONObject().put("Name", messageJson.getJSONObject("Key").optString("Name", "")));
+                        refreshJson.put("State", new JSONObject().put("Stream", "Open").put("Data", "Ok").put("Text", "Login accepted"));
+                        sendJson(refreshJson);
+                        return;
+                    }
+
+                    if (!_loggedIn)
+                    {
+                        sendStatus(streamId, "Closed", "Suspect", "Not logged in");
+                        return;
+                    }
+
+                    JSONObject keyJson = messageJson.getJSONObject("Key");
+                    String itemService = keyJson.optString("Service", _defaultService);
+                    String domain = messageJson.optString("Domain", "MarketPrice");
+                    JSONArray nameArray = keyJson.optJSONArray("Name");
+                    if (nameArray == null)
+                    {
+                        open(streamId, new ItemCache.Key(itemService, keyJson.getString("Name"), domain));
+                    }
+                    else
+                    {
+                        // Batch request: each item is opened on one of the following stream IDs.
+                        sendStatus(streamId, "Closed", "Ok", "Processed " + nameArray.length() + " total items from Batch Request.");
+                        for (int i = 0; i < nameArray.length(); ++i)
+                            open(streamId + i + 1, new ItemCache.Key(itemService, nameArray.getString(i), domain));
+                    }
+                    return;
+
+                case "Close":
+                    ClientStream clientStream = _streams.remove(streamId);
+                    if (clientStream != null)
+                        clientStream._item.leave(clientStream);
+                    return;
+
+                case "Ping":
+                    sendJson(new JSONObject().put("Type", "Pong"));
+                    return;
+
+                default:
+                    return;
+            }
+        }
+
+        /** Open a stream for an item on this client, sharing the item's upstream subscription. */
+        void open(int streamId, ItemCache.Key key)
+        {
+            ClientStream previous = _streams.remove(streamId);
+            if (previous != null)
+                previous._item.leave(previous);
+
+            ServerItem item;
+            synchronized (_items)
+            {
+                item = _items.get(key);
+                if (item == null)
+                {
+                    item = new ServerItem(key);
+                    _items.put(key, item);
+                    item._subscription = _upstream.subscribe(key, item);
+                }
+            }
+
+            ClientStream clientStream = new ClientStream(this, streamId, item);
+            _streams.put(streamId, clientStream);
+            item.join(clientStream);
+        }
+
+        void sendStatus(int streamId, String stream, String data, String text)
+        {
+            JSONObject statusJson = new JSONObject();
+            statusJson.put("ID", streamId);
+            statusJson.put("Type", "Status");
+            statusJson.put("State", new JSONObject().put("Stream", stream).put("Data", data).put("Text", text));
+            sendJson(statusJson);
+        }
+
+        void sendJson(JSONObject messageJson)
+        {
+            sendFrame(0x80 | WebSocketFrames.OPCODE_TEXT, ("[" + messageJson.toString() + "]").getBytes(StandardCharsets.UTF_8));
+        }
+
+        void sendFrame(int firstByte, byte[] payload)
+        {
+            ByteBuffer buf = ByteBuffer.allocate(WebSocketFrames.MAX_HEADER_LENGTH + payload.length);
+            WebSocketFrames.writeHeader(buf, firstByte, payload.length, null);
+            buf.put(payload);
+            buf.flip();
+            send(buf);
+        }
+
+        /**
+         * Send a message whose encoded body (everything after its stream ID) is shared by
+         * all clients of an item.
+         */
+        void sendShared(int streamId, EncodedMessage encoded)
+        {
+            byte[] prefix = ("[{\"ID\":" + streamId + (encoded._isEmpty ? "" : ",")).getBytes(StandardCharsets.US_ASCII);
+            int payloadLength = prefix.length + encoded._body.remaining();
+            ByteBuffer header = ByteBuffer.allocate(WebSocketFrames.headerLength(payloadLength, false) + prefix.length);
+            WebSocketFrames.writeHeader(header, 0x80 | WebSocketFrames.OPCODE_TEXT, payloadLength, null);
+            header.put(prefix);
+            header.flip();
+            send(header, encoded._body.duplicate());
+        }
+
+        void onClose()
+        {
+            for (ClientStream clientStream : _streams.values())
+                clientStream._item.leave(clientStream);
+            _streams.clear();
+            _clientCount.decrementAndGet();
+        }
+
+        public String toString()
+        {
+            return "Client " + _channel;
+        }
+    }
+
+    /**
+     * A client's stream for an item.
+     */
+    static class ClientStream
+    {
+        final Client _client;
+        final int _streamId;
+        final ServerItem _item;
+
+        /** Sequence number of the image the client was given; earlier Refresh and Update messages are not sent. */
+        long _imageSeq = -1;
+
+        ClientStream(Client client, int streamId, ServerItem item)
+        {
+            _client = client;
+            _streamId = streamId;
+            _item = item;
+        }
+    }
+
+    /**
+     * Message encoded once for all clients of an item: the JSON after the stream ID.
+     */
+    static class EncodedMessage
+    {
+        final ByteBuffer _body;
+        final boolean _isEmpty;
+
+        EncodedMessage(JSONObject messageJson)
+        {
+            String[] names = JSONObject.getNames(messageJson);
+            int count = 0;
+            if (names != null)
+            {
+                for (String name : names)
+                {
+                    if (!name.equals("ID"))
+                        names[count++] = name;
+                }
+            }
+
+            String[] bodyNames = new String[count];
+            if (names != null)
+                System.arraycopy(names, 0, bodyNames, 0, count);
+            String json = new JSONObject(messageJson, bodyNames).toString();
+
+            // Drop the opening brace; the per-client prefix supplies it along with the stream ID.
+            _isEmpty = (count == 0);
+            _body = ByteBuffer.wrap((json.substring(1) + "]").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Item shared by the clients of this server, with one upstream subscription.
+     */
+    class ServerItem implements SubscriptionManager.Listener
+    {
+        final ItemCache.Key _key;
+        SubscriptionManager.Subscription _subscription;
+        final List<ClientStream> _clients = new CopyOnWriteArrayList<ClientStream>();
+        boolean _hasImage = false;
+
+        ServerItem(ItemCache.Key key)
+        {
+            _key = key;
+        }
+
+        /** Fan an upstream message out to the item's clients, encoding it once. */
+        public synchronized void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+        {
+            if (_subscription == null)
+                _subscription = subscription;
+
+            String messageType = messageJson.optString("Type");
+            if (messageType.equals("Refresh") && messageJson.optBoolean("Complete", true))
+                _hasImage = true;
+
+            if (!_clients.isEmpty())
+            {
+                boolean isImageMessage = messageType.equals("Refresh") || messageType.equals("Update");
+                long seq = subscription.seq();
+                EncodedMessage encoded = new EncodedMessage(messageJson);
+                for (ClientStream clientStream : _clients)
+                {
+                    if (!isImageMessage || seq > clientStream._imageSeq)
+                        clientStream._client.sendShared(clientStream._streamId, encoded);
+                }
+            }
+
+            JSONObject messageState = messageJson.optJSONObject("State");
+            if (messageType.equals("Status") && messageState != null && messageState.optString("Stream").startsWith("Closed"))
+            {
+                // The upstream stream is gone; remove the item so that later requests open a new one.
+                _hasImage = false;
+                for (ClientStream clientStream : _clients)
+                    clientStream._client._loop.execute(() -> clientStream._client._streams.remove(clientStream._streamId, clientStream));
+                _clients.clear();
+                _loops[0].execute(() -> {
+                    synchronized (_items)
+                    {
+                        if (_items.get(_key) == this)
+                            _items.remove(_key);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Add a client, giving it the cached image if the item has already been refreshed.
+         * A message already applied to the cache may still be on its way to onMessage; the
+         * image's sequence number keeps it from being sent to the client a second time.
+         */
+        synchronized void join(ClientStream clientStream)
+        {
+            ItemCache.Snapshot snapshot = _subscription.item().snapshot();
+            if (_hasImage && snapshot.isComplete())
+            {
+                clientStream._imageSeq = snapshot.seq();
+                clientStream._client.sendShared(clientStream._streamId,
+                        new EncodedMessage(SubscriptionManager.imageOf(_subscription.item(), snapshot)));
+            }
+            _clients.add(clientStream);
+        }
+
+        /** Remove a client. The upstream subscription is closed when the last client leaves. */
+        void leave(ClientStream clientStream)
+        {
+            synchronized (_items)
+            {
+                _clients.remove(clientStream);
+                if (_clients.isEmpty() && _items.get(_key) == this)
+                {
+                    _items.remove(_key);
+                    _subscription.close();
+                }
+            }
+        }
+    }
+
+    private final int _port;
+    private final SubscriptionManager _upstream;
+    private final String _defaultService;
+    private final NioServerLoop[] _loops;
+    private final Map<ItemCache.Key, ServerItem> _items = new HashMap<ItemCache.Key, ServerItem>();
+    private final AtomicInteger _clientCount = new AtomicInteger(0);
+    private ServerSocketChannel _serverChannel;
+    private int _nextLoop = 0;
+
+    /**
+     * @param port Port to listen on
+     * @param threads Number of event loop threads
+     * @param upstream Subscriptions to the upstream session that items are re-distributed from
+     * @param defaultService Service used for requests that do not specify one
+     */
+    public RedistributionServer(int port, int threads, SubscriptionManager upstream, String defaultService) throws IOException
+    {
+        _port = port;
+        _upstream = upstream;
+        _defaultService = defaultService;
+        _loops = new NioServerLoop[Math.max(1, threads)];
+        for (int i = 0; i < _loops.length; ++i)
+            _loops[i] = new NioServerLoop((i == 0) ? this::accept : null);
+    }
+
+    /** Start listening and serving connections. */
+    public void start() throws IOException
+    {
+        _serverChannel = ServerSocketChannel.open();
+        _serverChannel.bind(new InetSocketAddress(_port));
+        _serverChannel.configureBlocking(false);
+        _serverChannel.register(_loops[0]._selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < _loops.length; ++i)
+            _loops[i].start("RedistributionServer-" + i);
+        System.out.println("Re-distribution server listening on port " + _port + " with " + _loops.length + " event loop(s).");
+    }
+
+    /** Stop serving. Connections are closed. */
+    public void stop()
+    {
+        for (NioServerLoop loop : _loops)
+            loop.stop();
+        try {
+            _serverChannel.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+    }
+
+    /** Number of connected clients. */
+    public int clientCount()
+    {
+        return _clientCount.get();
+    }
+
+    /** Number of items shared with the upstream session. */
+    public int itemCount()
+    {
+        synchronized (_items)
+        {
+            return _items.size();
+        }
+    }
+
+    /** Accept pending connections, spreading them across the event loops. Runs on loop 0. */
+    private void accept()
+    {
+        while (true)
+        {
+            SocketChannel channel;
+            try {
+                channel = _serverChannel.accept();
+                if (channel == null)
+                    return;
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            NioServerLoop loop = _loops[_nextLoop];
+            _nextLoop = (_nextLoop + 1) % _loops.length;
+            Client client = new Client(channel, loop);
+            _clientCount.incrementAndGet();
+            loop.execute(client::register);
+        }
+    }
+}
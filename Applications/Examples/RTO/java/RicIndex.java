@@ -0,0 +1,421 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Compact sorted index of RIC names, supporting prefix and range iteration.
+ *
+ * Names are kept in a sorted, front-coded character array: every name in a block of
+ * BLOCK_SIZE names is stored as the length of the prefix it shares with the previous
+ * name followed by the remaining characters, and the first name of each block is stored
+ * in full so that blocks can be binary searched. Names added since the array was built
+ * are kept in a small sorted set and removed names are marked in a bit set; both are
+ * merged into the array once they grow past a fraction of its size.
+ *
+ * Iteration hands each name to a Visitor as a CharSequence backed by a reused buffer, so
+ * no objects are allocated per name. A visitor that needs to keep a name must copy it.
+ *
+ * An index built with reversed set stores each name back to front. Its prefix queries
+ * then match name suffixes, e.g. "all items on exchange suffix .N".
+ *
+ * This class is not thread safe.
+ */
+public class RicIndex {
+
+    /** Receives the names found by a query, in sorted order. */
+    public interface Visitor
+    {
+        /**
+         * @param ric Name of the item. Only valid until visit returns.
+         * @return false to stop the iteration.
+         */
+        boolean visit(CharSequence ric);
+    }
+
+    /** Number of names per front-coded block. */
+    static final int BLOCK_SIZE = 16;
+
+    /** Minimum number of pending changes before they are merged into the array. */
+    static final int MIN_PENDING = 1024;
+
+    /**
+     * Reusable CharSequence over a character buffer.
+     */
+    static class Chars implements CharSequence
+    {
+        char[] _buf = new char[64];
+        int _length;
+
+        void ensureCapacity(int capacity)
+        {
+            if (_buf.length < capacity)
+            {
+                char[] buf = new char[Math.max(capacity, _buf.length * 2)];
+                System.arraycopy(_buf, 0, buf, 0, _length);
+                _buf = buf;
+            }
+        }
+
+        public int length() { return _length; }
+        public char charAt(int index) { return _buf[index]; }
+        public CharSequence subSequence(int start, int end) { return new String(_buf, start, end - start); }
+        public String toString() { return new String(_buf, 0, _length); }
+    }
+
+    private final boolean _reversed;
+
+    /** Front-coded names: for each name, prefix length, suffix length, then the suffix characters. */
+    private char[] _data = new char[0];
+
+    /** Offset in _data of the first (fully stored) name of each block. */
+    private int[] _blockOffsets = new int[0];
+
+    /** Number of names in _data. */
+    private int _baseCount = 0;
+
+    /** Names in _data that have been removed, by position. */
+    private BitSet _removed = new BitSet();
+    private int _removedCount = 0;
+
+    /** Names added since _data was built (stored reversed, for a reversed index). */
+    private TreeSet<String> _added = new TreeSet<String>();
+
+    private final Chars _current = new Chars();
+    private final Chars _output = new Chars();
+
+    public RicIndex()
+    {
+        this(false);
+    }
+
+    public RicIndex(boolean reversed)
+    {
+        _reversed = reversed;
+    }
+
+    /** Number of names in the index. */
+    public int size()
+    {
+        return _baseCount - _removedCount + _added.size();
+    }
+
+    /** Add a name. Adding a name that is already present has no effect. */
+    public void add(String ric)
+    {
+        String stored = stored(ric);
+        int position = find(stored);
+        if (position >= 0)
+        {
+            if (_removed.get(position))
+            {
+                _removed.clear(position);
+                --_removedCount;
+            }
+            return;
+        }
+
+        _added.add(stored);
+        compactIfNeeded();
+    }
+
+    /** Remove a name, if present. */
+    public void remove(String ric)
+    {
+        String stored = stored(ric);
+        if (_added.remove(stored))
+            return;
+
+        int position = find(stored);
+        if (position >= 0 && !_removed.get(position))
+        {
+            _removed.set(position);
+            ++_removedCount;
+            compactIfNeeded();
+        }
+    }
+
+    public boolean contains(String ric)
+    {
+        String stored = stored(ric);
+        if (_added.contains(stored))
+            return true;
+        int position = find(stored);
+        return position >= 0 && !_removed.get(position);
+    }
+
+    public void clear()
+    {
+        _data = new char[0];
+        _blockOffsets = new int[0];
+        _baseCount = 0;
+        _removed.clear();
+        _removedCount = 0;
+        _added.clear();
+    }
+
+    /**
+     * Visit every name that starts with the given prefix (or, for a reversed index, ends
+     * with the given suffix).
+     */
+    public void forEachWithPrefix(String prefix, Visitor visitor)
+    {
+        String from = stored(prefix);
+        iterate(from, null, from, visitor);
+    }
+
+    /**
+     * Visit every name in the range [from, to). A null bound leaves that end of the range open.
+     * Ranges are only meaningful on an index that is not reversed.
+     */
+    public void forEachInRange(String from, String to, Visitor visitor)
+    {
+        iterate(from == null ? "" : from, to, null, visitor);
+    }
+
+    /** Visit every name in the index. */
+    public void forEach(Visitor visitor)
+    {
+        iterate("", null, null, visitor);
+    }
+
+    private String stored(String ric)
+    {
+        return _reversed ? new StringBuilder(ric).reverse().toString() : ric;
+    }
+
+    /**
+     * Merge the sorted array with the pending set, visiting stored names from 'from'
+     * until 'to' (exclusive) or until a name no longer starts with 'prefix'.
+     */
+    private void iterate(String from, String to, String prefix, Visitor visitor)
+    {
+        Iterator<String> addedIter = _added.tailSet(from, true).iterator();
+        String added = addedIter.hasNext() ? addedIter.next() : null;
+
+        int position = -1;
+        int offset = 0;
+        if (_baseCount > 0)
+        {
+            // Start with the last block whose first name is not greater than 'from'.
+            int block = findBlock(from);
+            position = block * BLOCK_SIZE;
+            offset = _blockOffsets[block];
+            offset = decode(offset);
+
+            // Skip names before 'from'.
+            while (compare(_current, from) < 0)
+            {
+                if (++position >= _baseCount)
+                {
+                    position = -1;
+                    break;
+                }
+                offset = decode(offset);
+            }
+        }
+
+        while (true)
+        {
+            boolean useBase;
+            if (position < 0)
+            {
+                if (added == null)
+                    return;
+                useBase = false;
+            }
+            else if (added == null)
+                useBase = true;
+            else
+                useBase = compare(_current, added) < 0;
+
+            CharSequence name = useBase ? _current : added;
+            if (to != null && compare(name, to) >= 0)
+                return;
+            if (prefix != null && !startsWith(name, prefix))
+                return;
+
+            if (!useBase || !_removed.get(position))
+            {
+                if (!visitor.visit(output(name)))
+                    return;
+            }
+
+            if (useBase)
+            {
+                if (++position >= _baseCount)
+                    position = -1;
+                else
+                    offset = decode(offset);
+            }
+            else
+                added = addedIter.hasNext() ? addedIter.next() : null;
+        }
+    }
+
+    /** Name as given to visitors: the stored name, or a reversed copy of it. */
+    private CharSequence output(CharSequence name)
+    {
+        if (!_reversed)
+            return name;
+
+        int length = name.length();
+        _output.ensureCapacity(length);
+        for (int i = 0; i < length; ++i)
+            _output._buf[i] = name.charAt(length - 1 - i);
+        _output._length = length;
+        return _output;
+    }
+
+    /** Decode the name at the given offset into _current (which holds the previous name of the block). */
+    private int decode(int offset)
+    {
+        int prefixLength = _data[offset];
+        int suffixLength = _data[offset + 1];
+        _current.ensureCapacity(prefixLength + suffixLength);
+        System.arraycopy(_data, offset + 2, _current._buf, prefixLength, suffixLength);
+        _current._length = prefixLength + suffixLength;
+        return offset + 2 + suffixLength;
+    }
+
+    /** Index of the last block whose first name is not greater than the given name (0 if none). */
+    private int findBlock(CharSequence name)
+    {
+        int low = 0;
+        int high = _blockOffsets.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (compareHead(mid, name) <= 0)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /** Compare the first name of a block with the given name. */
+    private int compareHead(int block, CharSequence name)
+    {
+        int offset = _blockOffsets[block];
+        int length = _data[offset + 1];
+        int start = offset + 2;
+        int n = Math.min(length, name.length());
+        for (int i = 0; i < n; ++i)
+        {
+            int diff = _data[start + i] - name.charAt(i);
+            if (diff != 0)
+                return diff;
+        }
+        return length - name.length();
+    }
+
+    /** Position of a stored name in the array, or -1. */
+    private int find(String stored)
+    {
+        if (_baseCount == 0)
+            return -1;
+
+        int block = findBlock(stored);
+        int position = block * BLOCK_SIZE;
+        int end = Math.min(position + BLOCK_SIZE, _baseCount);
+        int offset = _blockOffsets[block];
+        for (; position < end; ++position)
+        {
+            offset = decode(offset);
+            int result = compare(_current, stored);
+            if (result == 0)
+                return position;
+            if (result > 0)
+                break;
+        }
+        return -1;
+    }
+
+    private void compactIfNeeded()
+    {
+        int pending = _added.size() + _removedCount;
+        if (pending >= Math.max(MIN_PENDING, _baseCount / 8))
+            compact();
+    }
+
+    /** Rebuild the front-coded array with the pending additions and removals merged in. */
+    public void compact()
+    {
+        List<String> names = new ArrayList<String>(size());
+        iterate("", null, null, ric -> {
+            // Names are collected in stored form, so undo the reversal done by output().
+            names.add(_reversed ? new StringBuilder(ric).reverse().toString() : ric.toString());
+            return true;
+        });
+
+        int dataLength = 0;
+        for (String name : names)
+            dataLength += 2 + name.length();
+
+        char[] data = new char[dataLength];
+        int[] blockOffsets = new int[(names.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        int offset = 0;
+        String previous = "";
+        for (int i = 0; i < names.size(); ++i)
+        {
+            String name = names.get(i);
+            int prefixLength = 0;
+            if (i % BLOCK_SIZE == 0)
+                blockOffsets[i / BLOCK_SIZE] = offset;
+            else
+            {
+                int max = Math.min(previous.length(), name.length());
+                while (prefixLength < max && previous.charAt(prefixLength) == name.charAt(prefixLength))
+                    ++prefixLength;
+            }
+
+            data[offset++] = (char)prefixLength;
+            data[offset++] = (char)(name.length() - prefixLength);
+            name.getChars(prefixLength, name.length(), data, offset);
+            offset += name.length() - prefixLength;
+            previous = name;
+        }
+
+        _data = (offset == data.length) ? data : Arrays.copyOf(data, offset);
+        _blockOffsets = blockOffsets;
+        _baseCount = names.size();
+        _removed = new BitSet();
+        _removedCount = 0;
+        _added = new TreeSet<String>();
+    }
+
+    static int compare(CharSequence a, CharSequence b)
+    {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; ++i)
+        {
+            int diff = a.charAt(i) - b.charAt(i);
+            if (diff != 0)
+                return diff;
+        }
+        return a.length() - b.length();
+    }
+
+    static boolean startsWith(CharSequence name, String prefix)
+    {
+        if (name.length() < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); ++i)
+        {
+            if (name.charAt(i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,240 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.*;
+
+/*
+ * Single-producer, multi-consumer ring buffer between a WebSocket's reading thread and
+ * the handlers of its messages, in the style of the LMAX Disruptor.
+ *
+ * The ring is an array of preallocated events. The producer (the reading thread) claims
+ * the next sequence, fills in the event for it and publishes it by advancing the cursor.
+ * Every handler runs on a thread of its own and follows the cursor with its own sequence,
+ * processing events in batches; handlers therefore see every message, in order, without
+ * blocking each other. The producer only waits when it would overwrite an event that the
+ * slowest handler has not processed yet.
+ *
+ * Threads waiting for the cursor (handlers) or for the slowest handler (producer) use the
+ * configured WaitStrategy, trading CPU for latency.
+ */
+public class RingBufferDispatcher {
+
+    /** How threads wait for sequences to advance. */
+    public enum WaitStrategy
+    {
+        /** Spin continuously. Lowest latency, uses a full core per waiting thread. */
+        BUSY_SPIN,
+        /** Spin briefly, then yield the processor. */
+        YIELD,
+        /** Spin briefly, then park for a short time. Lowest CPU use. */
+        PARK
+    }
+
+    /**
+     * Preallocated ring entry.
+     */
+    public static class Event
+    {
+        /** Object that published the message, e.g. the WebSocketSession it was received on. */
+        Object _source;
+        JSONObject _messageJson;
+        long _publishNanos;
+
+        public Object source() { return _source; }
+        public JSONObject messageJson() { return _messageJson; }
+        public long publishNanos() { return _publishNanos; }
+    }
+
+    /** Processes events, on the handler's own thread. */
+    public interface Handler
+    {
+        /**
+         * @param event Event to process. Only valid until onEvent returns.
+         * @param sequence Sequence of the event
+         * @param endOfBatch Whether this is the last event currently available
+         */
+        void onEvent(Event event, long sequence, boolean endOfBatch);
+    }
+
+    /**
+     * Thread running one handler.
+     */
+    class Consumer implements Runnable
+    {
+        final String _name;
+        final Handler _handler;
+        final AtomicLong _sequence = new AtomicLong(-1);
+        Thread _thread;
+
+        Consumer(String name, Handler handler)
+        {
+            _name = name;
+            _handler = handler;
+        }
+
+        public void run()
+        {
+            long next = _sequence.get() + 1;
+            int idleCount = 0;
+            while (_running)
+            {
+                long available = _cursor.get();
+                if (available < next)
+                {
+                    idleCount = idle(idleCount);
+                    continue;
+                }
+                idleCount = 0;
+
+                for (long sequence = next; sequence <= available; ++sequence)
+                {
+                    try {
+                        _handler.onEvent(_events[(int)(sequence & _mask)], sequence, sequence == available);
+                    } catch (RuntimeException e) {
+                        System.out.println("Handler " + _name + " failed:");
+                        e.printStackTrace();
+                    }
+                }
+
+                // Let the producer reuse the processed events.
+                _sequence.lazySet(available);
+                next = available + 1;
+            }
+        }
+    }
+
+    private final Event[] _events;
+    private final int _mask;
+    private final WaitStrategy _waitStrategy;
+    private final List<Consumer> _consumers = new ArrayList<Consumer>();
+
+    /** Sequence of the last published event. */
+    private final AtomicLong _cursor = new AtomicLong(-1);
+
+    /** Producer-side cache of the slowest consumer's sequence, to avoid reading every consumer on every publish. */
+    private long _cachedGatingSequence = -1;
+
+    private volatile boolean _running = false;
+
+    /**
+     * @param size Number of events in the ring (rounded up to a power of 2)
+     * @param waitStrategy How waiting threads wait
+     */
+    public RingBufferDispatcher(int size, WaitStrategy waitStrategy)
+    {
+        int ringSize = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        _events = new Event[ringSize];
+        for (int i = 0; i < ringSize; ++i)
+            _events[i] = new Event();
+        _mask = ringSize - 1;
+        _waitStrategy = waitStrategy;
+    }
+
+    /** Add a handler. Handlers must be added before the dispatcher is started. */
+    public synchronized void addHandler(String name, Handler handler)
+    {
+        if (_running)
+            throw new IllegalStateException("Handlers must be added before the dispatcher is started");
+        _consumers.add(new Consumer(name, handler));
+    }
+
+    /** Start a thread for each handler. */
+    public synchronized void start()
+    {
+        _running = true;
+        for (Consumer consumer : _consumers)
+        {
+            consumer._sequence.set(_cursor.get());
+            consumer._thread = new Thread(consumer, "RingBufferDispatcher-" + consumer._name);
+            consumer._thread.setDaemon(true);
+            consumer._thread.start();
+        }
+    }
+
+    /** Stop the handler threads. Events not yet processed are dropped. */
+    public synchronized void stop()
+    {
+        _running = false;
+        for (Consumer consumer : _consumers)
+            consumer._thread.interrupt();
+    }
+
+    /**
+     * Publish a message to all handlers. Must only be called by one thread at a time.
+     * Waits if the ring is full.
+     */
+    public void publish(Object source, JSONObject messageJson)
+    {
+        long sequence = _cursor.get() + 1;
+        long wrapPoint = sequence - _events.length;
+
+        // Wait until the slowest handler has processed the event about to be overwritten.
+        int idleCount = 0;
+        while (wrapPoint > _cachedGatingSequence && _running)
+        {
+            _cachedGatingSequence = minimumSequence();
+            if (wrapPoint > _cachedGatingSequence)
+                idleCount = idle(idleCount);
+        }
+
+        Event event = _events[(int)(sequence & _mask)];
+        event._source = source;
+        event._messageJson = messageJson;
+        event._publishNanos = System.nanoTime();
+        _cursor.lazySet(sequence);
+    }
+
+    /** Sequence of the last published event. */
+    public long cursor()
+    {
+        return _cursor.get();
+    }
+
+    /** Number of published events the slowest handler has not processed yet. */
+    public long backlog()
+    {
+        return _cursor.get() - minimumSequence();
+    }
+
+    private long minimumSequence()
+    {
+        long minimum = _cursor.get();
+        for (Consumer consumer : _consumers)
+            minimum = Math.min(minimum, consumer._sequence.get());
+        return minimum;
+    }
+
+    /** Wait once, according to the wait strategy. Returns the updated idle count. */
+    private int idle(int idleCount)
+    {
+        switch (_waitStrategy)
+        {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                return idleCount;
+            case YIELD:
+                if (idleCount < 100)
+                    Thread.onSpinWait();
+                else
+                    Thread.yield();
+                return idleCount + 1;
+            case PARK:
+            default:
+                if (idleCount < 100)
+                    Thread.onSpinWait();
+                else
+                    LockSupport.parkNanos(50000);
+                return idleCount + 1;
+        }
+    }
+}
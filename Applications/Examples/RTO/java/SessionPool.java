@@ -0,0 +1,221 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * Spreads item subscriptions across several sessions (WebSocket connections), so that the
+ * messages of different items are read and processed by different threads.
+ *
+ * Items are assigned to sessions by consistent hashing: each session is placed on a hash
+ * ring at a number of points (virtual nodes), and an item belongs to the session owning the
+ * first point at or after the item's hash. Adding a session only takes over the items that
+ * hash to its new points, and removing one only hands its own items to the next sessions on
+ * the ring, so a change in the pool moves about 1/N of the items instead of reshuffling all
+ * of them.
+ *
+ * Subscriptions made through the pool follow their item: when it moves to another session,
+ * the subscription on the old session is closed and a new one is made on the new session,
+ * whose Refresh (or cached image) then reaches the listener before its Updates.
+ */
+public class SessionPool {
+
+    /**
+     * A session of the pool.
+     */
+    public static class Member
+    {
+        final String _name;
+        final SubscriptionManager _subscriptionManager;
+
+        Member(String name, SubscriptionManager subscriptionManager)
+        {
+            _name = name;
+            _subscriptionManager = subscriptionManager;
+        }
+
+        public String name() { return _name; }
+        public SubscriptionManager subscriptionManager() { return _subscriptionManager; }
+    }
+
+    /**
+     * A subscription made through the pool, on the session its item currently belongs to.
+     */
+    public class PooledSubscription
+    {
+        final ItemCache.Key _key;
+        final SubscriptionManager.Listener _listener;
+        final FieldFilter _filter;
+        Member _member;
+        SubscriptionManager.Subscription _subscription;
+
+        PooledSubscription(ItemCache.Key key, SubscriptionManager.Listener listener, FieldFilter filter)
+        {
+            _key = key;
+            _listener = listener;
+            _filter = filter;
+        }
+
+        public ItemCache.Key key() { return _key; }
+
+        /** Session the item is currently received on. */
+        public synchronized Member member() { return _member; }
+
+        /** Leave the item. */
+        public void close()
+        {
+            unsubscribe(this);
+        }
+    }
+
+    private final int _virtualNodes;
+
+    /** Points of the sessions on the hash ring. */
+    private final TreeMap<Integer, Member> _ring = new TreeMap<Integer, Member>();
+
+    private final Map<String, Member> _members = new LinkedHashMap<String, Member>();
+    private final Set<PooledSubscription> _subscriptions = new LinkedHashSet<PooledSubscription>();
+
+    /**
+     * @param virtualNodes Number of points of each session on the hash ring. More points spread the items more evenly.
+     */
+    public SessionPool(int virtualNodes)
+    {
+        _virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Add a session, moving the items that now belong to it.
+     * @return The number of subscriptions moved
+     */
+    public synchronized int addSession(String name, SubscriptionManager subscriptionManager)
+    {
+        if (_members.containsKey(name))
+            throw new IllegalArgumentException("Session " + name + " is already in the pool");
+
+        Member member = new Member(name, subscriptionManager);
+        _members.put(name, member);
+        for (int i = 0; i < _virtualNodes; ++i)
+            _ring.putIfAbsent(hash(name + "#" + i), member);
+        return rebalance();
+    }
+
+    /**
+     * Remove a session, moving its items to the remaining sessions.
+     * @return The number of subscriptions moved
+     */
+    public synchronized int removeSession(String name)
+    {
+        Member member = _members.remove(name);
+        if (member == null)
+            return 0;
+        _ring.values().removeIf(point -> point == member);
+        return rebalance();
+    }
+
+    public synchronized List<Member> members()
+    {
+        return new ArrayList<Member>(_members.values());
+    }
+
+    /** Session an item belongs to, or null if the pool is empty. */
+    public synchronized Member memberFor(ItemCache.Key key)
+    {
+        if (_ring.isEmpty())
+            return null;
+        Map.Entry<Integer, Member> point = _ring.ceilingEntry(hash(key.service() + "/" + key.name()));
+        return (point != null) ? point.getValue() : _ring.firstEntry().getValue();
+    }
+
+    /** Subscribe to an item on the session it belongs to. */
+    public PooledSubscription subscribe(ItemCache.Key key, SubscriptionManager.Listener listener)
+    {
+        return subscribe(key, listener, null);
+    }
+
+    /**
+     * Subscribe to an item on the session it belongs to, receiving only the Updates that pass a filter.
+     * @param filter Filter for the subscription's Updates, or null for all Updates
+     */
+    public synchronized PooledSubscription subscribe(ItemCache.Key key, SubscriptionManager.Listener listener, FieldFilter filter)
+    {
+        if (_ring.isEmpty())
+            throw new IllegalStateException("The session pool is empty");
+
+        PooledSubscription subscription = new PooledSubscription(key, listener, filter);
+        move(subscription, memberFor(key));
+        _subscriptions.add(subscription);
+        return subscription;
+    }
+
+    synchronized void unsubscribe(PooledSubscription subscription)
+    {
+        if (!_subscriptions.remove(subscription))
+            return;
+        move(subscription, null);
+    }
+
+    /** Move the subscriptions whose item belongs to another session. */
+    private int rebalance()
+    {
+        if (_ring.isEmpty())
+            return 0;
+
+        int moved = 0;
+        for (PooledSubscription subscription : _subscriptions)
+        {
+            Member member = memberFor(subscription._key);
+            if (member != subscription._member)
+            {
+                move(subscription, member);
+                ++moved;
+            }
+        }
+        return moved;
+    }
+
+    /** Close a subscription on its current session and, unless member is null, subscribe on member. */
+    private void move(PooledSubscription subscription, Member member)
+    {
+        SubscriptionManager.Subscription previous;
+        synchronized (subscription)
+        {
+            previous = subscription._subscription;
+            subscription._member = member;
+            subscription._subscription = null;
+        }
+        if (previous != null)
+            previous.close();
+        if (member == null)
+            return;
+
+        SubscriptionManager.Subscription next = member._subscriptionManager.subscribe(subscription._key, subscription._listener, subscription._filter);
+        synchronized (subscription)
+        {
+            subscription._subscription = next;
+        }
+    }
+
+    /** Hash of a string, with its bits mixed so that similar names land far apart on the ring. */
+    static int hash(String value)
+    {
+        int h = value.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
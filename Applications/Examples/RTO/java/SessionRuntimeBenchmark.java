@@ -0,0 +1,186 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocketFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.*;
+
+/*
+ * Compares the WebSocketTransports when a process holds many sessions, against a local
+ * MockRealTimeServer.
+ *
+ * For each transport, the sessions connect, log in and open the same item; then a number
+ * of Updates is published to all of them. Reported are the time for every session to get
+ * its Refresh, the platform threads the client transports use (virtual threads are not
+ * counted: they only use a platform thread while running), the heap in use, and the
+ * Updates delivered per second across the sessions.
+ *
+ * Usage: java SessionRuntimeBenchmark [sessions] [updates]
+ * Defaults to 500 sessions and 200 Updates. Virtual threads need Java 21 or later;
+ * before that, the virtual transport runs on platform threads, two per session as nv.
+ * On Java 21 it uses only the scheduler's carrier threads, about as few as nio.
+ */
+public class SessionRuntimeBenchmark {
+
+    static final String ITEM_NAME = "MOCK.N";
+
+    public static void main(String[] args) throws Exception
+    {
+        int sessions = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int updates = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+        MockRealTimeServer server = new MockRealTimeServer(0);
+        server.start();
+        System.out.println(sessions + " sessions, " + updates + " Updates; virtual threads "
+                + (VirtualThreads.isSupported() ? "supported" : "not supported (platform threads)"));
+
+        int baseThreads = clientThreads();
+        TransportProfile profile = new TransportProfile().setTcpNoDelay(true);
+        NioWebSocketTransport nioTransport = new NioWebSocketTransport(2, profile);
+        String[] names = { "nv", "nio", "virtual" };
+        WebSocketTransport[] transports = {
+            new NvWebSocketTransport(profile.apply(new WebSocketFactory())),
+            nioTransport,
+            new VirtualThreadWebSocketTransport(profile)
+        };
+        // Warm up, so that the first transport is not measured before the code is compiled.
+        for (WebSocketTransport transport : transports)
+            run(server, transport, null, Math.min(sessions, 50), updates, baseThreads);
+        for (int i = 0; i < transports.length; ++i)
+            run(server, transports[i], names[i], sessions, updates, baseThreads);
+
+        nioTransport.stop();
+        server.stop();
+        System.exit(0);
+    }
+
+    static void run(MockRealTimeServer server, WebSocketTransport transport, String name, int sessions, int updates, int baseThreads) throws Exception
+    {
+        int threadsBefore = clientThreads();
+        long baseHeap = usedHeap();
+        CountDownLatch refreshed = new CountDownLatch(sessions);
+        CountDownLatch disconnected = new CountDownLatch(sessions);
+        AtomicLong received = new AtomicLong(0);
+        long expected = (long)sessions * updates;
+        long[] lastReceived = { 0 };
+
+        WebSocketTransport.Listener listener = new WebSocketTransport.Listener() {
+            public void onConnected(WebSocketTransport.Connection connection)
+            {
+                connection.sendText(new JSONObject().put("ID", 1).put("Domain", "Login")
+                        .put("Key", new JSONObject().put("Name", "user")).toString());
+                connection.sendText(new JSONObject().put("ID", 2).put("Key", new JSONObject().put("Name", ITEM_NAME)).toString());
+            }
+
+            public void onTextMessage(WebSocketTransport.Connection connection, String message)
+            {
+                JSONArray jsonArray = new JSONArray(message);
+                for (int i = 0; i < jsonArray.length(); ++i)
+                {
+                    JSONObject messageJson = jsonArray.getJSONObject(i);
+                    String messageType = messageJson.getString("Type");
+                    if (messageType.equals("Refresh") && messageJson.getInt("ID") == 2)
+                        refreshed.countDown();
+                    else if (messageType.equals("Update") && received.incrementAndGet() == expected)
+                    {
+                        synchronized (lastReceived)
+                        {
+                            lastReceived[0] = System.nanoTime();
+                            lastReceived.notifyAll();
+                        }
+                    }
+                }
+            }
+
+            public void onConnectError(WebSocketTransport.Connection connection, Exception e)
+            {
+                System.out.println("Connect error: " + e);
+                refreshed.countDown();
+                disconnected.countDown();
+            }
+
+            public void onDisconnected(WebSocketTransport.Connection connection)
+            {
+                disconnected.countDown();
+            }
+        };
+
+        // Connect the sessions, timing until every one has its Refresh.
+        long start = System.nanoTime();
+        List<WebSocketTransport.Connection> connections = new ArrayList<WebSocketTransport.Connection>();
+        for (int i = 0; i < sessions; ++i)
+            connections.add(transport.connect(URI.create(server.url()), "tr_json2", new DeflateSettings(), listener));
+        boolean allRefreshed = refreshed.await(60, TimeUnit.SECONDS);
+        double connectMillis = (System.nanoTime() - start) / 1e6;
+        int threads = clientThreads() - baseThreads;
+        long heap = usedHeap() - baseHeap;
+
+        // Publish Updates to every session, timing until all are delivered.
+        start = System.nanoTime();
+        for (int i = 0; i < updates; ++i)
+            server.publish(ITEM_NAME, i + 1, new JSONObject().put("BID", 100 + (i % 100) * 0.01));
+        synchronized (lastReceived)
+        {
+            long deadline = System.currentTimeMillis() + 60000;
+            while (received.get() < expected && System.currentTimeMillis() < deadline)
+                lastReceived.wait(100);
+        }
+        double seconds = (lastReceived[0] > start) ? (lastReceived[0] - start) / 1e9 : Double.NaN;
+
+        for (WebSocketTransport.Connection connection : connections)
+            connection.disconnect();
+        disconnected.await(30, TimeUnit.SECONDS);
+        awaitThreads(threadsBefore);
+        if (name == null)
+            return;
+
+        System.out.println(name + ":");
+        System.out.println(String.format(Locale.ROOT, "  connect and log in: %.0f ms%s, %d platform threads, %.1f MB heap",
+                connectMillis, allRefreshed ? "" : " (timed out)", threads, heap / (1024.0 * 1024.0)));
+        System.out.println(String.format(Locale.ROOT, "  Updates: %d of %d, %.0f Updates/s",
+                received.get(), expected, received.get() / seconds));
+    }
+
+    /** Live platform threads, other than the server's. */
+    static int clientThreads()
+    {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (!thread.getName().startsWith("MockRealTimeServer"))
+                ++count;
+        }
+        return count;
+    }
+
+    /** Wait (up to 15 seconds) for the threads of closed connections to finish. */
+    static void awaitThreads(int threads) throws InterruptedException
+    {
+        for (int i = 0; i < 150 && clientThreads() > threads; ++i)
+            Thread.sleep(100);
+    }
+
+    static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,360 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.json.*;
+
+/*
+ * Memory-mapped ring for passing messages to consumers in other processes on the same
+ * host, without sockets or copies through the kernel.
+ *
+ * The ring lives in a file (ideally on a RAM-backed file system such as /dev/shm) that the
+ * writer and its readers all map. There is a single writer, which never waits for readers:
+ * each reader tracks its own position and polls the writer's tail for new messages. A
+ * reader that falls more than the ring's capacity behind loses the overwritten messages,
+ * detects it and continues from the tail.
+ *
+ * The file starts with a header, followed by the records:
+ *
+ *   0     int   MAGIC
+ *   4     int   VERSION
+ *   8     int   Capacity of the record area in bytes (a power of 2)
+ *   64    long  Tail intent: where the record being written ends
+ *   128   long  Tail: where the last published record ends
+ *   192         Record area
+ *
+ * Each record is an int length followed by the message, padded to 8 bytes. A record that
+ * does not fit before the end of the record area is written at its start, after a padding
+ * record of length -1. Positions grow monotonically; a position's offset in the record area
+ * is the position modulo the capacity.
+ *
+ * Before writing a record, the writer advances the tail intent; after writing it, the
+ * tail. A reader copies a record and then checks the tail intent: if the writer may
+ * have started overwriting the record meanwhile, the copy is discarded.
+ */
+public class SharedMemoryRing {
+
+    /** Receives messages read from the ring. */
+    public interface Handler
+    {
+        /** @param message Message, from its position to its limit. Only valid until onMessage returns. */
+        void onMessage(ByteBuffer message);
+    }
+
+    public static final int MAGIC = 0x524D5452; // "RMTR"
+    public static final int VERSION = 1;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int TAIL_INTENT_OFFSET = 64;
+    private static final int TAIL_OFFSET = 128;
+    private static final int HEADER_LENGTH = 192;
+    private static final int RECORD_HEADER_LENGTH = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int PADDING = -1;
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path _path;
+    private final FileChannel _channel;
+    private final MappedByteBuffer _buffer;
+    /** View of the buffer the writer copies messages into. */
+    private final ByteBuffer _writeView;
+    private final int _capacity;
+    private final int _mask;
+    private final int _maxMessageLength;
+
+    /** Writer's copy of the tail. */
+    private long _tail;
+
+    /**
+     * Create the ring file for writing, or reuse an existing one of the same capacity (readers
+     * attached to it keep their positions).
+     * @param path File to map
+     * @param capacity Size of the record area (rounded up to a power of 2)
+     */
+    public static SharedMemoryRing create(Path path, int capacity) throws IOException
+    {
+        int ringCapacity = Integer.highestOneBit(Math.max(capacity, 1024) - 1) << 1;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean reuse = channel.size() == HEADER_LENGTH + ringCapacity;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_LENGTH + ringCapacity);
+            if (!reuse || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(CAPACITY_OFFSET) != ringCapacity)
+            {
+                LONG_VIEW.setVolatile(buffer, TAIL_INTENT_OFFSET, 0L);
+                LONG_VIEW.setVolatile(buffer, TAIL_OFFSET, 0L);
+                buffer.putInt(CAPACITY_OFFSET, ringCapacity);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(0, MAGIC);
+            }
+            return new SharedMemoryRing(path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Map an existing ring file for reading. */
+    public static SharedMemoryRing open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_LENGTH)
+                throw new IOException("Not a ring file: " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || channel.size() != HEADER_LENGTH + (long)buffer.getInt(CAPACITY_OFFSET))
+                throw new IOException("Not a ring file: " + path);
+            return new SharedMemoryRing(path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private SharedMemoryRing(Path path, FileChannel channel, MappedByteBuffer buffer)
+    {
+        _path = path;
+        _channel = channel;
+        _buffer = buffer;
+        _writeView = buffer.duplicate();
+        _capacity = buffer.getInt(CAPACITY_OFFSET);
+        _mask = _capacity - 1;
+        _maxMessageLength = _capacity / 8 - RECORD_HEADER_LENGTH;
+        _tail = (long)LONG_VIEW.getVolatile(buffer, TAIL_OFFSET);
+    }
+
+    /** Largest message that can be published. */
+    public int maxMessageLength()
+    {
+        return _maxMessageLength;
+    }
+
+    /**
+     * Publish a message (the buffer's remaining bytes). Must only be called by one thread,
+     * in one process, at a time.
+     * @return Whether the message was published; false if it is too long
+     */
+    public boolean publish(ByteBuffer message)
+    {
+        int length = message.remaining();
+        if (length > _maxMessageLength)
+            return false;
+
+        int recordLength = align(RECORD_HEADER_LENGTH + length);
+        int offset = (int)(_tail & _mask);
+        int toEnd = _capacity - offset;
+        long newTail = _tail + recordLength;
+        if (recordLength > toEnd)
+            newTail += toEnd;
+
+        // Announce the bytes about to be overwritten before overwriting them.
+        LONG_VIEW.setOpaque(_buffer, TAIL_INTENT_OFFSET, newTail);
+        VarHandle.releaseFence();
+
+        if (recordLength > toEnd)
+        {
+            _buffer.putInt(HEADER_LENGTH + offset, PADDING);
+            offset = 0;
+        }
+        _buffer.putInt(HEADER_LENGTH + offset, length);
+        int messagePosition = message.position();
+        _writeView.position(HEADER_LENGTH + offset + RECORD_HEADER_LENGTH);
+        _writeView.put(message);
+        message.position(messagePosition);
+
+        LONG_VIEW.setRelease(_buffer, TAIL_OFFSET, newTail);
+        _tail = newTail;
+        return true;
+    }
+
+    /** Create a reader positioned at the tail, i.e. that reads messages published from now on. */
+    public Reader newReader()
+    {
+        return new Reader();
+    }
+
+    /** Close the ring file. The ring must no longer be used. */
+    public void close() throws IOException
+    {
+        _channel.close();
+    }
+
+    public Path path()
+    {
+        return _path;
+    }
+
+    /**
+     * Reading position in the ring. Each reader is used by one thread.
+     */
+    public class Reader
+    {
+        private long _position = (long)LONG_VIEW.getAcquire(_buffer, TAIL_OFFSET);
+        private final ByteBuffer _message = ByteBuffer.allocateDirect(_maxMessageLength);
+        /** View of the buffer messages are copied from. */
+        private final ByteBuffer _readView = _buffer.duplicate();
+        private long _lapCount = 0;
+
+        /**
+         * Read up to a number of available messages. Does not wait.
+         * @return Number of messages read
+         */
+        public int poll(Handler handler, int limit)
+        {
+            long tail = (long)LONG_VIEW.getAcquire(_buffer, TAIL_OFFSET);
+            int count = 0;
+            while (_position < tail && count < limit)
+            {
+                if (tail - _position > _capacity)
+                {
+                    lapped();
+                    return count;
+                }
+
+                int offset = (int)(_position & _mask);
+                int length = _buffer.getInt(HEADER_LENGTH + offset);
+                boolean padding = (length == PADDING);
+                boolean valid = padding || (length >= 0 && length <= _maxMessageLength);
+                if (valid && !padding)
+                {
+                    int start = HEADER_LENGTH + offset + RECORD_HEADER_LENGTH;
+                    _readView.limit(start + length).position(start);
+                    _message.clear();
+                    _message.put(_readView);
+                    _message.flip();
+                }
+
+                // What was read is only good if the writer has not started overwriting the record.
+                VarHandle.acquireFence();
+                long tailIntent = (long)LONG_VIEW.getVolatile(_buffer, TAIL_INTENT_OFFSET);
+                if (!valid || tailIntent - _position > _capacity)
+                {
+                    lapped();
+                    return count;
+                }
+
+                if (padding)
+                {
+                    _position += _capacity - offset;
+                    continue;
+                }
+                _position += align(RECORD_HEADER_LENGTH + length);
+                ++count;
+                handler.onMessage(_message);
+            }
+            return count;
+        }
+
+        /** Number of times the reader fell behind by more than the ring's capacity and lost messages. */
+        public long lapCount()
+        {
+            return _lapCount;
+        }
+
+        /** Number of published bytes not read yet. */
+        public long backlog()
+        {
+            return (long)LONG_VIEW.getAcquire(_buffer, TAIL_OFFSET) - _position;
+        }
+
+        private void lapped()
+        {
+            ++_lapCount;
+            _position = (long)LONG_VIEW.getAcquire(_buffer, TAIL_OFFSET);
+        }
+    }
+
+    /**
+     * Listener that publishes the messages of its subscriptions to a ring, encoded with
+     * BinaryUpdateCodec. Messages dispatched by several threads are published one at a time.
+     */
+    public static class Publisher implements SubscriptionManager.Listener
+    {
+        private final SharedMemoryRing _ring;
+        private final ByteBuffer _encodeBuffer;
+        private long _dropped = 0;
+
+        public Publisher(SharedMemoryRing ring)
+        {
+            _ring = ring;
+            _encodeBuffer = ByteBuffer.allocate(ring.maxMessageLength());
+        }
+
+        public synchronized void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+        {
+            _encodeBuffer.clear();
+            if (!BinaryUpdateCodec.encode(_encodeBuffer, subscription.key().name(), messageJson))
+            {
+                if (!messageJson.optString("Type").equals("Ping"))
+                    ++_dropped;
+                return;
+            }
+            _encodeBuffer.flip();
+            _ring.publish(_encodeBuffer);
+        }
+
+        /** Number of messages that could not be encoded, e.g. because they were too long. */
+        public synchronized long dropped()
+        {
+            return _dropped;
+        }
+    }
+
+    private static int align(int length)
+    {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Read a ring written by another process and print its messages with their latency.
+     * Usage: java SharedMemoryRing <ring file>
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 1)
+        {
+            System.out.println("Usage: java SharedMemoryRing <ring file>");
+            System.exit(1);
+        }
+
+        try {
+            SharedMemoryRing ring = SharedMemoryRing.open(Paths.get(args[0]));
+            Reader reader = ring.newReader();
+            Handler handler = message -> {
+                long latencyNanos = System.nanoTime() - BinaryUpdateCodec.publishNanos(message);
+                System.out.println("RECEIVED (" + (latencyNanos / 1000) + " us):\n" + BinaryUpdateCodec.decode(message).toString(2));
+            };
+
+            long lapCount = 0;
+            while (true)
+            {
+                if (reader.poll(handler, 64) == 0)
+                    Thread.onSpinWait();
+                if (reader.lapCount() != lapCount)
+                {
+                    lapCount = reader.lapCount();
+                    System.out.println("Reader fell behind and lost messages (" + lapCount + " times)");
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.*;
+
+/*
+ * Asynchronous snapshots ("the current image of an item") for request/response callers.
+ *
+ * snapshot(key) returns a CompletableFuture of a Refresh message. If the item is already
+ * streaming on the session, the future is completed straight away with the image held by
+ * the SubscriptionManager. Otherwise the item is queued, and the items queued during a short
+ * window are requested together, in one non-streaming batch request per service and domain:
+ *
+ *   {"ID":5,"Key":{"Name":["TRI.N","IBM.N"],"Service":"ELEKTRON_DD"},"Streaming":false}
+ *
+ * The server answers each item of a batch on its own stream, using the IDs following the
+ * batch's ID in the order of the names, with a single non-streaming Refresh (or a Status if
+ * the item cannot be provided). Concurrent snapshots of an item that is already queued or
+ * requested share its future, so a burst of lookups costs one request per item at most.
+ *
+ * Futures are completed on the thread that processes the session's messages, so callers
+ * should use the *Async stages (or an executor of their own) for anything slow. Requests
+ * that cannot be sent while the session is logged out are sent, and requests that were
+ * in flight over a lost connection sent again, on the next login (see resend()).
+ */
+public class SnapshotBatcher {
+
+    /** Sends batch requests on a session. */
+    public interface BatchSender
+    {
+        /**
+         * Send a non-streaming batch request for items of a service and domain. The session
+         * must not assign the IDs following the batch's ID (one per name) to other streams.
+         * Called with the batcher's lock held, so the batcher must not be called while
+         * holding a lock the sender takes.
+         * @return ID of the batch's stream, or -1 if the session cannot send requests now
+         */
+        int sendBatch(String service, String domain, List<String> names);
+    }
+
+    /** Completes a snapshot exceptionally when the server answers with a Status instead of a Refresh. */
+    public static class SnapshotException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        final transient JSONObject _statusJson;
+
+        SnapshotException(ItemCache.Key key, JSONObject statusJson)
+        {
+            super("No snapshot of " + key + ": " + statusJson.optJSONObject("State"));
+            _statusJson = statusJson;
+        }
+
+        /** The Status message received for the item. */
+        public JSONObject statusJson() { return _statusJson; }
+    }
+
+    /**
+     * A requested item.
+     */
+    static class Request
+    {
+        final ItemCache.Key _key;
+        final CompletableFuture<JSONObject> _future = new CompletableFuture<JSONObject>();
+
+        /** First parts of a multi-part Refresh, merged until the last part arrives. */
+        JSONObject _refreshJson;
+
+        Request(ItemCache.Key key)
+        {
+            _key = key;
+        }
+    }
+
+    private final BatchSender _sender;
+    private final SubscriptionManager _subscriptionManager;
+    private final long _windowMillis;
+    private final int _maxBatchSize;
+    private final ScheduledExecutorService _timer;
+
+    /** Items waiting for the end of the window, or for the session to log in. */
+    private Map<ItemCache.Key, Request> _queued = new LinkedHashMap<ItemCache.Key, Request>();
+
+    /** Items requested and not answered yet, and the stream each one is answered on. */
+    private final Map<ItemCache.Key, Request> _inFlight = new HashMap<ItemCache.Key, Request>();
+    private final Map<Integer, Request> _inFlightByStreamId = new HashMap<Integer, Request>();
+
+    private boolean _flushScheduled = false;
+
+    /**
+     * @param sender Sends the batch requests
+     * @param subscriptionManager Subscriptions of the session, whose images answer snapshots of streaming items
+     * @param windowMillis How long snapshots are collected before they are requested
+     * @param maxBatchSize Largest number of items in a batch request; a full batch is requested without waiting
+     */
+    public SnapshotBatcher(BatchSender sender, SubscriptionManager subscriptionManager, long windowMillis, int maxBatchSize)
+    {
+        _sender = sender;
+        _subscriptionManager = subscriptionManager;
+        _windowMillis = windowMillis;
+        _maxBatchSize = maxBatchSize;
+        _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SnapshotBatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the current image of an item, as a Refresh message. The future fails with a
+     * SnapshotException if the server cannot provide the item.
+     */
+    public CompletableFuture<JSONObject> snapshot(ItemCache.Key key)
+    {
+        JSONObject imageJson = _subscriptionManager.image(key);
+        if (imageJson != null)
+            return CompletableFuture.completedFuture(imageJson);
+
+        synchronized (this)
+        {
+            Request request = _inFlight.get(key);
+            if (request == null)
+                request = _queued.get(key);
+            if (request != null)
+                return request._future;
+
+            request = new Request(key);
+            _queued.put(key, request);
+            if (_queued.size() >= _maxBatchSize)
+                flush();
+            else if (!_flushScheduled)
+            {
+                _flushScheduled = true;
+                _timer.schedule(this::flush, _windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return request._future;
+        }
+    }
+
+    /** Request the queued items. */
+    public synchronized void flush()
+    {
+        _flushScheduled = false;
+        if (_queued.isEmpty())
+            return;
+
+        // One batch per service and domain, of at most the largest batch size.
+        Map<String, List<Request>> batches = new LinkedHashMap<String, List<Request>>();
+        for (Request request : _queued.values())
+            batches.computeIfAbsent(request._key.service() + "/" + request._key.domain(), name -> new ArrayList<Request>()).add(request);
+
+        Map<ItemCache.Key, Request> unsent = new LinkedHashMap<ItemCache.Key, Request>();
+        for (List<Request> requests : batches.values())
+        {
+            for (int from = 0; from < requests.size(); from += _maxBatchSize)
+            {
+                List<Request> batch = requests.subList(from, Math.min(from + _maxBatchSize, requests.size()));
+                List<String> names = new ArrayList<String>(batch.size());
+                for (Request request : batch)
+                    names.add(request._key.name());
+
+                ItemCache.Key key = batch.get(0)._key;
+                int batchStreamId = _sender.sendBatch(key.service(), key.domain(), names);
+                for (int i = 0; i < batch.size(); ++i)
+                {
+                    Request request = batch.get(i);
+                    if (batchStreamId < 0)
+                        unsent.put(request._key, request);
+                    else
+                    {
+                        _inFlight.put(request._key, request);
+                        _inFlightByStreamId.put(batchStreamId + 1 + i, request);
+                    }
+                }
+            }
+        }
+        _queued = unsent;
+    }
+
+    /**
+     * Request again every item that has not been answered, e.g. once the session has logged
+     * in again after losing its connection.
+     */
+    public synchronized void resend()
+    {
+        for (Request request : _inFlight.values())
+        {
+            request._refreshJson = null;
+            _queued.put(request._key, request);
+        }
+        _inFlight.clear();
+        _inFlightByStreamId.clear();
+        flush();
+    }
+
+    /**
+     * Handle a Refresh or Status message if it answers a snapshot.
+     * @return Whether the message was on the stream of a snapshot
+     */
+    public boolean onMessage(JSONObject messageJson) throws JSONException
+    {
+        Request request;
+        JSONObject refreshJson = null;
+        synchronized (this)
+        {
+            request = _inFlightByStreamId.get(messageJson.optInt("ID"));
+            if (request == null)
+                return false;
+
+            if (messageJson.getString("Type").equals("Refresh"))
+            {
+                // Merge the parts of a multi-part Refresh; the image is complete with the last one.
+                // The parts are merged into a copy, as the message is also read by other handlers
+                // (e.g. the journal, on its own thread with --dispatcher).
+                if (request._refreshJson == null)
+                    request._refreshJson = messageJson.optBoolean("Complete", true) ? messageJson : new JSONObject(messageJson.toString());
+                else
+                    Conflator.merge(request._refreshJson, messageJson);
+                if (!messageJson.optBoolean("Complete", true))
+                    return true;
+                refreshJson = request._refreshJson;
+            }
+            else
+            {
+                // A Status that does not close the stream does not answer the snapshot.
+                JSONObject messageState = messageJson.optJSONObject("State");
+                if (messageState == null || !messageState.optString("Stream").startsWith("Closed"))
+                    return true;
+            }
+
+            _inFlightByStreamId.remove(messageJson.getInt("ID"));
+            _inFlight.remove(request._key);
+        }
+
+        if (refreshJson != null)
+            request._future.complete(refreshJson);
+        else
+            request._future.completeExceptionally(new SnapshotException(request._key, messageJson));
+        return true;
+    }
+
+    /** Number of snapshots queued or in flight. */
+    public synchronized int pendingCount()
+    {
+        return _queued.size() + _inFlight.size();
+    }
+}
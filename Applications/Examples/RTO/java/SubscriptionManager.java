@@ -0,0 +1,379 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.*;
+
+/*
+ * Subscription front-end that lets several in-process consumers share one server stream.
+ *
+ * Requests for the same item (Service, Name and Domain) are collapsed into a single
+ * stream, opened through a StreamProvider on the first subscription. Each subscription
+ * counts as a reader of the cached item, so the stream is released only when the last
+ * consumer leaves. A consumer that subscribes to an item that has already been refreshed
+ * receives the cached image straight away, followed by the Updates that arrive after it.
+ *
+ * Late joiners get the image and the later Updates with no gap and no duplicate, without
+ * blocking the dispatching thread. A new subscription is added to the item before the image
+ * is taken, so it is offered every message dispatched from then on; until its image has been
+ * delivered, these messages are queued instead of delivered. The image is a snapshot of the
+ * cached item as of sequence number N (see ItemCache.Item.snapshot()): the queued Refresh and
+ * Update messages up to N are already part of it and are dropped, and those after N are
+ * delivered. Each subscription's messages are delivered by one thread at a time, in order:
+ * the subscribing thread while it catches up, then the dispatching thread, which delivers
+ * directly once it has taken over.
+ *
+ * A subscription can have a FieldFilter, which is evaluated before the listener is called:
+ * Updates it rejects are not passed to the subscription's listener at all.
+ */
+public class SubscriptionManager {
+
+    /** Opens and releases the server streams used by subscriptions. */
+    public interface StreamProvider
+    {
+        /** Open a stream for the item (or reuse the cached one) and register a reader of it. */
+        ItemCache.Item acquireStream(ItemCache.Key key);
+
+        /** Unregister a reader. The provider closes the stream when it no longer needs it. */
+        void releaseStream(ItemCache.Item item);
+    }
+
+    /** Receives the messages of a subscription. */
+    public interface Listener
+    {
+        void onMessage(Subscription subscription, JSONObject messageJson);
+    }
+
+    /**
+     * One consumer's subscription to an item.
+     */
+    public class Subscription
+    {
+        final Entry _entry;
+        final Listener _listener;
+        final FieldFilter _filter;
+        final double[] _filterState;
+        boolean _closed = false;
+
+        /** Messages waiting to be delivered, while another thread is delivering. */
+        final ConcurrentLinkedQueue<Pending> _pending = new ConcurrentLinkedQueue<Pending>();
+
+        /**
+         * Non-zero while a thread is delivering: that thread delivers the messages queued
+         * meanwhile before it stops. Starts at 1, held by the subscribing thread until the
+         * image has been delivered.
+         */
+        final AtomicInteger _deliveries = new AtomicInteger(1);
+
+        /** Sequence number of the image given to the subscription; earlier Refresh and Update messages are dropped. */
+        long _imageSeq = -1;
+
+        /** Sequence number of the message being delivered. */
+        long _deliverySeq = -1;
+
+        /** Set by the dispatching thread once the subscribing thread is done; messages are then delivered directly. */
+        boolean _live = false;
+
+        Subscription(Entry entry, Listener listener, FieldFilter filter)
+        {
+            _entry = entry;
+            _listener = listener;
+            _filter = filter;
+            _filterState = (filter != null) ? filter.newState() : null;
+        }
+
+        /**
+         * Deliver the image (null if the item has none yet) then the messages queued since the
+         * subscription was added. Called by the subscribing thread.
+         */
+        void join(JSONObject imageJson, long imageSeq)
+        {
+            _imageSeq = imageSeq;
+            if (imageJson != null)
+            {
+                _deliverySeq = imageSeq;
+                deliver(imageJson);
+            }
+            deliverPending(1);
+        }
+
+        /** Offer a dispatched message, delivering it now unless the subscribing thread is still catching up. */
+        void offer(JSONObject messageJson, long seq)
+        {
+            if (_live)
+            {
+                deliver(messageJson, seq);
+                return;
+            }
+            if (_deliveries.compareAndSet(0, 1))
+            {
+                // The subscribing thread has delivered everything queued: deliver directly from now on.
+                _live = true;
+                deliver(messageJson, seq);
+                return;
+            }
+            _pending.add(new Pending(messageJson, seq));
+            if (_deliveries.getAndIncrement() == 0)
+                deliverPending(1);
+        }
+
+        /** Deliver queued messages until no more are offered. The caller holds missed counts of _deliveries. */
+        private void deliverPending(int missed)
+        {
+            while (true)
+            {
+                Pending pending;
+                while ((pending = _pending.poll()) != null)
+                    deliver(pending._messageJson, pending._seq);
+                missed = _deliveries.addAndGet(-missed);
+                if (missed == 0)
+                    return;
+            }
+        }
+
+        private void deliver(JSONObject messageJson, long seq)
+        {
+            // A Refresh or Update up to the image's sequence number is already part of the image.
+            if (seq <= _imageSeq)
+            {
+                String messageType = messageJson.optString("Type");
+                if (messageType.equals("Refresh") || messageType.equals("Update"))
+                    return;
+            }
+            _deliverySeq = seq;
+            deliver(messageJson);
+        }
+
+        /** Deliver a message to the listener, if it passes the filter. */
+        void deliver(JSONObject messageJson)
+        {
+            if (_filter != null && !_filter.accept(_filterState, messageJson))
+                return;
+            _listener.onMessage(this, messageJson);
+        }
+
+        public ItemCache.Key key() { return _entry._item.key(); }
+
+        /**
+         * Sequence number of the item (see ItemCache.Item.seq()) as of the message being
+         * delivered, for listeners that hand out images of their own. Only meaningful while
+         * the listener is called.
+         */
+        public long seq() { return _deliverySeq; }
+
+        /** Cached item shared by this subscription. */
+        public ItemCache.Item item() { return _entry._item; }
+
+        /** Manager (i.e. session) the subscription was made on. */
+        public SubscriptionManager manager() { return SubscriptionManager.this; }
+
+        /** Leave the item. The server stream is released when the last subscription is closed. */
+        public void close()
+        {
+            unsubscribe(this);
+        }
+    }
+
+    /** A message queued for a subscription, with the item's sequence number when it was dispatched. */
+    static class Pending
+    {
+        final JSONObject _messageJson;
+        final long _seq;
+
+        Pending(JSONObject messageJson, long seq)
+        {
+            _messageJson = messageJson;
+            _seq = seq;
+        }
+    }
+
+    /**
+     * Server stream shared by all subscriptions to an item.
+     */
+    class Entry
+    {
+        final ItemCache.Item _item;
+        final List<Subscription> _subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+        Entry(ItemCache.Item item)
+        {
+            _item = item;
+        }
+    }
+
+    private final StreamProvider _streamProvider;
+    private final Map<ItemCache.Key, Entry> _entries = new HashMap<ItemCache.Key, Entry>();
+
+    public SubscriptionManager(StreamProvider streamProvider)
+    {
+        _streamProvider = streamProvider;
+    }
+
+    /**
+     * Subscribe to an item. If other consumers already share a stream for it, the new
+     * subscription joins that stream instead of opening another one.
+     */
+    public Subscription subscribe(ItemCache.Key key, Listener listener)
+    {
+        return subscribe(key, listener, null);
+    }
+
+    /**
+     * Subscribe to an item, receiving only the Updates that pass a filter.
+     * @param filter Filter for the subscription's Updates, or null for all Updates
+     */
+    public Subscription subscribe(ItemCache.Key key, Listener listener, FieldFilter filter)
+    {
+        Entry entry;
+        Subscription subscription;
+        synchronized (this)
+        {
+            entry = _entries.get(key);
+            if (entry == null)
+            {
+                entry = new Entry(_streamProvider.acquireStream(key));
+                _entries.put(key, entry);
+            }
+            else
+                _streamProvider.acquireStream(key);
+
+            subscription = new Subscription(entry, listener, filter);
+            entry._subscriptions.add(subscription);
+        }
+
+        // Messages dispatched from now on are queued for the subscription. Take the image after
+        // that, so that every message it does not include is queued.
+        ItemCache.Snapshot snapshot = entry._item.snapshot();
+        subscription.join(snapshot.isComplete() ? imageOf(entry._item, snapshot) : null, snapshot.seq());
+        return subscription;
+    }
+
+    void unsubscribe(Subscription subscription)
+    {
+        Entry entry = subscription._entry;
+        synchronized (this)
+        {
+            if (subscription._closed)
+                return;
+            subscription._closed = true;
+
+            entry._subscriptions.remove(subscription);
+            if (entry._subscriptions.isEmpty() && _entries.get(entry._item.key()) == entry)
+                _entries.remove(entry._item.key());
+
+            // Release while holding the lock, so a concurrent subscribe cannot reuse a stream that is being closed.
+            _streamProvider.releaseStream(entry._item);
+        }
+    }
+
+    /** Number of items that currently have subscriptions. */
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    /** Number of consumers subscribed to an item. */
+    public synchronized int subscriberCount(ItemCache.Key key)
+    {
+        Entry entry = _entries.get(key);
+        return (entry == null) ? 0 : entry._subscriptions.size();
+    }
+
+    /**
+     * Current image of an item, if it is streaming and its Refresh has been received.
+     * @return A Refresh message carrying the cached image, or null
+     */
+    public JSONObject image(ItemCache.Key key) throws JSONException
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = _entries.get(key);
+        }
+        if (entry == null)
+            return null;
+        ItemCache.Snapshot snapshot = entry._item.snapshot();
+        return snapshot.isComplete() ? imageOf(entry._item, snapshot) : null;
+    }
+
+    /**
+     * Deliver a message received on an item's stream to all of its subscriptions. Called
+     * after the message has been applied to the cache, by one thread at a time for an item.
+     */
+    public void dispatch(ItemCache.Item item, JSONObject messageJson) throws JSONException
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = _entries.get(item.key());
+        }
+        if (entry == null || entry._item != item)
+            return;
+
+        String messageType = messageJson.getString("Type");
+        if (messageType.equals("Status"))
+        {
+            // A stream closed by the server is not shared any more; later subscriptions open a new one.
+            JSONObject messageState = messageJson.optJSONObject("State");
+            if (messageState != null && messageState.getString("Stream").startsWith("Closed"))
+            {
+                synchronized (this)
+                {
+                    if (_entries.get(item.key()) == entry)
+                        _entries.remove(item.key());
+                }
+            }
+        }
+
+        long seq = item.seq();
+        for (Subscription subscription : entry._subscriptions)
+            subscription.offer(messageJson, seq);
+    }
+
+    /** Build a Refresh message carrying the cached image of an item. */
+    static JSONObject imageOf(ItemCache.Item item) throws JSONException
+    {
+        return imageOf(item, item.snapshot());
+    }
+
+    /**
+     * Build a Refresh message carrying the image assembled from the parts of a multi-part
+     * Refresh, with the other members (e.g. State) of its last part.
+     */
+    static JSONObject refreshOf(ItemCache.Item item, JSONObject lastPartJson) throws JSONException
+    {
+        JSONObject refreshJson = new JSONObject();
+        for (String name : lastPartJson.keySet())
+        {
+            if (!name.equals("Fields"))
+                refreshJson.put(name, lastPartJson.get(name));
+        }
+        refreshJson.put("Fields", new JSONObject(item.snapshot().fields()));
+        return refreshJson;
+    }
+
+    /** Build a Refresh message carrying a snapshot of an item. */
+    static JSONObject imageOf(ItemCache.Item item, ItemCache.Snapshot snapshot) throws JSONException
+    {
+        JSONObject refreshJson = new JSONObject();
+        refreshJson.put("ID", item.streamId());
+        refreshJson.put("Type", "Refresh");
+        refreshJson.put("Domain", item.key().domain());
+        refreshJson.put("Key", item.key().toJson());
+        refreshJson.put("Solicited", false);
+        refreshJson.put("State", new JSONObject().put("Stream", "Open").put("Data", "Ok"));
+        refreshJson.put("Fields", new JSONObject(snapshot.fields()));
+        return refreshJson;
+    }
+}
@@ -0,0 +1,166 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Hashed timer wheel, running many short timers on a single thread.
+ *
+ * Time is divided into ticks of a fixed length. A timer is placed in the wheel slot of
+ * the tick it expires on, together with the number of full turns of the wheel still to
+ * go, so that scheduling and expiring a timer costs O(1) regardless of how many timers
+ * are pending. Timers fire on the wheel's thread, up to one tick late, so tasks should
+ * be short.
+ */
+public class TimerWheel {
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static class Timeout
+    {
+        final Runnable _task;
+        final long _deadlineTick;
+        long _remainingRounds;
+        volatile boolean _cancelled = false;
+
+        Timeout(Runnable task, long deadlineTick)
+        {
+            _task = task;
+            _deadlineTick = deadlineTick;
+        }
+
+        /** Cancel the task, if it has not run yet. */
+        public void cancel()
+        {
+            _cancelled = true;
+        }
+
+        public boolean isCancelled() { return _cancelled; }
+    }
+
+    private final long _tickMillis;
+    private final int _mask;
+    private final ArrayDeque<Timeout>[] _slots;
+
+    /** Timeouts scheduled since the last tick, moved into their slots by the wheel's thread. */
+    private final ConcurrentLinkedQueue<Timeout> _newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+
+    private final long _startTime;
+    private volatile long _tick = 0;
+    private final Thread _thread;
+    private volatile boolean _running = true;
+
+    /**
+     * @param name Name of the wheel's thread
+     * @param tickMillis Length of a tick, in milliseconds
+     * @param wheelSize Number of slots (rounded up to a power of 2)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(String name, long tickMillis, int wheelSize)
+    {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        _tickMillis = tickMillis;
+        _mask = size - 1;
+        _slots = new ArrayDeque[size];
+        for (int i = 0; i < size; ++i)
+            _slots[i] = new ArrayDeque<Timeout>();
+
+        _startTime = System.nanoTime();
+        _thread = new Thread(this::run, name);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public long tickMillis() { return _tickMillis; }
+
+    /**
+     * Run a task after (at least) the given delay.
+     * @return A handle that can be used to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delayMillis)
+    {
+        long ticks = Math.max(1, (delayMillis + _tickMillis - 1) / _tickMillis);
+        Timeout timeout = new Timeout(task, _tick + ticks);
+        _newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /** Stop the wheel's thread. Pending tasks do not run. */
+    public void stop()
+    {
+        _running = false;
+        _thread.interrupt();
+    }
+
+    private void run()
+    {
+        while (_running)
+        {
+            // Sleep until the start of the next tick.
+            long deadline = _startTime + (_tick + 1) * _tickMillis * 1000000L;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0)
+            {
+                try {
+                    Thread.sleep(sleepNanos / 1000000L, (int)(sleepNanos % 1000000L));
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+
+            long tick = _tick + 1;
+            transferNewTimeouts(tick);
+            expire(_slots[(int)(tick & _mask)]);
+            _tick = tick;
+        }
+    }
+
+    private void transferNewTimeouts(long currentTick)
+    {
+        Timeout timeout;
+        while ((timeout = _newTimeouts.poll()) != null)
+        {
+            if (timeout._cancelled)
+                continue;
+
+            // A timeout that is already due goes into the current slot.
+            long deadlineTick = Math.max(timeout._deadlineTick, currentTick);
+            timeout._remainingRounds = (deadlineTick - currentTick) / _slots.length;
+            _slots[(int)(deadlineTick & _mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> slot)
+    {
+        Iterator<Timeout> iter = slot.iterator();
+        while (iter.hasNext())
+        {
+            Timeout timeout = iter.next();
+            if (timeout._cancelled)
+            {
+                iter.remove();
+            }
+            else if (timeout._remainingRounds > 0)
+            {
+                --timeout._remainingRounds;
+            }
+            else
+            {
+                iter.remove();
+                try {
+                    timeout._task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
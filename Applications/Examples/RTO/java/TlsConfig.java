@@ -0,0 +1,70 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocketFactory;
+
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+
+/*
+ * Process-wide TLS configuration: one SSLContext shared by the WebSocket connections and
+ * the HTTP requests (authentication, service discovery).
+ *
+ * TLS sessions are cached per SSLContext, so sharing one lets a reconnect, or a token
+ * request to a host contacted before, resume the previous session (with a session ticket
+ * or session ID) instead of performing a full handshake, saving a round trip and the
+ * certificate exchange and verification.
+ */
+public class TlsConfig {
+
+    /** Number of TLS sessions kept for resumption. */
+    static final int SESSION_CACHE_SIZE = 256;
+
+    /** Time (in seconds) a TLS session is kept for resumption; servers may accept it for a shorter time. */
+    static final int SESSION_TIMEOUT = 24 * 60 * 60;
+
+    private static SSLContext _sslContext;
+    private static SSLConnectionSocketFactory _httpSocketFactory;
+
+    /** The shared SSLContext, with the default trust store. */
+    public static synchronized SSLContext sslContext()
+    {
+        if (_sslContext == null)
+        {
+            try {
+                SSLContext sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null, null, null);
+                SSLSessionContext sessionCache = sslContext.getClientSessionContext();
+                sessionCache.setSessionCacheSize(SESSION_CACHE_SIZE);
+                sessionCache.setSessionTimeout(SESSION_TIMEOUT);
+                _sslContext = sslContext;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialize TLS", e);
+            }
+        }
+        return _sslContext;
+    }
+
+    /** Socket factory for HTTP clients, using the shared SSLContext. */
+    public static synchronized SSLConnectionSocketFactory httpSocketFactory()
+    {
+        if (_httpSocketFactory == null)
+            _httpSocketFactory = new SSLConnectionSocketFactory(sslContext());
+        return _httpSocketFactory;
+    }
+
+    /** A WebSocket factory whose wss:// connections use the shared SSLContext. */
+    public static WebSocketFactory webSocketFactory()
+    {
+        return new WebSocketFactory().setSSLContext(sslContext());
+    }
+}
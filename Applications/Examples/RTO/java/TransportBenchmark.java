@@ -0,0 +1,146 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.json.*;
+
+/*
+ * Measures the effect of TransportProfile settings against a local MockRealTimeServer.
+ *
+ * For each profile, a client connects, logs in and opens an item, then:
+ * - re-requests the item (a Close and a Request sent back to back, as the example does
+ *   when reissuing a stream) and times the Refresh, which Nagle's algorithm can hold back
+ *   until the Close is acknowledged;
+ * - receives a burst of Updates published as fast as possible, reporting the Updates
+ *   per second and the latency from publishing to receipt.
+ *
+ * Usage: java TransportBenchmark [updates per burst] [round trips]
+ * Defaults to 100000 Updates and 200 round trips.
+ */
+public class TransportBenchmark {
+
+    static final String ITEM_NAME = "MOCK.N";
+
+    public static void main(String[] args) throws Exception
+    {
+        int updates = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int roundTrips = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+        MockRealTimeServer server = new MockRealTimeServer(0);
+        server.start();
+
+        TransportProfile[] profiles = {
+            new TransportProfile(),
+            new TransportProfile().setTcpNoDelay(true),
+            new TransportProfile().setTcpNoDelay(true).setReceiveBufferSize(8 * 1024),
+            new TransportProfile().setTcpNoDelay(true).setReceiveBufferSize(1024 * 1024).setKeepAlive(true)
+        };
+        // Warm up, so that the first profile is not measured before the code is compiled.
+        run(server, profiles[0], updates, roundTrips, false);
+        for (TransportProfile profile : profiles)
+            run(server, profile, updates, roundTrips, true);
+
+        server.stop();
+        System.exit(0);
+    }
+
+    static void run(MockRealTimeServer server, TransportProfile profile, int updates, int roundTrips, boolean print) throws Exception
+    {
+        BlockingQueue<Long> refreshes = new ArrayBlockingQueue<Long>(16);
+        long[] latencies = new long[updates];
+        int[] received = { 0 };
+        long[] lastReceived = { 0 };
+
+        WebSocketFactory websocketFactory = profile.apply(new WebSocketFactory());
+        WebSocket websocket = websocketFactory.createSocket(server.url())
+            .addProtocol("tr_json2")
+            .addListener(new WebSocketAdapter() {
+                public void onTextMessage(WebSocket websocket, String message) {
+                    long now = System.nanoTime();
+                    JSONArray jsonArray = new JSONArray(message);
+                    for (int i = 0; i < jsonArray.length(); ++i)
+                    {
+                        JSONObject messageJson = jsonArray.getJSONObject(i);
+                        String messageType = messageJson.getString("Type");
+                        if (messageType.equals("Refresh"))
+                            refreshes.offer(now);
+                        else if (messageType.equals("Update"))
+                        {
+                            synchronized (received)
+                            {
+                                if (received[0] < latencies.length)
+                                    latencies[received[0]++] = now - messageJson.getJSONObject("Fields").getLong("SENT");
+                                lastReceived[0] = now;
+                                received.notifyAll();
+                            }
+                        }
+                    }
+                }
+            });
+        websocket.connect();
+
+        // Log in, and open the item.
+        websocket.sendText(new JSONObject().put("ID", 1).put("Domain", "Login")
+                .put("Key", new JSONObject().put("Name", "user")).toString());
+        refreshes.poll(5, TimeUnit.SECONDS);
+        String request = new JSONObject().put("ID", 2).put("Key", new JSONObject().put("Name", ITEM_NAME)).toString();
+        String close = new JSONObject().put("ID", 2).put("Type", "Close").toString();
+        websocket.sendText(request);
+        refreshes.poll(5, TimeUnit.SECONDS);
+
+        // Re-request the item, timing the Refresh.
+        long[] roundTripNanos = new long[roundTrips];
+        for (int i = 0; i < roundTrips; ++i)
+        {
+            long start = System.nanoTime();
+            websocket.sendText(close);
+            websocket.sendText(request);
+            Long refreshed = refreshes.poll(5, TimeUnit.SECONDS);
+            roundTripNanos[i] = (refreshed != null) ? refreshed - start : TimeUnit.SECONDS.toNanos(5);
+        }
+
+        // Publish a burst of Updates, timing their receipt.
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; ++i)
+            server.publish(ITEM_NAME, i + 1, new JSONObject().put("BID", 100 + (i % 100) * 0.01).put("SENT", System.nanoTime()));
+        long deadline = System.currentTimeMillis() + 30000;
+        int count;
+        synchronized (received)
+        {
+            while (received[0] < updates && System.currentTimeMillis() < deadline)
+                received.wait(100);
+            count = received[0];
+        }
+        double seconds = (lastReceived[0] - start) / 1e9;
+
+        websocket.disconnect();
+        if (!print)
+            return;
+        Arrays.sort(roundTripNanos);
+        Arrays.sort(latencies, 0, count);
+        System.out.println(profile + ":");
+        System.out.println(String.format(Locale.ROOT, "  re-request round trip: median %.3f ms, 99%% %.3f ms",
+                roundTripNanos[roundTrips / 2] / 1e6, roundTripNanos[roundTrips * 99 / 100] / 1e6));
+        System.out.println(String.format(Locale.ROOT, "  burst: %d of %d Updates, %.0f Updates/s, latency median %.3f ms, 99%% %.3f ms",
+                count, updates, count / seconds, percentile(latencies, count, 50) / 1e6, percentile(latencies, count, 99) / 1e6));
+    }
+
+    static long percentile(long[] sorted, int count, int percent)
+    {
+        return (count == 0) ? 0 : sorted[Math.min(count - 1, (int)((long)count * percent / 100))];
+    }
+}
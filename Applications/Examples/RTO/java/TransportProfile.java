@@ -0,0 +1,259 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import com.neovisionaries.ws.client.WebSocketFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/*
+ * Socket settings for WebSocket connections: TCP_NODELAY, receive and send buffer sizes,
+ * keepalive and the connect timeout, applied to a WebSocketFactory.
+ *
+ * The WebSocket library creates its sockets unconnected from the factory's SocketFactory
+ * (ws://) or SSLSocketFactory (wss://), then connects them. apply() wraps both factories
+ * so that every socket is configured before it connects; the buffer sizes in particular
+ * must be set then for the TCP window to be scaled to them. Settings left unset keep the
+ * platform defaults. Custom factories (e.g. to bind to a network interface or go through
+ * a SOCKS proxy) can be plugged in underneath with setSocketFactory/setSSLSocketFactory;
+ * by default, wss:// connections use the shared TlsConfig context.
+ */
+public class TransportProfile {
+
+    private Boolean _tcpNoDelay;
+    private Boolean _keepAlive;
+    private int _receiveBufferSize = 0;
+    private int _sendBufferSize = 0;
+    private int _connectTimeoutMillis = 0;
+    private SocketFactory _socketFactory;
+    private SSLSocketFactory _sslSocketFactory;
+
+    /** Disable (true) or enable (false) Nagle's algorithm, which holds back small writes while earlier ones are unacknowledged. */
+    public TransportProfile setTcpNoDelay(boolean tcpNoDelay)
+    {
+        _tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /** Enable TCP keepalive probes on idle connections. */
+    public TransportProfile setKeepAlive(boolean keepAlive)
+    {
+        _keepAlive = keepAlive;
+        return this;
+    }
+
+    /** Size (in bytes) of the socket receive buffer (SO_RCVBUF), or 0 for the platform default. */
+    public TransportProfile setReceiveBufferSize(int receiveBufferSize)
+    {
+        _receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    /** Size (in bytes) of the socket send buffer (SO_SNDBUF), or 0 for the platform default. */
+    public TransportProfile setSendBufferSize(int sendBufferSize)
+    {
+        _sendBufferSize = sendBufferSize;
+        return this;
+    }
+
+    /** Time (in milliseconds) allowed to establish the TCP connection, or 0 for the platform default. */
+    public TransportProfile setConnectTimeout(int connectTimeoutMillis)
+    {
+        _connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    /** Factory creating the sockets of ws:// connections, before the settings are applied. */
+    public TransportProfile setSocketFactory(SocketFactory socketFactory)
+    {
+        _socketFactory = socketFactory;
+        return this;
+    }
+
+    /** Factory creating the sockets of wss:// connections, before the settings are applied. */
+    public TransportProfile setSSLSocketFactory(SSLSocketFactory sslSocketFactory)
+    {
+        _sslSocketFactory = sslSocketFactory;
+        return this;
+    }
+
+    /** Configure a WebSocket factory's connections with this profile. */
+    public WebSocketFactory apply(WebSocketFactory websocketFactory)
+    {
+        SocketFactory socketFactory = (_socketFactory != null) ? _socketFactory : SocketFactory.getDefault();
+        SSLSocketFactory sslSocketFactory = (_sslSocketFactory != null) ? _sslSocketFactory : TlsConfig.sslContext().getSocketFactory();
+        websocketFactory.setSocketFactory(new ProfiledSocketFactory(socketFactory));
+        websocketFactory.setSSLSocketFactory(new ProfiledSSLSocketFactory(sslSocketFactory));
+        if (_connectTimeoutMillis > 0)
+            websocketFactory.setConnectionTimeout(_connectTimeoutMillis);
+        return websocketFactory;
+    }
+
+    /**
+     * Create an unconnected socket with the settings applied, for a transport that connects
+     * it itself (within getConnectTimeout()). TLS sockets verify the server's host name.
+     */
+    Socket createSocket(boolean secure) throws IOException
+    {
+        if (!secure)
+            return configure(((_socketFactory != null) ? _socketFactory : SocketFactory.getDefault()).createSocket());
+
+        SSLSocketFactory sslSocketFactory = (_sslSocketFactory != null) ? _sslSocketFactory : TlsConfig.sslContext().getSocketFactory();
+        SSLSocket socket = (SSLSocket)configure(sslSocketFactory.createSocket());
+        SSLParameters sslParameters = socket.getSSLParameters();
+        sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(sslParameters);
+        return socket;
+    }
+
+    /** Time (in milliseconds) allowed to establish the TCP connection, or 0 for the platform default. */
+    public int getConnectTimeout()
+    {
+        return _connectTimeoutMillis;
+    }
+
+    /** Apply the settings to a socket. */
+    Socket configure(Socket socket) throws IOException
+    {
+        if (_tcpNoDelay != null)
+            socket.setTcpNoDelay(_tcpNoDelay);
+        if (_keepAlive != null)
+            socket.setKeepAlive(_keepAlive);
+        if (_receiveBufferSize > 0)
+            socket.setReceiveBufferSize(_receiveBufferSize);
+        if (_sendBufferSize > 0)
+            socket.setSendBufferSize(_sendBufferSize);
+        return socket;
+    }
+
+    /** e.g. "tcpNoDelay, keepAlive, receive buffer 262144, connect timeout 5000 ms", or "defaults". */
+    public String toString()
+    {
+        List<String> settings = new ArrayList<String>();
+        if (_tcpNoDelay != null)
+            settings.add(_tcpNoDelay ? "tcpNoDelay" : "Nagle");
+        if (_keepAlive != null)
+            settings.add(_keepAlive ? "keepAlive" : "no keepAlive");
+        if (_receiveBufferSize > 0)
+            settings.add("receive buffer " + _receiveBufferSize);
+        if (_sendBufferSize > 0)
+            settings.add("send buffer " + _sendBufferSize);
+        if (_connectTimeoutMillis > 0)
+            settings.add("connect timeout " + _connectTimeoutMillis + " ms");
+        return settings.isEmpty() ? "defaults" : String.join(", ", settings);
+    }
+
+    /**
+     * Creates sockets from another factory, configured with the profile.
+     */
+    class ProfiledSocketFactory extends SocketFactory
+    {
+        final SocketFactory _delegate;
+
+        ProfiledSocketFactory(SocketFactory delegate)
+        {
+            _delegate = delegate;
+        }
+
+        public Socket createSocket() throws IOException
+        {
+            return configure(_delegate.createSocket());
+        }
+
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), null);
+        }
+
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), new InetSocketAddress(localHost, localPort));
+        }
+
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), null);
+        }
+
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(address, port), new InetSocketAddress(localAddress, localPort));
+        }
+    }
+
+    /**
+     * Creates TLS sockets from another factory, configured with the profile.
+     */
+    class ProfiledSSLSocketFactory extends SSLSocketFactory
+    {
+        final SSLSocketFactory _delegate;
+
+        ProfiledSSLSocketFactory(SSLSocketFactory delegate)
+        {
+            _delegate = delegate;
+        }
+
+        public Socket createSocket() throws IOException
+        {
+            return configure(_delegate.createSocket());
+        }
+
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException
+        {
+            return _delegate.createSocket(configure(socket), host, port, autoClose);
+        }
+
+        public Socket createSocket(String host, int port) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), null);
+        }
+
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), new InetSocketAddress(localHost, localPort));
+        }
+
+        public Socket createSocket(InetAddress host, int port) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(host, port), null);
+        }
+
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException
+        {
+            return connect(createSocket(), new InetSocketAddress(address, port), new InetSocketAddress(localAddress, localPort));
+        }
+
+        public String[] getDefaultCipherSuites()
+        {
+            return _delegate.getDefaultCipherSuites();
+        }
+
+        public String[] getSupportedCipherSuites()
+        {
+            return _delegate.getSupportedCipherSuites();
+        }
+    }
+
+    /** Connect a configured socket, from a local address if one is given. */
+    private Socket connect(Socket socket, InetSocketAddress address, InetSocketAddress localAddress) throws IOException
+    {
+        if (localAddress != null)
+            socket.bind(localAddress);
+        socket.connect(address, _connectTimeoutMillis);
+        return socket;
+    }
+}
@@ -0,0 +1,414 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.*;
+
+/*
+ * Unix domain socket server that fans items out to local subscribers as a binary stream,
+ * a lighter alternative to the WebSocket RedistributionServer for processes on the same host.
+ *
+ * Every frame on the socket, in either direction, is an int length followed by that many
+ * bytes. A subscriber sends requests, each an operation byte (OP_SUBSCRIBE or OP_UNSUBSCRIBE)
+ * followed by a comma-separated list of item names in UTF-8. The server sends Refresh, Update
+ * and Status messages for the subscribed items, encoded with BinaryUpdateCodec (which
+ * includes the item name). A subscriber that subscribes to an item that is already streaming
+ * receives its image from the last-value cache; as for RedistributionServer's clients, the
+ * Refresh and Update messages the image already includes are not sent to it again.
+ *
+ * All subscribers of an item share one upstream subscription, and each upstream message is
+ * encoded once per item; the encoded frame is then queued, without copying, to every
+ * subscriber of the item. One selector thread (a NioServerLoop) writes each subscriber's
+ * queued frames with gathering writes. A subscriber's queue is bounded: a subscriber that falls further behind
+ * is disconnected.
+ */
+public class UnixSocketFanout {
+
+    public static final int OP_SUBSCRIBE = 1;
+    public static final int OP_UNSUBSCRIBE = 2;
+
+    /** Largest accepted request from a subscriber. Must fit in a subscriber's read buffer. */
+    static final int MAX_REQUEST_LENGTH = 32 * 1024;
+
+    /** Size of the buffer messages are encoded in. */
+    static final int MAX_MESSAGE_LENGTH = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> _encodeBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_MESSAGE_LENGTH));
+
+    /**
+     * A subscriber connection. Read and written on the selector thread; frames can be
+     * queued to it from any thread.
+     */
+    class Subscriber extends NioServerLoop.Peer
+    {
+        final ByteBuffer _readBuf = ByteBuffer.allocate(64 * 1024);
+
+        /** Items this subscriber has subscribed to, by name. */
+        final Map<String, FanoutItem> _items = new HashMap<String, FanoutItem>();
+
+        Subscriber(SocketChannel channel, NioServerLoop loop)
+        {
+            super(channel, loop, UnixSocketFanout.this._maxQueuedFrames);
+        }
+
+        void read()
+        {
+            int count;
+            try {
+                count = _channel.read(_readBuf);
+            } catch (IOException e) {
+                count = -1;
+            }
+            if (count < 0)
+            {
+                close();
+                return;
+            }
+
+            _readBuf.flip();
+            while (_readBuf.remaining() >= 4)
+            {
+                int length = _readBuf.getInt(_readBuf.position());
+                if (length < 1 || length > MAX_REQUEST_LENGTH)
+                {
+                    System.out.println("Closing subscriber " + _channel + ": invalid request length " + length);
+                    close();
+                    return;
+                }
+                if (_readBuf.remaining() < 4 + length)
+                    break;
+
+                _readBuf.getInt();
+                int op = _readBuf.get();
+                byte[] names = new byte[length - 1];
+                _readBuf.get(names);
+                onRequest(op, new String(names, StandardCharsets.UTF_8));
+            }
+            _readBuf.compact();
+        }
+
+        void onRequest(int op, String names)
+        {
+            for (String name : names.split(","))
+            {
+                String itemName = name.trim();
+                if (itemName.isEmpty())
+                    continue;
+
+                if (op == OP_SUBSCRIBE)
+                {
+                    if (_items.containsKey(itemName))
+                        continue;
+
+                    FanoutItem item;
+                    synchronized (_fanoutItems)
+                    {
+                        ItemCache.Key key = new ItemCache.Key(_service, itemName, null);
+                        item = _fanoutItems.get(key);
+                        if (item == null)
+                        {
+                            item = new FanoutItem(key);
+                            _fanoutItems.put(key, item);
+                            item._subscription = _upstream.subscribe(key, item);
+                        }
+                    }
+                    _items.put(itemName, item);
+                    item.join(this);
+                }
+                else if (op == OP_UNSUBSCRIBE)
+                {
+                    FanoutItem item = _items.remove(itemName);
+                    if (item != null)
+                        item.leave(this);
+                }
+            }
+        }
+
+        /** Queue an encoded frame, shared with the item's other subscribers. Can be called from any thread. */
+        void send(ByteBuffer frame)
+        {
+            super.send(frame.duplicate());
+        }
+
+        void onClose()
+        {
+            for (FanoutItem item : _items.values())
+                item.leave(this);
+            _items.clear();
+            _subscriberCount.decrementAndGet();
+        }
+
+        public String toString()
+        {
+            return "Subscriber " + _channel;
+        }
+    }
+
+    /**
+     * Item shared by the subscribers of this server, with one upstream subscription.
+     */
+    class FanoutItem implements SubscriptionManager.Listener
+    {
+        final ItemCache.Key _key;
+        SubscriptionManager.Subscription _subscription;
+        final List<Subscriber> _subscribers = new CopyOnWriteArrayList<Subscriber>();
+        boolean _hasImage = false;
+
+        /** Sequence numbers of the images given to subscribers that joined; earlier Refresh and Update messages are not sent to them. */
+        final Map<Subscriber, Long> _imageSeqs = new ConcurrentHashMap<Subscriber, Long>();
+
+        FanoutItem(ItemCache.Key key)
+        {
+            _key = key;
+        }
+
+        /** Fan an upstream message out to the item's subscribers, encoding it once. */
+        public synchronized void onMessage(SubscriptionManager.Subscription subscription, JSONObject messageJson)
+        {
+            if (_subscription == null)
+                _subscription = subscription;
+
+            String messageType = messageJson.optString("Type");
+            if (messageType.equals("Refresh") && messageJson.optBoolean("Complete", true))
+                _hasImage = true;
+
+            if (!_subscribers.isEmpty())
+            {
+                ByteBuffer frame = encode(_key.name(), messageJson);
+                if (frame != null)
+                {
+                    boolean isImageMessage = messageType.equals("Refresh") || messageType.equals("Update");
+                    long seq = subscription.seq();
+                    for (Subscriber subscriber : _subscribers)
+                    {
+                        if (!isImageMessage || seq > _imageSeqs.getOrDefault(subscriber, -1L))
+                            subscriber.send(frame);
+                    }
+                }
+            }
+
+            JSONObject messageState = messageJson.optJSONObject("State");
+            if (messageType.equals("Status") && messageState != null && messageState.optString("Stream").startsWith("Closed"))
+            {
+                // The upstream stream is gone; remove the item so that later requests open a new one.
+                _hasImage = false;
+                for (Subscriber subscriber : _subscribers)
+                    _loop.execute(() -> subscriber._items.remove(_key.name(), this));
+                _subscribers.clear();
+                _imageSeqs.clear();
+                _loop.execute(() -> {
+                    synchronized (_fanoutItems)
+                    {
+                        if (_fanoutItems.get(_key) == this)
+                            _fanoutItems.remove(_key);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Add a subscriber, giving it the cached image if the item has already been refreshed.
+         * A message already applied to the cache may still be on its way to onMessage; the
+         * image's sequence number keeps it from being sent to the subscriber a second time.
+         */
+        synchronized void join(Subscriber subscriber)
+        {
+            ItemCache.Snapshot snapshot = _subscription.item().snapshot();
+            if (_hasImage && snapshot.isComplete())
+            {
+                ByteBuffer frame = encode(_key.name(), SubscriptionManager.imageOf(_subscription.item(), snapshot));
+                if (frame != null)
+                {
+                    _imageSeqs.put(subscriber, snapshot.seq());
+                    subscriber.send(frame);
+                }
+            }
+            _subscribers.add(subscriber);
+        }
+
+        /** Remove a subscriber. The upstream subscription is closed when the last subscriber leaves. */
+        void leave(Subscriber subscriber)
+        {
+            synchronized (_fanoutItems)
+            {
+                _subscribers.remove(subscriber);
+                _imageSeqs.remove(subscriber);
+                if (_subscribers.isEmpty() && _fanoutItems.get(_key) == this)
+                {
+                    _fanoutItems.remove(_key);
+                    _subscription.close();
+                }
+            }
+        }
+    }
+
+    private final Path _path;
+    private final SubscriptionManager _upstream;
+    private final String _service;
+    private final int _maxQueuedFrames;
+    private final Map<ItemCache.Key, FanoutItem> _fanoutItems = new HashMap<ItemCache.Key, FanoutItem>();
+    private final AtomicInteger _subscriberCount = new AtomicInteger(0);
+
+    private final NioServerLoop _loop;
+    private ServerSocketChannel _serverChannel;
+
+    /**
+     * @param path Path of the socket file to listen on
+     * @param upstream Subscriptions to the upstream session that items are fanned out from
+     * @param service Service of the requested items
+     * @param maxQueuedFrames Largest number of frames queued to a subscriber before it is disconnected as too slow
+     */
+    public UnixSocketFanout(Path path, SubscriptionManager upstream, String service, int maxQueuedFrames) throws IOException
+    {
+        _path = path;
+        _upstream = upstream;
+        _service = service;
+        _maxQueuedFrames = maxQueuedFrames;
+        _loop = new NioServerLoop(this::accept);
+    }
+
+    /** Start listening and serving subscribers. A stale socket file at the path is replaced. */
+    public void start() throws IOException
+    {
+        Files.deleteIfExists(_path);
+        _serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        _serverChannel.bind(UnixDomainSocketAddress.of(_path));
+        _serverChannel.configureBlocking(false);
+        _serverChannel.register(_loop._selector, SelectionKey.OP_ACCEPT);
+        _loop.start("UnixSocketFanout");
+        System.out.println("Unix socket fan-out listening on " + _path);
+    }
+
+    /** Stop serving. Connections are closed and the socket file is removed. */
+    public void stop()
+    {
+        _loop.stop();
+        try {
+            _serverChannel.close();
+            Files.deleteIfExists(_path);
+        } catch (IOException e) {
+            // Already closed.
+        }
+    }
+
+    /** Number of connected subscribers. */
+    public int subscriberCount()
+    {
+        return _subscriberCount.get();
+    }
+
+    /** Number of items shared with the upstream session. */
+    public int itemCount()
+    {
+        synchronized (_fanoutItems)
+        {
+            return _fanoutItems.size();
+        }
+    }
+
+    private void accept()
+    {
+        while (true)
+        {
+            try {
+                SocketChannel channel = _serverChannel.accept();
+                if (channel == null)
+                    return;
+                channel.configureBlocking(false);
+                Subscriber subscriber = new Subscriber(channel, _loop);
+                _subscriberCount.incrementAndGet();
+                subscriber.register();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    /** Encode a message into a length-prefixed frame, or return null if it cannot be encoded. */
+    static ByteBuffer encode(String itemName, JSONObject messageJson)
+    {
+        ByteBuffer buf = _encodeBuffer.get();
+        buf.clear();
+        buf.position(4);
+        if (!BinaryUpdateCodec.encode(buf, itemName, messageJson))
+            return null;
+        buf.putInt(0, buf.position() - 4);
+        buf.flip();
+
+        ByteBuffer frame = ByteBuffer.allocate(buf.remaining());
+        frame.put(buf);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Subscribe to items from a fan-out server and print the messages received.
+     * Usage: java UnixSocketFanout <socket path> <item>[,<item>...]
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: java UnixSocketFanout <socket path> <item>[,<item>...]");
+            System.exit(1);
+        }
+
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(Paths.get(args[0])))) {
+            byte[] names = args[1].getBytes(StandardCharsets.UTF_8);
+            ByteBuffer request = ByteBuffer.allocate(5 + names.length);
+            request.putInt(1 + names.length).put((byte)OP_SUBSCRIBE).put(names).flip();
+            while (request.hasRemaining())
+                channel.write(request);
+
+            ByteBuffer lengthBuf = ByteBuffer.allocate(4);
+            while (true)
+            {
+                lengthBuf.clear();
+                if (!readFully(channel, lengthBuf))
+                    return;
+                ByteBuffer message = ByteBuffer.allocate(lengthBuf.getInt(0));
+                if (!readFully(channel, message))
+                    return;
+                System.out.println("RECEIVED:\n" + BinaryUpdateCodec.decode(message).toString(2));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /** Fill a buffer from a blocking channel, then flip it. Returns false at end of stream. */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            if (channel.read(buf) < 0)
+                return false;
+        }
+        buf.flip();
+        return true;
+    }
+}
@@ -0,0 +1,304 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+
+import javax.net.ssl.SSLSocket;
+
+/*
+ * WebSocketTransport written in plain blocking style, running each connection on two
+ * virtual threads (see VirtualThreads): one connects, performs the upgrade and then reads
+ * frames, the other writes the queued messages. Blocked threads only park, so thousands of
+ * connections cost little more than their buffers; on a JDK without virtual threads they
+ * fall back to platform threads, as nv-websocket-client uses.
+ *
+ * The sockets come from the TransportProfile (its settings, connect timeout and socket
+ * factories apply; TLS uses the shared TlsConfig context by default). Frames are parsed
+ * and messages compressed by the server with permessage-deflate inflated by the same
+ * WebSocketFrames code as NioWebSocketTransport; client messages are sent uncompressed,
+ * which the extension allows.
+ *
+ * Listeners are called on the connection's reading thread; messages can be sent from any
+ * thread.
+ */
+public class VirtualThreadWebSocketTransport implements WebSocketTransport {
+
+    /** Size of the buffers of a connection: frames read, and inflated bytes. Larger frames get a larger read buffer while they are read. */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * A connection, with its reading and writing threads.
+     */
+    class BlockingConnection implements Connection
+    {
+        final URI _uri;
+        final String _protocol;
+        final DeflateSettings _deflateOffer;
+        final DeflateSettings.Stats _deflateStats = new DeflateSettings.Stats();
+        final Listener _listener;
+        final boolean _secure;
+        final BlockingQueue<WebSocketFrames.Outbound> _outbound = new LinkedBlockingQueue<WebSocketFrames.Outbound>();
+
+        volatile Socket _socket;
+        volatile boolean _open = false;
+        volatile boolean _closed = false;
+
+        final WebSocketFrames.Decoder _decoder = new WebSocketFrames.Decoder(WebSocketFrames.MAX_PAYLOAD_LENGTH);
+        final WebSocketFrames.MessageReader _messageReader = new WebSocketFrames.MessageReader(_deflateStats,
+                new WebSocketFrames.InflateBuffers(ByteBuffer.allocate(BUFFER_SIZE)));
+
+        BlockingConnection(URI uri, String protocol, DeflateSettings deflateOffer, Listener listener)
+        {
+            _uri = uri;
+            _protocol = protocol;
+            _deflateOffer = deflateOffer;
+            _listener = listener;
+            _secure = uri.getScheme().equalsIgnoreCase("wss");
+        }
+
+        public URI uri()
+        {
+            return _uri;
+        }
+
+        public DeflateSettings.Stats deflateStats()
+        {
+            return _deflateStats;
+        }
+
+        public void sendText(String text)
+        {
+            if (_open)
+                _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        public void disconnect()
+        {
+            if (_open)
+            {
+                // The writing thread closes the socket once the Close frame is out.
+                _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_CLOSE, new byte[] { 0x03, (byte)0xE8 }));
+                return;
+            }
+            _closed = true;
+            closeSocket();
+        }
+
+        /** Connect, then read until the connection closes. Runs on the reading thread. */
+        void run()
+        {
+            DataInputStream in;
+            try {
+                in = open();
+            } catch (IOException | RuntimeException e) {
+                closeSocket();
+                WebSocketFrames.callback(() -> _listener.onConnectError(this, e));
+                return;
+            }
+
+            _open = true;
+            _threadFactory.newThread(this::writeLoop).start();
+            WebSocketFrames.callback(() -> _listener.onConnected(this));
+
+            try {
+                // When the server closes, the writing thread answers it, then closes the socket.
+                readLoop(in);
+            } catch (IOException | DataFormatException | RuntimeException e) {
+                // Closed by the client, or failed.
+                closeSocket();
+            } finally {
+                _open = false;
+                _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_CLOSE, null));
+                _messageReader.end();
+            }
+            WebSocketFrames.callback(() -> _listener.onDisconnected(this));
+        }
+
+        /** Connect the socket and perform the upgrade. */
+        private DataInputStream open() throws IOException
+        {
+            int port = (_uri.getPort() > 0) ? _uri.getPort() : _secure ? 443 : 80;
+            Socket socket = _profile.createSocket(_secure);
+            _socket = socket;
+            if (_closed)
+                throw new IOException("Connection closed");
+            socket.connect(new InetSocketAddress(_uri.getHost(), port), _profile.getConnectTimeout());
+            if (_secure)
+                ((SSLSocket)socket).startHandshake();
+
+            byte[] key = new byte[16];
+            RANDOM.nextBytes(key);
+            String secWebSocketKey = Base64.getEncoder().encodeToString(key);
+            OutputStream out = socket.getOutputStream();
+            out.write(WebSocketFrames.upgradeRequest(_uri, secWebSocketKey, _protocol, _deflateOffer.offer()).getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            _messageReader.setExtensions(WebSocketFrames.checkUpgradeResponse(readResponseHeader(in), secWebSocketKey));
+            return in;
+        }
+
+        /** Read the upgrade response up to the blank line ending it. */
+        private String readResponseHeader(DataInputStream in) throws IOException
+        {
+            StringBuilder header = new StringBuilder();
+            while (header.length() < 4 || !header.substring(header.length() - 4).equals("\r\n\r\n"))
+            {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException("Connection closed during the WebSocket upgrade");
+                if (header.length() >= 16 * 1024)
+                    throw new IOException("WebSocket upgrade response too long");
+                header.append((char)b);
+            }
+            return header.substring(0, header.length() - 4);
+        }
+
+        /** Read frames until the server closes the connection, calling the listener with each text message. */
+        private void readLoop(DataInputStream in) throws IOException, DataFormatException
+        {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            while (true)
+            {
+                // A frame larger than the buffer gets a larger one, until it has been read.
+                if (!buf.hasRemaining())
+                {
+                    buf.flip();
+                    buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf);
+                }
+                int count = in.read(buf.array(), buf.position(), buf.remaining());
+                if (count < 0)
+                    throw new EOFException("Connection closed");
+                buf.position(buf.position() + count);
+
+                buf.flip();
+                try {
+                    WebSocketFrames.Frame frame;
+                    while ((frame = _decoder.next(buf)) != null)
+                    {
+                        if (!onFrame(frame))
+                            return;
+                    }
+                } catch (IllegalStateException e) {
+                    throw new IOException(e.getMessage());
+                }
+                buf.compact();
+                if (buf.position() == 0 && buf.capacity() > BUFFER_SIZE)
+                    buf = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+        }
+
+        /** Handle a frame. Returns false once the server has closed the connection. */
+        private boolean onFrame(WebSocketFrames.Frame frame) throws IOException, DataFormatException
+        {
+            switch (frame.opcode())
+            {
+                case WebSocketFrames.OPCODE_PING:
+                    _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_PONG, frame.payload()));
+                    return true;
+                case WebSocketFrames.OPCODE_PONG:
+                    return true;
+                case WebSocketFrames.OPCODE_CLOSE:
+                    _outbound.add(new WebSocketFrames.Outbound(WebSocketFrames.OPCODE_CLOSE, new byte[0]));
+                    return false;
+                default:
+                    String text = _messageReader.read(frame);
+                    if (text != null)
+                        WebSocketFrames.callback(() -> _listener.onTextMessage(this, text));
+                    return true;
+            }
+        }
+
+        /** Write the queued frames, flushing when the queue is empty. Runs on the writing thread. */
+        void writeLoop()
+        {
+            byte[] maskKey = new byte[4];
+            ByteBuffer header = ByteBuffer.allocate(WebSocketFrames.MAX_HEADER_LENGTH);
+            try {
+                OutputStream out = new BufferedOutputStream(_socket.getOutputStream(), 16 * 1024);
+                while (true)
+                {
+                    WebSocketFrames.Outbound outbound = _outbound.poll();
+                    if (outbound == null)
+                    {
+                        out.flush();
+                        outbound = _outbound.take();
+                    }
+                    // A null payload is the reading thread telling the writer to stop.
+                    if (outbound._payload == null)
+                        return;
+
+                    RANDOM.nextBytes(maskKey);
+                    header.clear();
+                    WebSocketFrames.writeHeader(header, 0x80 | outbound._opcode, outbound._payload.length, maskKey);
+                    out.write(header.array(), 0, header.position());
+                    byte[] payload = outbound._payload;
+                    for (int i = 0; i < payload.length; ++i)
+                        payload[i] ^= maskKey[i & 3];
+                    out.write(payload);
+
+                    if (outbound._opcode == WebSocketFrames.OPCODE_CLOSE)
+                    {
+                        out.flush();
+                        closeSocket();
+                        return;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                closeSocket();
+            }
+        }
+
+        private void closeSocket()
+        {
+            Socket socket = _socket;
+            try {
+                if (socket != null)
+                    socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+    }
+
+    private final TransportProfile _profile;
+    private final ThreadFactory _threadFactory = VirtualThreads.factory("WebSocket");
+
+    /**
+     * @param profile Socket settings and factories of the connections
+     */
+    public VirtualThreadWebSocketTransport(TransportProfile profile)
+    {
+        _profile = profile;
+    }
+
+    public Connection connect(URI uri, String protocol, DeflateSettings deflate, Listener listener) throws IOException
+    {
+        BlockingConnection connection = new BlockingConnection(uri, protocol, deflate, listener);
+        _threadFactory.newThread(connection::run).start();
+        return connection;
+    }
+}
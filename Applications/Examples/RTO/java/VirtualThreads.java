@@ -0,0 +1,62 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Creates virtual threads where the Java runtime has them (Java 21 and later), and daemon
+ * platform threads otherwise, so that the examples still build and run on older JDKs.
+ *
+ * Virtual threads are cheap to create and park while blocked on sockets, queues or
+ * sleep() without holding a platform thread, so thousands of sessions can each have their
+ * own threads with simple blocking code. Like daemon threads, they do not keep the JVM
+ * running on their own.
+ */
+public class VirtualThreads {
+
+    private static final ThreadFactory PROBE = virtualThreadFactory("VirtualThreads-");
+
+    /** Whether threads from factory() are virtual threads. */
+    public static boolean isSupported()
+    {
+        return PROBE != null;
+    }
+
+    /**
+     * Thread factory naming its threads prefix-0, prefix-1, etc.
+     * The threads are virtual if supported, daemon platform threads otherwise.
+     */
+    public static ThreadFactory factory(String prefix)
+    {
+        ThreadFactory threadFactory = virtualThreadFactory(prefix + "-");
+        if (threadFactory != null)
+            return threadFactory;
+
+        AtomicInteger count = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Thread.ofVirtual().name(prefix, 0).factory(), or null before Java 21. */
+    private static ThreadFactory virtualThreadFactory(String prefix)
+    {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Before Java 21 (or Java 19 and 20 without --enable-preview).
+            return null;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * WebSocket (RFC 6455) framing helpers for the local servers and the client transports.
+ *
+ * These work directly on ByteBuffers: headers are written into a caller's buffer ahead of
+ * a payload that can be sent separately (e.g. with a gathering write), and the Decoder
+ * parses frames out of a read buffer as soon as they are complete. The client transports
+ * (NioWebSocketTransport and VirtualThreadWebSocketTransport) share the MessageReader,
+ * which joins the data frames they decode into messages and inflates those compressed
+ * with permessage-deflate (RFC 7692).
+ */
+public class WebSocketFrames {
+
+    public static final int OPCODE_CONTINUATION = 0x0;
+    public static final int OPCODE_TEXT = 0x1;
+    public static final int OPCODE_BINARY = 0x2;
+    public static final int OPCODE_CLOSE = 0x8;
+    public static final int OPCODE_PING = 0x9;
+    public static final int OPCODE_PONG = 0xA;
+
+    /** RSV1 bit, set on the first frame of a message compressed with permessage-deflate. */
+    public static final int RSV1 = 0x40;
+
+    /** Largest frame header: 2 bytes, 8 bytes of extended length and a 4-byte mask. */
+    public static final int MAX_HEADER_LENGTH = 14;
+
+    /** Largest frame, or message, the client transports accept from a server. */
+    public static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+    /** Bytes removed from the end of each compressed message by the sender (RFC 7692), restored before inflating it. */
+    public static final byte[] DEFLATE_TAIL = { 0, 0, (byte)0xFF, (byte)0xFF };
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /** Compute the Sec-WebSocket-Accept value for a Sec-WebSocket-Key. */
+    public static String acceptKey(String key)
+    {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key.trim() + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Client upgrade request for a URL.
+     * @param extensions Sec-WebSocket-Extensions to offer (e.g. DeflateSettings.offer()), or null
+     */
+    public static String upgradeRequest(URI uri, String key, String protocol, String extensions)
+    {
+        String path = (uri.getRawPath() == null || uri.getRawPath().isEmpty()) ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null)
+            path += "?" + uri.getRawQuery();
+        return "GET " + path + " HTTP/1.1\r\n"
+            + "Host: " + uri.getHost() + ((uri.getPort() > 0) ? ":" + uri.getPort() : "") + "\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: " + key + "\r\n"
+            + "Sec-WebSocket-Version: 13\r\n"
+            + "Sec-WebSocket-Protocol: " + protocol + "\r\n"
+            + ((extensions != null) ? "Sec-WebSocket-Extensions: " + extensions + "\r\n" : "")
+            + "\r\n";
+    }
+
+    /**
+     * Check a server's upgrade response.
+     * @param response Status line and headers, without the final blank line
+     * @param key Sec-WebSocket-Key of the request
+     * @return The Sec-WebSocket-Extensions the server accepted, or "" if none
+     * @throws IOException If the server refused the upgrade or did not answer the key
+     */
+    public static String checkUpgradeResponse(String response, String key) throws IOException
+    {
+        String[] lines = response.split("\r\n");
+        if (!lines[0].startsWith("HTTP/1.1 101"))
+            throw new IOException("WebSocket upgrade refused: " + lines[0]);
+
+        String accept = null;
+        String extensions = "";
+        for (String line : lines)
+        {
+            int colon = line.indexOf(':');
+            if (colon < 0)
+                continue;
+            String name = line.substring(0, colon).trim();
+            if (name.equalsIgnoreCase("Sec-WebSocket-Accept"))
+                accept = line.substring(colon + 1).trim();
+            else if (name.equalsIgnoreCase("Sec-WebSocket-Extensions"))
+                extensions = line.substring(colon + 1).trim();
+        }
+        if (!acceptKey(key).equals(accept))
+            throw new IOException("Invalid Sec-WebSocket-Accept");
+        return extensions;
+    }
+
+    /** Length of the header of a frame with the given payload length. */
+    public static int headerLength(long payloadLength, boolean masked)
+    {
+        int length = (payloadLength < 126) ? 2 : (payloadLength <= 0xFFFF) ? 4 : 10;
+        return masked ? length + 4 : length;
+    }
+
+    /**
+     * Write a frame header.
+     * @param buf Buffer to write to
+     * @param firstByte FIN, RSV and opcode bits (e.g. 0x80 | OPCODE_TEXT)
+     * @param payloadLength Length of the payload that follows the header
+     * @param maskKey Masking key to write, or null for an unmasked (server-to-client) frame
+     */
+    public static void writeHeader(ByteBuffer buf, int firstByte, long payloadLength, byte[] maskKey)
+    {
+        int maskBit = (maskKey != null) ? 0x80 : 0;
+        buf.put((byte)firstByte);
+        if (payloadLength < 126)
+        {
+            buf.put((byte)(maskBit | (int)payloadLength));
+        }
+        else if (payloadLength <= 0xFFFF)
+        {
+            buf.put((byte)(maskBit | 126));
+            buf.putShort((short)payloadLength);
+        }
+        else
+        {
+            buf.put((byte)(maskBit | 127));
+            buf.putLong(payloadLength);
+        }
+        if (maskKey != null)
+            buf.put(maskKey);
+    }
+
+    /** Mask (or unmask) bytes in place, starting at the given offset into the payload. */
+    public static void mask(ByteBuffer buf, int from, int to, byte[] maskKey, int payloadOffset)
+    {
+        for (int i = from; i < to; ++i)
+            buf.put(i, (byte)(buf.get(i) ^ maskKey[(payloadOffset + i - from) & 3]));
+    }
+
+    /** Call a client transport's listener, without letting its failures close the connection. */
+    static void callback(Runnable callback)
+    {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A message or control frame waiting to be sent by a client transport.
+     */
+    static class Outbound
+    {
+        final int _opcode;
+        final byte[] _payload;
+
+        Outbound(int opcode, byte[] payload)
+        {
+            _opcode = opcode;
+            _payload = payload;
+        }
+    }
+
+    /**
+     * Parsed frame.
+     */
+    public static class Frame
+    {
+        boolean _fin;
+        boolean _rsv1;
+        int _opcode;
+        byte[] _payload;
+
+        public boolean fin() { return _fin; }
+        public boolean rsv1() { return _rsv1; }
+        public int opcode() { return _opcode; }
+        public byte[] payload() { return _payload; }
+        public boolean isControl() { return (_opcode & 0x8) != 0; }
+    }
+
+    /**
+     * Incremental frame parser. Frames are only consumed from the buffer once complete.
+     */
+    public static class Decoder
+    {
+        private final int _maxPayloadLength;
+        private final Frame _frame = new Frame();
+
+        /**
+         * @param maxPayloadLength Largest accepted payload; longer frames are a protocol error
+         */
+        public Decoder(int maxPayloadLength)
+        {
+            _maxPayloadLength = maxPayloadLength;
+        }
+
+        /**
+         * Parse the next frame from a buffer in read mode.
+         * @return The frame (reused by the next call), or null if the buffer does not hold a complete frame yet.
+         * @throws IllegalStateException If the frame is too long
+         */
+        public Frame next(ByteBuffer buf)
+        {
+            int start = buf.position();
+            int available = buf.remaining();
+            if (available < 2)
+                return null;
+
+            int b0 = buf.get(start) & 0xFF;
+            int b1 = buf.get(start + 1) & 0xFF;
+            boolean masked = (b1 & 0x80) != 0;
+            long payloadLength = b1 & 0x7F;
+            int headerLength = 2;
+            if (payloadLength == 126)
+            {
+                if (available < 4)
+                    return null;
+                payloadLength = buf.getShort(start + 2) & 0xFFFF;
+                headerLength = 4;
+            }
+            else if (payloadLength == 127)
+            {
+                if (available < 10)
+                    return null;
+                payloadLength = buf.getLong(start + 2);
+                headerLength = 10;
+            }
+            if (payloadLength < 0 || payloadLength > _maxPayloadLength)
+                throw new IllegalStateException("WebSocket frame too long: " + payloadLength);
+
+            int maskOffset = start + headerLength;
+            if (masked)
+                headerLength += 4;
+            if (available < headerLength + payloadLength)
+                return null;
+
+            byte[] payload = new byte[(int)payloadLength];
+            buf.position(start + headerLength);
+            buf.get(payload);
+            if (masked)
+            {
+                for (int i = 0; i < payload.length; ++i)
+                    payload[i] ^= buf.get(maskOffset + (i & 3));
+            }
+
+            _frame._fin = (b0 & 0x80) != 0;
+            _frame._rsv1 = (b0 & RSV1) != 0;
+            _frame._opcode = b0 & 0x0F;
+            _frame._payload = payload;
+            return _frame;
+        }
+    }
+
+    /**
+     * Buffers used to inflate messages and decode their text. They are only used during a
+     * call to MessageReader.read(), so the connections read on one thread can share them.
+     */
+    public static class InflateBuffers
+    {
+        final ByteBuffer _inflated;
+        final CharBuffer _chars;
+        final CharsetDecoder _utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /**
+         * @param inflated Buffer receiving the inflated bytes, e.g. a direct one; the text is decoded as it fills
+         */
+        public InflateBuffers(ByteBuffer inflated)
+        {
+            _inflated = inflated;
+            _chars = CharBuffer.allocate(inflated.capacity());
+        }
+    }
+
+    /**
+     * Assembles the data frames a client receives into messages: joins fragmented messages,
+     * and inflates compressed ones (permessage-deflate, if the server accepted it), counting
+     * compressed and plain bytes in the connection's DeflateSettings.Stats. Used by the
+     * connection's reading thread only.
+     */
+    public static class MessageReader
+    {
+        private final DeflateSettings.Stats _stats;
+        private final InflateBuffers _buffers;
+        private final ByteArrayOutputStream _fragments = new ByteArrayOutputStream();
+        private int _messageOpcode;
+        private boolean _messageCompressed;
+
+        /** Whether the server compresses messages, and whether it resets its compression context after each one. */
+        private boolean _deflate = false;
+        private boolean _serverNoContextTakeover = false;
+        private Inflater _inflater;
+
+        public MessageReader(DeflateSettings.Stats stats, InflateBuffers buffers)
+        {
+            _stats = stats;
+            _buffers = buffers;
+        }
+
+        /** Apply the extensions the server accepted, as returned by checkUpgradeResponse(). */
+        public void setExtensions(String extensions)
+        {
+            _deflate = extensions.contains("permessage-deflate");
+            _serverNoContextTakeover = extensions.contains("server_no_context_takeover");
+        }
+
+        /**
+         * Add a data frame (text, binary or continuation).
+         * @return The text of the text message the frame completes, or null if the message is incomplete or binary
+         * @throws IOException If the message is too long
+         * @throws DataFormatException If a compressed message is corrupt
+         */
+        public String read(Frame frame) throws IOException, DataFormatException
+        {
+            if (frame.opcode() != OPCODE_CONTINUATION)
+            {
+                _messageOpcode = frame.opcode();
+                _messageCompressed = _deflate && frame.rsv1();
+            }
+
+            byte[] payload;
+            if (frame.fin() && _fragments.size() == 0)
+            {
+                payload = frame.payload();
+            }
+            else
+            {
+                _fragments.write(frame.payload(), 0, frame.payload().length);
+                if (_fragments.size() > MAX_PAYLOAD_LENGTH)
+                    throw new IOException("WebSocket message too long");
+                if (!frame.fin())
+                    return null;
+                payload = _fragments.toByteArray();
+                _fragments.reset();
+            }
+
+            String text;
+            if (_messageCompressed)
+            {
+                text = inflate(payload);
+            }
+            else
+            {
+                text = new String(payload, StandardCharsets.UTF_8);
+                _stats.plain(payload.length);
+            }
+            return (_messageOpcode == OPCODE_TEXT) ? text : null;
+        }
+
+        /** Release the inflater. */
+        public void end()
+        {
+            if (_inflater != null)
+                _inflater.end();
+        }
+
+        /** Inflate a compressed message, decoding its UTF-8 text as the buffer fills. */
+        private String inflate(byte[] compressed) throws DataFormatException
+        {
+            long start = System.nanoTime();
+            if (_inflater == null)
+                _inflater = new Inflater(true);
+            long bytesWritten = _inflater.getBytesWritten();
+            StringBuilder text = new StringBuilder();
+            ByteBuffer inflated = _buffers._inflated;
+            inflated.clear();
+            _buffers._utf8.reset();
+            try {
+                inflate(ByteBuffer.wrap(compressed), text);
+                inflate(ByteBuffer.wrap(DEFLATE_TAIL), text);
+                decode(text, true);
+            } finally {
+                inflated.clear();
+            }
+            _stats.compressed(compressed.length, (int)(_inflater.getBytesWritten() - bytesWritten), System.nanoTime() - start);
+            if (_serverNoContextTakeover)
+                _inflater.reset();
+            return text.toString();
+        }
+
+        private void inflate(ByteBuffer input, StringBuilder text) throws DataFormatException
+        {
+            ByteBuffer inflated = _buffers._inflated;
+            _inflater.setInput(input);
+            while (true)
+            {
+                int count = _inflater.inflate(inflated);
+                if (!inflated.hasRemaining())
+                    decode(text, false);
+                else if (count == 0 && (_inflater.needsInput() || _inflater.finished() || _inflater.needsDictionary()))
+                    return;
+            }
+        }
+
+        /** Decode the inflated bytes into text, keeping an incomplete trailing character for later. */
+        private void decode(StringBuilder text, boolean endOfInput)
+        {
+            ByteBuffer inflated = _buffers._inflated;
+            CharBuffer chars = _buffers._chars;
+            inflated.flip();
+            while (true)
+            {
+                CoderResult result = _buffers._utf8.decode(inflated, chars, endOfInput);
+                chars.flip();
+                text.append(chars);
+                chars.clear();
+                if (!result.isOverflow())
+                    break;
+            }
+            if (endOfInput)
+            {
+                _buffers._utf8.flush(chars);
+                chars.flip();
+                text.append(chars);
+                chars.clear();
+            }
+            inflated.compact();
+        }
+    }
+}
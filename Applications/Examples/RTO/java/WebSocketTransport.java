@@ -0,0 +1,66 @@
+//|-----------------------------------------------------------------------------
+//|            This source code is provided under the Apache 2.0 license
+//|  and is provided AS IS with no warranty or guarantee of fit for purpose.
+//|                See the project's LICENSE.md for details.
+//|            Copyright (C) 2026 LSEG. All rights reserved.
+//|-----------------------------------------------------------------------------
+
+
+import java.io.IOException;
+import java.net.URI;
+
+/*
+ * Client WebSocket connections, as used by a WebSocketSession.
+ *
+ * A transport opens connections asynchronously and reports their events to a Listener:
+ * onConnected once the WebSocket is open, onTextMessage for each text message received,
+ * then exactly one of onConnectError (the connection could not be opened) or
+ * onDisconnected (an open connection was closed). A closed connection is not reused;
+ * reconnecting opens a new one.
+ *
+ * NvWebSocketTransport uses nv-websocket-client, which runs a reading and a writing thread
+ * per connection. NioWebSocketTransport serves all its connections on a few selector
+ * threads, for processes holding many sessions.
+ */
+public interface WebSocketTransport {
+
+    /**
+     * Receives the events of a connection.
+     */
+    interface Listener
+    {
+        void onConnected(Connection connection);
+
+        void onTextMessage(Connection connection, String message);
+
+        void onConnectError(Connection connection, Exception e);
+
+        void onDisconnected(Connection connection);
+    }
+
+    /**
+     * A WebSocket connection.
+     */
+    interface Connection
+    {
+        /** URL the connection was opened to. */
+        URI uri();
+
+        /** Send a text message. Can be called from any thread; messages sent before the connection is open are dropped. */
+        void sendText(String text);
+
+        /** Close the connection. The listener's onDisconnected (or onConnectError) follows. */
+        void disconnect();
+
+        /** Compression counters of the messages received, or null if the transport does not keep them. */
+        DeflateSettings.Stats deflateStats();
+    }
+
+    /**
+     * Open a connection.
+     * @param uri ws:// or wss:// URL
+     * @param protocol WebSocket subprotocol, e.g. "tr_json2"
+     * @param deflate permessage-deflate extension to offer, if enabled
+     */
+    Connection connect(URI uri, String protocol, DeflateSettings deflate, Listener listener) throws IOException;
+}